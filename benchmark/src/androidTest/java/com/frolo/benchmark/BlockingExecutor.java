@@ -0,0 +1,24 @@
+package com.frolo.benchmark;
+
+import java.util.concurrent.Executor;
+
+
+/**
+ * Executor that executes commands immediately on the caller thread.
+ */
+final class BlockingExecutor implements Executor {
+
+    private static final BlockingExecutor sInstance = new BlockingExecutor();
+
+    static BlockingExecutor getInstance() {
+        return sInstance;
+    }
+
+    private BlockingExecutor() {
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        command.run();
+    }
+}
@@ -0,0 +1,73 @@
+package com.frolo.benchmark;
+
+import android.content.ContentResolver;
+import android.net.Uri;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.frolo.rxcontent.ObservationSpec;
+import com.frolo.rxcontent.RxContent;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.reactivex.disposables.Disposable;
+
+
+/**
+ * Benchmarks of subscribing to and unsubscribing from the Uri observation of {@link RxContent},
+ * i.e. registering and unregistering content observers.
+ */
+@RunWith(JUnit4.class)
+public class ObserverBenchmark {
+
+    /**
+     * Number of Uris observed at once by {@link ObserverBenchmark#subscribeUnsubscribeMany()}.
+     */
+    private static final int URI_COUNT = 64;
+
+    @Rule
+    public BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+
+    private ContentResolver mResolver;
+
+    @Before
+    public void setUp() {
+        mResolver = InstrumentationRegistry.getInstrumentation().getContext().getContentResolver();
+    }
+
+    @Test
+    public void subscribeUnsubscribe() {
+        final Uri uri = RowsProvider.uriOf(1);
+        final BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            final Disposable disposable = RxContent.createFlowable(mResolver, uri).subscribe();
+            disposable.dispose();
+        }
+    }
+
+    /**
+     * Same as {@link ObserverBenchmark#subscribeUnsubscribe()}, but for many sibling Uris,
+     * that are observed with a single observer of their common ancestor.
+     */
+    @Test
+    public void subscribeUnsubscribeMany() {
+        final List<Uri> uris = new ArrayList<>(URI_COUNT);
+        for (int i = 1; i <= URI_COUNT; i++) {
+            uris.add(RowsProvider.uriOf(i));
+        }
+        final BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            final Disposable disposable = RxContent.createFlowable(mResolver, uris, ObservationSpec.descendants()).subscribe();
+            disposable.dispose();
+        }
+    }
+}
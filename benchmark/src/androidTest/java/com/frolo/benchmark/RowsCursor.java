@@ -0,0 +1,97 @@
+package com.frolo.benchmark;
+
+import android.database.AbstractCursor;
+
+
+/**
+ * Read-only cursor over rows that are generated once and shared between queries,
+ * so that the benchmarks measure the cost of RxContent and mapping rather than the cost of building the cursor.
+ * Columns are: _id (long), title (string), duration (long).
+ */
+final class RowsCursor extends AbstractCursor {
+
+    static final String[] COLUMNS = { "_id", "title", "duration" };
+
+    private final long[] mIds;
+    private final String[] mTitles;
+    private final long[] mDurations;
+
+    static RowsCursor create(int count) {
+        final long[] ids = new long[count];
+        final String[] titles = new String[count];
+        final long[] durations = new long[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = i + 1;
+            titles[i] = "Track #" + (i + 1);
+            durations[i] = 1000L * (i % 600);
+        }
+        return new RowsCursor(ids, titles, durations);
+    }
+
+    private RowsCursor(long[] ids, String[] titles, long[] durations) {
+        this.mIds = ids;
+        this.mTitles = titles;
+        this.mDurations = durations;
+    }
+
+    /**
+     * Returns a new cursor over the same rows, positioned before the first row.
+     */
+    RowsCursor copy() {
+        return new RowsCursor(mIds, mTitles, mDurations);
+    }
+
+    @Override
+    public int getCount() {
+        return mIds.length;
+    }
+
+    @Override
+    public String[] getColumnNames() {
+        return COLUMNS;
+    }
+
+    @Override
+    public String getString(int column) {
+        switch (column) {
+            case 0: return String.valueOf(mIds[getPosition()]);
+            case 1: return mTitles[getPosition()];
+            case 2: return String.valueOf(mDurations[getPosition()]);
+            default: throw new IllegalArgumentException("Invalid column: " + column);
+        }
+    }
+
+    @Override
+    public short getShort(int column) {
+        return (short) getLong(column);
+    }
+
+    @Override
+    public int getInt(int column) {
+        return (int) getLong(column);
+    }
+
+    @Override
+    public long getLong(int column) {
+        switch (column) {
+            case 0: return mIds[getPosition()];
+            case 2: return mDurations[getPosition()];
+            default: return Long.parseLong(getString(column));
+        }
+    }
+
+    @Override
+    public float getFloat(int column) {
+        return getLong(column);
+    }
+
+    @Override
+    public double getDouble(int column) {
+        return getLong(column);
+    }
+
+    @Override
+    public boolean isNull(int column) {
+        return false;
+    }
+}
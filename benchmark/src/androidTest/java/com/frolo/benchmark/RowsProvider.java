@@ -0,0 +1,66 @@
+package com.frolo.benchmark;
+
+import android.content.ContentProvider;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.util.SparseArray;
+
+
+/**
+ * Provider of <code>content://com.frolo.benchmark.rows/rows/{count}</code>, that returns a {@link RowsCursor} with <code>count</code> rows.
+ * The provider runs in the process of the benchmarks, so queries do not cross binder.
+ */
+public final class RowsProvider extends ContentProvider {
+
+    static final String AUTHORITY = "com.frolo.benchmark.rows";
+
+    static Uri uriOf(int count) {
+        return new Uri.Builder()
+                .scheme("content")
+                .authority(AUTHORITY)
+                .appendPath("rows")
+                .appendPath(String.valueOf(count))
+                .build();
+    }
+
+    private final SparseArray<RowsCursor> mRows = new SparseArray<>();
+
+    @Override
+    public boolean onCreate() {
+        return true;
+    }
+
+    @Override
+    public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder) {
+        final int count = Integer.parseInt(uri.getLastPathSegment());
+        synchronized (mRows) {
+            RowsCursor rows = mRows.get(count);
+            if (rows == null) {
+                rows = RowsCursor.create(count);
+                mRows.put(count, rows);
+            }
+            return rows.copy();
+        }
+    }
+
+    @Override
+    public String getType(Uri uri) {
+        return null;
+    }
+
+    @Override
+    public Uri insert(Uri uri, ContentValues values) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int delete(Uri uri, String selection, String[] selectionArgs) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int update(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
+        throw new UnsupportedOperationException();
+    }
+}
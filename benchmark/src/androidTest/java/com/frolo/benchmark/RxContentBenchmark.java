@@ -0,0 +1,149 @@
+package com.frolo.benchmark;
+
+import android.content.ContentResolver;
+import android.net.Uri;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.frolo.rxcontent.RxContent;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Consumer;
+
+
+/**
+ * Benchmarks of the query and mapping hot path of {@link RxContent} at 1k, 10k and 100k rows.
+ *
+ * The rows are served by {@link RowsProvider} from memory, so the results are the cost of RxContent and mapping,
+ * not the cost of a real provider. Besides the time, the benchmark library reports allocations per iteration,
+ * which for the observed query is the allocations per emission.
+ *
+ * Run with <code>./gradlew :benchmark:connectedCheck</code>, the results are written to the benchmark json report.
+ */
+@RunWith(Parameterized.class)
+public class RxContentBenchmark {
+
+    @Parameterized.Parameters(name = "rows={0}")
+    public static Collection<Object[]> rowCounts() {
+        return Arrays.asList(new Object[][] { { 1_000 }, { 10_000 }, { 100_000 } });
+    }
+
+    @Rule
+    public BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+
+    private final int mRowCount;
+
+    private ContentResolver mResolver;
+
+    private Uri mUri;
+
+    private ExecutorService mQueryExecutor;
+
+    public RxContentBenchmark(int rowCount) {
+        this.mRowCount = rowCount;
+    }
+
+    @Before
+    public void setUp() {
+        mResolver = InstrumentationRegistry.getInstrumentation().getContext().getContentResolver();
+        mUri = RowsProvider.uriOf(mRowCount);
+        mQueryExecutor = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        mQueryExecutor.shutdown();
+    }
+
+    /**
+     * One-shot query: provider query, cursor filling and mapping of all the rows.
+     */
+    @Test
+    public void querySingle() {
+        final BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            RxContent.querySingle(mResolver, mUri, Track.PROJECTION, null, null, null,
+                    BlockingExecutor.getInstance(), Track.CURSOR_MAPPER)
+                    .blockingGet();
+        }
+    }
+
+    /**
+     * Observed query until the first emission: registration of the observer, the query, the emission and the unregistration.
+     */
+    @Test
+    public void queryFirstEmission() {
+        final BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            RxContent.query(mResolver, mUri, Track.PROJECTION, null, null, null,
+                    BlockingExecutor.getInstance(), Track.CURSOR_MAPPER)
+                    .blockingFirst();
+        }
+    }
+
+    /**
+     * Mapping of all the rows of a cursor with {@link Track#CURSOR_MAPPER}, without the provider query.
+     */
+    @Test
+    public void mapping() {
+        final RowsCursor cursor = RowsCursor.create(mRowCount);
+        final BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            final List<Track> tracks = new ArrayList<>(cursor.getCount());
+            if (cursor.moveToFirst()) {
+                do {
+                    tracks.add(Track.CURSOR_MAPPER.map(cursor));
+                } while (cursor.moveToNext());
+            }
+        }
+        cursor.close();
+    }
+
+    /**
+     * Latency from a change notification of the observed Uri to the emission of the new query result.
+     * Notifications go through the system, as in production.
+     */
+    @Test
+    public void notificationToEmission() throws InterruptedException {
+        final BlockingQueue<List<Track>> emissions = new LinkedBlockingQueue<>();
+        final Disposable disposable = RxContent.query(mResolver, mUri, Track.PROJECTION, null, null, null,
+                mQueryExecutor, Track.CURSOR_MAPPER)
+                .subscribe(new Consumer<List<Track>>() {
+                    @Override
+                    public void accept(List<Track> tracks) {
+                        emissions.add(tracks);
+                    }
+                });
+
+        try {
+            // The initial emission
+            emissions.take();
+
+            final BenchmarkState state = mBenchmarkRule.getState();
+            while (state.keepRunning()) {
+                mResolver.notifyChange(mUri, null);
+                emissions.take();
+            }
+        } finally {
+            disposable.dispose();
+        }
+    }
+}
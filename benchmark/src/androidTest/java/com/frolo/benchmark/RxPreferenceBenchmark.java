@@ -0,0 +1,158 @@
+package com.frolo.benchmark;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.frolo.rxpreference.RxOptional;
+import com.frolo.rxpreference.RxPreference;
+import com.frolo.rxpreference.testing.FakeSharedPreferences;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import io.reactivex.disposables.CompositeDisposable;
+import io.reactivex.functions.Consumer;
+
+
+/**
+ * Benchmarks of {@link RxPreference} writes with 1, 10, 100 and 1000 subscribers,
+ * against {@link FakeSharedPreferences} and against the platform preferences.
+ *
+ * The fake notifies the listeners on the writing thread, so the time of a write includes the dispatch to all the subscribers.
+ * The platform notifies them on the main thread, so there the time is the cost of the write alone.
+ * Besides the time, the benchmark library reports allocations per iteration.
+ */
+@RunWith(Parameterized.class)
+public class RxPreferenceBenchmark {
+
+    private static final String PREFS_NAME = "com.frolo.benchmark.preferences";
+
+    @Parameterized.Parameters(name = "{0}, subscribers={1}")
+    public static Collection<Object[]> configs() {
+        final List<Object[]> configs = new ArrayList<>();
+        for (String backend : new String[] { "fake", "platform" }) {
+            for (int subscriberCount : new int[] { 1, 10, 100, 1000 }) {
+                configs.add(new Object[] { backend, subscriberCount });
+            }
+        }
+        return configs;
+    }
+
+    @Rule
+    public BenchmarkRule mBenchmarkRule = new BenchmarkRule();
+
+    private final String mBackend;
+    private final int mSubscriberCount;
+
+    private SharedPreferences mPreferences;
+    private ExecutorService mExecutor;
+    private final CompositeDisposable mSubscriptions = new CompositeDisposable();
+
+    public RxPreferenceBenchmark(String backend, int subscriberCount) {
+        this.mBackend = backend;
+        this.mSubscriberCount = subscriberCount;
+    }
+
+    @Before
+    public void setUp() {
+        if ("fake".equals(mBackend)) {
+            mPreferences = new FakeSharedPreferences();
+        } else {
+            final Context context = InstrumentationRegistry.getInstrumentation().getContext();
+            mPreferences = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+            mPreferences.edit().clear().commit();
+        }
+        mExecutor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        mSubscriptions.clear();
+        mExecutor.shutdown();
+    }
+
+    /**
+     * Writes to a key, that all the subscribers observe.
+     */
+    @Test
+    public void setObservedKey() {
+        final RxPreference<Long> preference = RxPreference.ofLong(mPreferences, "key", mExecutor);
+        for (int i = 0; i < mSubscriberCount; i++) {
+            mSubscriptions.add(preference.get().subscribe());
+        }
+
+        long value = 0;
+        final BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            preference.set(++value).blockingAwait();
+        }
+    }
+
+    /**
+     * Writes to one of the keys, each of which is observed by one subscriber.
+     * The cost must not depend on the number of the keys.
+     */
+    @Test
+    public void setOneOfKeys() {
+        final List<RxPreference<Long>> preferences = new ArrayList<>(mSubscriberCount);
+        for (int i = 0; i < mSubscriberCount; i++) {
+            final RxPreference<Long> preference = RxPreference.ofLong(mPreferences, "key_" + i, mExecutor);
+            preferences.add(preference);
+            mSubscriptions.add(preference.get().subscribe());
+        }
+
+        final RxPreference<Long> preference = preferences.get(0);
+        long value = 0;
+        final BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            preference.set(++value).blockingAwait();
+        }
+    }
+
+    /**
+     * Writes to a key and waits until its value is emitted to the last of the subscribers,
+     * so that the allocations per iteration are the allocations per write and its emissions.
+     */
+    @Test
+    public void setAndAwaitEmission() throws InterruptedException {
+        final RxPreference<Long> preference = RxPreference.ofLong(mPreferences, "key", mExecutor);
+        final BlockingQueue<Long> emissions = new LinkedBlockingQueue<>();
+        for (int i = 0; i < mSubscriberCount; i++) {
+            mSubscriptions.add(preference.get().skip(1).subscribe(new Consumer<RxOptional<Long>>() {
+                @Override
+                public void accept(RxOptional<Long> optional) {
+                    emissions.add(optional.orElse(0L));
+                }
+            }));
+        }
+
+        long value = 0;
+        final BenchmarkState state = mBenchmarkRule.getState();
+        while (state.keepRunning()) {
+            final long written = ++value;
+            preference.set(written).blockingAwait();
+            int received = 0;
+            while (received < mSubscriberCount) {
+                if (emissions.take() == written) {
+                    received++;
+                }
+            }
+        }
+    }
+}
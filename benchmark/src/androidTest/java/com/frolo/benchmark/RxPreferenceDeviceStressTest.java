@@ -0,0 +1,50 @@
+package com.frolo.benchmark;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+
+/**
+ * Stress of RxPreference on a device against the platform preferences, which notify their listeners on the main thread.
+ * Reports are logged with the tag of this class.
+ */
+@RunWith(JUnit4.class)
+public class RxPreferenceDeviceStressTest {
+
+    private static final String LOG_TAG = "RxPreferenceDeviceStressTest";
+
+    private static final String PREFS_NAME = "com.frolo.benchmark.stress";
+
+    @Test
+    public void test_stress() throws InterruptedException {
+        final Context context = InstrumentationRegistry.getInstrumentation().getContext();
+        final SharedPreferences preferences = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+
+        for (int subscriberCount : new int[] { 1, 10, 100, 1000 }) {
+            for (int rate : new int[] { 100, 1000 }) {
+                for (int keyCount : subscriberCount > 1 ? new int[] { 1, subscriberCount } : new int[] { 1 }) {
+                    final StressReport report = new PreferenceStress(preferences)
+                            .setSubscriberCount(subscriberCount)
+                            .setKeyCount(keyCount)
+                            .setWriteRate(rate)
+                            .setDuration(1, TimeUnit.SECONDS)
+                            .run();
+
+                    Log.i(LOG_TAG, "subscribers=" + subscriberCount + ", keys=" + keyCount + ", rate=" + rate + "Hz: " + report);
+                    assertEquals(0, report.getStaleSubscriberCount());
+                }
+            }
+        }
+    }
+}
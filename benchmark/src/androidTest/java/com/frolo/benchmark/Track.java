@@ -0,0 +1,35 @@
+package com.frolo.benchmark;
+
+import android.database.Cursor;
+
+import com.frolo.rxcontent.CursorMapper;
+
+
+final class Track {
+
+    final long id;
+    final String title;
+    final long duration;
+
+    private Track(long id, String title, long duration) {
+        this.id = id;
+        this.title = title;
+        this.duration = duration;
+    }
+
+    static final String[] PROJECTION = RowsCursor.COLUMNS;
+
+    /**
+     * Mapper written the usual way, looking up the column indexes for each row.
+     */
+    static final CursorMapper<Track> CURSOR_MAPPER = new CursorMapper<Track>() {
+        @Override
+        public Track map(Cursor cursor) {
+            long id = cursor.getLong(cursor.getColumnIndex(PROJECTION[0]));
+            String title = cursor.getString(cursor.getColumnIndex(PROJECTION[1]));
+            long duration = cursor.getLong(cursor.getColumnIndex(PROJECTION[2]));
+            return new Track(id, title, duration);
+        }
+    };
+
+}
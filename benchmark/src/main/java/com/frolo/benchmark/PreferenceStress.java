@@ -0,0 +1,182 @@
+package com.frolo.benchmark;
+
+import android.content.SharedPreferences;
+
+import com.frolo.rxcontent.Histogram;
+import com.frolo.rxpreference.RxOptional;
+import com.frolo.rxpreference.RxPreference;
+import com.frolo.rxpreference.testing.FakeSharedPreferences;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import io.reactivex.disposables.CompositeDisposable;
+import io.reactivex.functions.Consumer;
+
+
+/**
+ * Stress of {@link RxPreference} with many concurrent subscribers and keys under a constant write rate.
+ *
+ * Subscribers of {@link RxPreference#get()} are spread evenly over long preferences.
+ * The writer sets the keys in turn to the current {@link System#nanoTime()},
+ * so each emission carries the time of its write and the latency is measured without any bookkeeping.
+ * The subscribers run on a shared pool of threads, so that a thousand subscribers do not take a thousand threads.
+ *
+ * The stress runs on the JVM against {@link FakeSharedPreferences} as well as on a device against the platform preferences.
+ */
+public final class PreferenceStress {
+
+    private static final String KEY_PREFIX = "stress_";
+
+    private static final int THREAD_COUNT = 4;
+
+    private static final long SETTLE_TIMEOUT_MILLIS = 5_000;
+
+    private final SharedPreferences mPreferences;
+    private int mSubscriberCount = 1;
+    private int mKeyCount = 1;
+    private double mWriteRate = 100;
+    private long mDurationNanos = TimeUnit.SECONDS.toNanos(1);
+
+    public PreferenceStress(SharedPreferences preferences) {
+        this.mPreferences = preferences;
+    }
+
+    public PreferenceStress setSubscriberCount(int subscriberCount) {
+        mSubscriberCount = subscriberCount;
+        return this;
+    }
+
+    public PreferenceStress setKeyCount(int keyCount) {
+        mKeyCount = keyCount;
+        return this;
+    }
+
+    /**
+     * Sets the rate of the writes.
+     * @param writeRate number of the writes per second
+     * @return this stress
+     */
+    public PreferenceStress setWriteRate(double writeRate) {
+        mWriteRate = writeRate;
+        return this;
+    }
+
+    public PreferenceStress setDuration(long duration, TimeUnit unit) {
+        mDurationNanos = unit.toNanos(duration);
+        return this;
+    }
+
+    /**
+     * Runs the stress on the calling thread, which is the writer.
+     * @return the report of the run
+     * @throws InterruptedException if the calling thread is interrupted
+     */
+    public StressReport run() throws InterruptedException {
+        final ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+        final CompositeDisposable subscriptions = new CompositeDisposable();
+
+        final List<RxPreference<Long>> preferences = new ArrayList<>(mKeyCount);
+        final AtomicLong[] lastWritten = new AtomicLong[mKeyCount];
+        final SharedPreferences.Editor editor = mPreferences.edit();
+        for (int i = 0; i < mKeyCount; i++) {
+            editor.remove(KEY_PREFIX + i);
+            preferences.add(RxPreference.ofLong(mPreferences, KEY_PREFIX + i, executor));
+            lastWritten[i] = new AtomicLong();
+        }
+        editor.commit();
+
+        final Histogram writeCost = new Histogram();
+        final Histogram emissionLatency = new Histogram();
+        final AtomicInteger emissionCount = new AtomicInteger();
+        final AtomicLong[] lastSeen = new AtomicLong[mSubscriberCount];
+
+        // Counted down by the initial emission of each subscriber
+        final CountDownLatch subscribed = new CountDownLatch(mSubscriberCount);
+
+        try {
+            for (int i = 0; i < mSubscriberCount; i++) {
+                final AtomicLong seen = new AtomicLong();
+                lastSeen[i] = seen;
+                subscriptions.add(preferences.get(i % mKeyCount).get()
+                        .subscribe(new Consumer<RxOptional<Long>>() {
+                            boolean mInitial = true;
+
+                            @Override
+                            public void accept(RxOptional<Long> optional) {
+                                if (mInitial) {
+                                    // The initial value is not written by the stress
+                                    mInitial = false;
+                                    subscribed.countDown();
+                                    return;
+                                }
+                                final long writeTime = optional.orElse(0L);
+                                emissionLatency.record(System.nanoTime() - writeTime);
+                                emissionCount.incrementAndGet();
+                                seen.set(writeTime);
+                            }
+                        }));
+            }
+            // The subscriptions read the initial values asynchronously, a write before that would be taken for the initial value
+            if (!subscribed.await(SETTLE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                throw new IllegalStateException("Subscribers did not get the initial values in " + SETTLE_TIMEOUT_MILLIS + " ms");
+            }
+
+            final int initialDiskWrites = diskWriteCount();
+
+            final double intervalNanos = TimeUnit.SECONDS.toNanos(1) / mWriteRate;
+            final int writeCount = (int) (mDurationNanos / intervalNanos);
+            final long startTime = System.nanoTime();
+            for (int i = 0; i < writeCount; i++) {
+                final long deadline = startTime + (long) (i * intervalNanos);
+                long remaining;
+                while ((remaining = deadline - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(remaining);
+                    if (Thread.interrupted()) {
+                        throw new InterruptedException();
+                    }
+                }
+
+                final int key = i % mKeyCount;
+                final long writeTime = System.nanoTime();
+                lastWritten[key].set(writeTime);
+                preferences.get(key).set(writeTime).blockingAwait();
+                writeCost.record(System.nanoTime() - writeTime);
+            }
+
+            // Waits until each subscriber gets the last value of its key
+            final long settleDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(SETTLE_TIMEOUT_MILLIS);
+            int staleCount;
+            do {
+                staleCount = 0;
+                for (int i = 0; i < mSubscriberCount; i++) {
+                    final long written = lastWritten[i % mKeyCount].get();
+                    if (written != 0L && lastSeen[i].get() != written) {
+                        staleCount++;
+                    }
+                }
+                if (staleCount > 0) {
+                    Thread.sleep(10);
+                }
+            } while (staleCount > 0 && System.nanoTime() < settleDeadline);
+
+            final int diskWrites = initialDiskWrites >= 0 ? diskWriteCount() - initialDiskWrites : -1;
+            return new StressReport(writeCount, emissionCount.get(), writeCost, emissionLatency, diskWrites, staleCount);
+        } finally {
+            subscriptions.dispose();
+            executor.shutdown();
+        }
+    }
+
+    private int diskWriteCount() {
+        return mPreferences instanceof FakeSharedPreferences
+                ? ((FakeSharedPreferences) mPreferences).getDiskWriteCount() : -1;
+    }
+}
@@ -0,0 +1,96 @@
+package com.frolo.benchmark;
+
+import com.frolo.rxcontent.Histogram;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Result of a {@link PreferenceStress} run.
+ */
+public final class StressReport {
+
+    private final int mWriteCount;
+    private final int mEmissionCount;
+    private final Histogram mWriteCost;
+    private final Histogram mEmissionLatency;
+    private final int mDiskWriteCount;
+    private final int mStaleSubscriberCount;
+
+    /*package*/ StressReport(
+            int writeCount,
+            int emissionCount,
+            Histogram writeCost,
+            Histogram emissionLatency,
+            int diskWriteCount,
+            int staleSubscriberCount
+    ) {
+        this.mWriteCount = writeCount;
+        this.mEmissionCount = emissionCount;
+        this.mWriteCost = writeCost;
+        this.mEmissionLatency = emissionLatency;
+        this.mDiskWriteCount = diskWriteCount;
+        this.mStaleSubscriberCount = staleSubscriberCount;
+    }
+
+    public int getWriteCount() {
+        return mWriteCount;
+    }
+
+    /**
+     * Returns the number of emissions to all the subscribers, except for the initial ones.
+     * @return the number of the emissions
+     */
+    public int getEmissionCount() {
+        return mEmissionCount;
+    }
+
+    /**
+     * Returns the time of the write calls in nanoseconds. If the preferences notify their listeners on the writing thread,
+     * this includes the dispatch of the change to all the listeners of the key.
+     * @return histogram of the write costs
+     */
+    public Histogram getWriteCost() {
+        return mWriteCost;
+    }
+
+    /**
+     * Returns the latency from a write to the emission of the written value, in nanoseconds.
+     * @return histogram of the latencies
+     */
+    public Histogram getEmissionLatency() {
+        return mEmissionLatency;
+    }
+
+    /**
+     * Returns the number of disk writes of the preferences, or -1 if the preferences do not count them.
+     * @return the number of the disk writes
+     */
+    public int getDiskWriteCount() {
+        return mDiskWriteCount;
+    }
+
+    /**
+     * Returns the number of subscribers, that have not got the last written value of their key before the run ended.
+     * @return the number of the stale subscribers
+     */
+    public int getStaleSubscriberCount() {
+        return mStaleSubscriberCount;
+    }
+
+    @Override
+    public String toString() {
+        return "StressReport{"
+                + "writes=" + mWriteCount
+                + ", emissions=" + mEmissionCount
+                + ", writeCostUs=[p50=" + TimeUnit.NANOSECONDS.toMicros(mWriteCost.getValueAtPercentile(50))
+                + ", p99=" + TimeUnit.NANOSECONDS.toMicros(mWriteCost.getValueAtPercentile(99)) + "]"
+                + ", emissionLatencyUs=[p50=" + TimeUnit.NANOSECONDS.toMicros(mEmissionLatency.getValueAtPercentile(50))
+                + ", p90=" + TimeUnit.NANOSECONDS.toMicros(mEmissionLatency.getValueAtPercentile(90))
+                + ", p99=" + TimeUnit.NANOSECONDS.toMicros(mEmissionLatency.getValueAtPercentile(99))
+                + ", max=" + TimeUnit.NANOSECONDS.toMicros(mEmissionLatency.getMax()) + "]"
+                + ", diskWrites=" + mDiskWriteCount
+                + ", staleSubscribers=" + mStaleSubscriberCount
+                + '}';
+    }
+}
@@ -0,0 +1,97 @@
+package com.frolo.benchmark;
+
+import com.frolo.rxpreference.testing.FakeSharedPreferences;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Stress of RxPreference on the JVM against {@link FakeSharedPreferences}, which notifies its listeners on the writing thread,
+ * so the write cost includes the dispatch to all the listeners of the key.
+ * Reports are written to <code>build/reports/stress/RxPreferenceStressTest.txt</code> of the module, a line per configuration.
+ */
+@RunWith(Parameterized.class)
+public class RxPreferenceStressTest {
+
+    private static final File REPORT_FILE = new File("build/reports/stress/RxPreferenceStressTest.txt");
+
+    @BeforeClass
+    public static void createReportFile() throws IOException {
+        final File dir = REPORT_FILE.getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Failed to create " + dir);
+        }
+        new FileWriter(REPORT_FILE, false).close();
+    }
+
+    private static void writeReport(String line) throws IOException {
+        final Writer writer = new FileWriter(REPORT_FILE, true);
+        try {
+            writer.write(line);
+            writer.write('\n');
+        } finally {
+            writer.close();
+        }
+    }
+
+    @Parameterized.Parameters(name = "subscribers={0}, keys={1}, rate={2}Hz")
+    public static Collection<Object[]> configs() {
+        final List<Object[]> configs = new ArrayList<>();
+        for (int subscriberCount : new int[] { 1, 10, 100, 1000 }) {
+            for (int rate : new int[] { 100, 1000 }) {
+                // All the subscribers of one key and a key per subscriber
+                configs.add(new Object[] { subscriberCount, 1, rate });
+                if (subscriberCount > 1) {
+                    configs.add(new Object[] { subscriberCount, subscriberCount, rate });
+                }
+            }
+        }
+        return configs;
+    }
+
+    private final int mSubscriberCount;
+    private final int mKeyCount;
+    private final int mWriteRate;
+
+    public RxPreferenceStressTest(int subscriberCount, int keyCount, int writeRate) {
+        this.mSubscriberCount = subscriberCount;
+        this.mKeyCount = keyCount;
+        this.mWriteRate = writeRate;
+    }
+
+    @Test
+    public void test_stress() throws InterruptedException, IOException {
+        final StressReport report = new PreferenceStress(new FakeSharedPreferences())
+                .setSubscriberCount(mSubscriberCount)
+                .setKeyCount(mKeyCount)
+                .setWriteRate(mWriteRate)
+                .setDuration(1, TimeUnit.SECONDS)
+                .run();
+
+        final String message = "subscribers=" + mSubscriberCount + ", keys=" + mKeyCount
+                + ", rate=" + mWriteRate + "Hz: " + report;
+        // Written before the checks, so the report of a failed run is kept as well
+        writeReport(message);
+
+        // Each write changes the value, so it is written to disk once
+        assertEquals(message, report.getWriteCount(), report.getDiskWriteCount());
+        // Emissions may be dropped under load, but the last value is never lost
+        assertEquals(message, 0, report.getStaleSubscriberCount());
+        assertTrue(message, report.getEmissionCount() > 0);
+    }
+}
@@ -0,0 +1,24 @@
+package com.frolo.rxcontent.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+
+/**
+ * Maps a field of a {@link CursorRow} class to the column with the given name.
+ *
+ * The field must be neither private, nor final, nor static. Supported types are:
+ * long, int, short, float, double, boolean (non-zero int), their boxed counterparts (null for SQL NULL), String and byte[].
+ */
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.FIELD)
+public @interface Column {
+
+    /**
+     * Returns the name of the column.
+     * @return the name of the column
+     */
+    String value();
+}
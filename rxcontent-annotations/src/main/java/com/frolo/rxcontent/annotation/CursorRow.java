@@ -0,0 +1,32 @@
+package com.frolo.rxcontent.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+
+/**
+ * Marks a class, which rows of a cursor are mapped to.
+ * For a class <code>Song</code>, the processor of rxcontent-compiler generates <code>Song_CursorMapper</code> in the same package,
+ * that reads the fields annotated with {@link Column} by constant positions in the generated <code>PROJECTION</code>,
+ * with the typed getters of the cursor and without reflection.
+ *
+ * Example:
+ * <pre>
+ *     &#64;CursorRow
+ *     final class Song {
+ *         &#64;Column(MediaStore.Audio.Media._ID) long id;
+ *         &#64;Column(MediaStore.Audio.Media.TITLE) String title;
+ *     }
+ *
+ *     RxContent.query(resolver, uri, Song_CursorMapper.PROJECTION, null, null, null, executor, Song_CursorMapper.INSTANCE);
+ * </pre>
+ *
+ * The class must have a non-private constructor without parameters, and must be static if it is nested.
+ * The generated mapper must be used with the generated projection only, as it does not look up the column indexes.
+ */
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface CursorRow {
+}
@@ -0,0 +1,290 @@
+package com.frolo.rxcontent.compiler;
+
+import com.frolo.rxcontent.annotation.Column;
+import com.frolo.rxcontent.annotation.CursorRow;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+
+/**
+ * Generates a <code>ProjectionCursorMapper</code> and its projection for each class annotated with {@link CursorRow}.
+ *
+ * For a class <code>Song</code> the generated class is <code>Song_CursorMapper</code> in the same package, with:
+ * <ul>
+ *     <li><code>PROJECTION</code> - the columns of the {@link Column} fields in the order of declaration;</li>
+ *     <li><code>INSTANCE</code> - the mapper, that reads each field by its constant position in <code>PROJECTION</code>.</li>
+ * </ul>
+ * The mapper declares <code>PROJECTION</code> as its columns, so RxContent queries with it project only them.
+ * Misuse, e.g. a private field or a field of an unsupported type, is reported as a compilation error.
+ */
+public final class CursorMapperProcessor extends AbstractProcessor {
+
+    private static final String SUFFIX = "_CursorMapper";
+
+    /**
+     * Cursor getters by the names of the boxed types.
+     */
+    private static final Map<String, String> BOXED_GETTERS = new HashMap<>();
+    static {
+        BOXED_GETTERS.put(Long.class.getName(), "getLong");
+        BOXED_GETTERS.put(Integer.class.getName(), "getInt");
+        BOXED_GETTERS.put(Short.class.getName(), "getShort");
+        BOXED_GETTERS.put(Float.class.getName(), "getFloat");
+        BOXED_GETTERS.put(Double.class.getName(), "getDouble");
+    }
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        final Set<String> types = new LinkedHashSet<>();
+        types.add(CursorRow.class.getCanonicalName());
+        types.add(Column.class.getCanonicalName());
+        return types;
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getElementsAnnotatedWith(Column.class)) {
+            final Element enclosing = element.getEnclosingElement();
+            if (enclosing.getAnnotation(CursorRow.class) == null) {
+                error(element, "@Column field must be declared in a class annotated with @CursorRow");
+            }
+        }
+
+        for (Element element : roundEnv.getElementsAnnotatedWith(CursorRow.class)) {
+            if (element.getKind() != ElementKind.CLASS) {
+                error(element, "@CursorRow must annotate a class");
+                continue;
+            }
+            final TypeElement type = (TypeElement) element;
+            final List<Field> fields = collectFields(type);
+            if (fields != null && checkType(type)) {
+                write(type, fields);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Field to read from the cursor.
+     */
+    private static final class Field {
+        final String name;
+        final String column;
+        final String read;
+
+        Field(String name, String column, String read) {
+            this.name = name;
+            this.column = column;
+            this.read = read;
+        }
+    }
+
+    private boolean checkType(TypeElement type) {
+        boolean valid = true;
+        final Set<Modifier> modifiers = type.getModifiers();
+        if (modifiers.contains(Modifier.PRIVATE) || modifiers.contains(Modifier.ABSTRACT)) {
+            error(type, "@CursorRow class must be neither private nor abstract");
+            valid = false;
+        }
+        if (type.getNestingKind() == NestingKind.MEMBER && !modifiers.contains(Modifier.STATIC)) {
+            error(type, "@CursorRow class must be static if it is nested");
+            valid = false;
+        }
+        if (type.getNestingKind() == NestingKind.LOCAL || type.getNestingKind() == NestingKind.ANONYMOUS) {
+            error(type, "@CursorRow class must be a top level or a nested class");
+            valid = false;
+        }
+
+        boolean hasConstructor = false;
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty() && !constructor.getModifiers().contains(Modifier.PRIVATE)) {
+                hasConstructor = true;
+                break;
+            }
+        }
+        if (!hasConstructor) {
+            error(type, "@CursorRow class must have a non-private constructor without parameters");
+            valid = false;
+        }
+        return valid;
+    }
+
+    /**
+     * Collects the {@link Column} fields of <code>type</code> in the order of declaration.
+     * @return the fields, or null if some of them are invalid
+     */
+    private List<Field> collectFields(TypeElement type) {
+        final List<Field> fields = new ArrayList<>();
+        final Set<String> columns = new LinkedHashSet<>();
+        boolean valid = true;
+
+        for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+            final Column column = field.getAnnotation(Column.class);
+            if (column == null) {
+                continue;
+            }
+
+            final Set<Modifier> modifiers = field.getModifiers();
+            if (modifiers.contains(Modifier.PRIVATE) || modifiers.contains(Modifier.FINAL) || modifiers.contains(Modifier.STATIC)) {
+                error(field, "@Column field must be neither private, nor final, nor static");
+                valid = false;
+                continue;
+            }
+            if (column.value().isEmpty()) {
+                error(field, "@Column name must not be empty");
+                valid = false;
+                continue;
+            }
+            if (!columns.add(column.value())) {
+                error(field, "Column '" + column.value() + "' is already mapped to another field");
+                valid = false;
+                continue;
+            }
+
+            final String read = readExpression(field.asType(), fields.size());
+            if (read == null) {
+                error(field, "Unsupported @Column field type: " + field.asType());
+                valid = false;
+                continue;
+            }
+            fields.add(new Field(field.getSimpleName().toString(), column.value(), read));
+        }
+
+        if (valid && fields.isEmpty()) {
+            error(type, "@CursorRow class must have at least one @Column field");
+            valid = false;
+        }
+        return valid ? fields : null;
+    }
+
+    /**
+     * Returns the expression that reads the value of <code>type</code> at <code>position</code> of the cursor,
+     * or null if the type is not supported.
+     */
+    private static String readExpression(TypeMirror type, int position) {
+        switch (type.getKind()) {
+            case LONG: return "cursor.getLong(" + position + ")";
+            case INT: return "cursor.getInt(" + position + ")";
+            case SHORT: return "cursor.getShort(" + position + ")";
+            case FLOAT: return "cursor.getFloat(" + position + ")";
+            case DOUBLE: return "cursor.getDouble(" + position + ")";
+            case BOOLEAN: return "cursor.getInt(" + position + ") != 0";
+            case ARRAY: {
+                final TypeMirror component = ((ArrayType) type).getComponentType();
+                return component.getKind() == TypeKind.BYTE ? "cursor.getBlob(" + position + ")" : null;
+            }
+            case DECLARED: {
+                final String name = type.toString();
+                if (String.class.getName().equals(name)) {
+                    return "cursor.getString(" + position + ")";
+                }
+                if (Boolean.class.getName().equals(name)) {
+                    return "cursor.isNull(" + position + ") ? null : Boolean.valueOf(cursor.getInt(" + position + ") != 0)";
+                }
+                final String getter = BOXED_GETTERS.get(name);
+                if (getter != null) {
+                    final String boxed = name.substring(name.lastIndexOf('.') + 1);
+                    return "cursor.isNull(" + position + ") ? null : " + boxed + ".valueOf(cursor." + getter + "(" + position + "))";
+                }
+                return null;
+            }
+            default: return null;
+        }
+    }
+
+    private void write(TypeElement type, List<Field> fields) {
+        final PackageElement packageElement = processingEnv.getElementUtils().getPackageOf(type);
+        final String packageName = packageElement.isUnnamed() ? "" : packageElement.getQualifiedName().toString();
+        final String typeName = type.getQualifiedName().toString();
+        final String nestedName = packageName.isEmpty() ? typeName : typeName.substring(packageName.length() + 1);
+        final String mapperName = nestedName.replace('.', '_') + SUFFIX;
+
+        final StringBuilder source = new StringBuilder();
+        if (!packageName.isEmpty()) {
+            source.append("package ").append(packageName).append(";\n\n");
+        }
+        source.append("import android.database.Cursor;\n\n");
+        source.append("import com.frolo.rxcontent.ProjectionCursorMapper;\n\n\n");
+        source.append("/**\n");
+        source.append(" * Generated from {@link ").append(nestedName).append("}, do not edit.\n");
+        source.append(" * Must be used with {@link #PROJECTION}, as the columns are read by their positions in it.\n");
+        source.append(" */\n");
+        source.append("public final class ").append(mapperName).append(" implements ProjectionCursorMapper<").append(nestedName).append("> {\n\n");
+
+        source.append("    public static final String[] PROJECTION = {\n");
+        for (int i = 0; i < fields.size(); i++) {
+            source.append("            \"").append(escape(fields.get(i).column)).append('"')
+                    .append(i < fields.size() - 1 ? ",\n" : "\n");
+        }
+        source.append("    };\n\n");
+
+        source.append("    public static final ").append(mapperName).append(" INSTANCE = new ").append(mapperName).append("();\n\n");
+        source.append("    private ").append(mapperName).append("() {\n    }\n\n");
+
+        source.append("    @Override\n");
+        source.append("    public String[] getColumns() {\n");
+        source.append("        return PROJECTION;\n");
+        source.append("    }\n\n");
+
+        source.append("    @Override\n");
+        source.append("    public ").append(nestedName).append(" map(Cursor cursor) {\n");
+        source.append("        final ").append(nestedName).append(" item = new ").append(nestedName).append("();\n");
+        for (Field field : fields) {
+            source.append("        item.").append(field.name).append(" = ").append(field.read).append(";\n");
+        }
+        source.append("        return item;\n");
+        source.append("    }\n");
+        source.append("}\n");
+
+        final String qualifiedMapperName = packageName.isEmpty() ? mapperName : packageName + '.' + mapperName;
+        try {
+            final JavaFileObject file = processingEnv.getFiler().createSourceFile(qualifiedMapperName, type);
+            final Writer writer = file.openWriter();
+            try {
+                writer.write(source.toString());
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            error(type, "Failed to write " + qualifiedMapperName + ": " + e.getMessage());
+        }
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
@@ -0,0 +1,138 @@
+package com.frolo.rxcontent.compiler;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+@RunWith(JUnit4.class)
+public class CursorMapperProcessorTest {
+
+    private static final class Source extends SimpleJavaFileObject {
+
+        private final String mCode;
+
+        Source(String className, String code) {
+            super(URI.create("string:///" + className.replace('.', '/') + Kind.SOURCE.extension), Kind.SOURCE);
+            this.mCode = code;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return mCode;
+        }
+    }
+
+    /**
+     * Minimal stand-ins of the Android and RxContent classes, so that the generated mappers are compiled too.
+     */
+    private static final Source CURSOR = new Source("android.database.Cursor",
+            "package android.database;\n"
+                    + "public interface Cursor {\n"
+                    + "    long getLong(int column); int getInt(int column); short getShort(int column);\n"
+                    + "    float getFloat(int column); double getDouble(int column); String getString(int column);\n"
+                    + "    byte[] getBlob(int column); boolean isNull(int column);\n"
+                    + "}\n");
+
+    private static final Source CURSOR_MAPPER = new Source("com.frolo.rxcontent.CursorMapper",
+            "package com.frolo.rxcontent;\n"
+                    + "public interface CursorMapper<T> { T map(android.database.Cursor cursor); }\n");
+
+    private static final Source PROJECTION_CURSOR_MAPPER = new Source("com.frolo.rxcontent.ProjectionCursorMapper",
+            "package com.frolo.rxcontent;\n"
+                    + "public interface ProjectionCursorMapper<T> extends CursorMapper<T> { String[] getColumns(); }\n");
+
+    /**
+     * Runs the processor on <code>code</code> and compiles the generated sources.
+     * @return the generated mapper, or null if it is not generated
+     */
+    private String process(String className, String code, DiagnosticCollector<JavaFileObject> diagnostics) throws IOException {
+        final File outputDir = Files.createTempDirectory("cursor-mapper").toFile();
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        final StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, null);
+        final List<String> options = Arrays.asList("-s", outputDir.getPath(), "-d", outputDir.getPath());
+        final JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics, options, null,
+                Arrays.asList(new Source(className, code), CURSOR, CURSOR_MAPPER, PROJECTION_CURSOR_MAPPER));
+        task.setProcessors(Collections.singletonList(new CursorMapperProcessor()));
+        task.call();
+        fileManager.close();
+
+        final File generated = new File(outputDir, className.replace('.', '/') + "_CursorMapper.java");
+        return generated.exists() ? new String(Files.readAllBytes(generated.toPath()), Charset.forName("UTF-8")) : null;
+    }
+
+    @Test
+    public void test_generatedMapper() throws IOException {
+        final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        final String mapper = process("com.example.Song",
+                "package com.example;\n"
+                        + "import com.frolo.rxcontent.annotation.*;\n"
+                        + "@CursorRow final class Song {\n"
+                        + "    @Column(\"_id\") long id;\n"
+                        + "    @Column(\"title\") String title;\n"
+                        + "    @Column(\"is_music\") boolean music;\n"
+                        + "    @Column(\"year\") Integer year;\n"
+                        + "    String notMapped;\n"
+                        + "}\n",
+                diagnostics);
+
+        assertTrue(diagnostics.getDiagnostics().toString(), diagnostics.getDiagnostics().isEmpty());
+        assertTrue(mapper.contains("public final class Song_CursorMapper implements ProjectionCursorMapper<Song>"));
+        assertTrue(mapper.contains("public String[] getColumns() {\n        return PROJECTION;\n    }"));
+        assertTrue(mapper.contains("\"_id\",\n            \"title\",\n            \"is_music\",\n            \"year\"\n"));
+        assertTrue(mapper.contains("item.id = cursor.getLong(0);"));
+        assertTrue(mapper.contains("item.title = cursor.getString(1);"));
+        assertTrue(mapper.contains("item.music = cursor.getInt(2) != 0;"));
+        assertTrue(mapper.contains("item.year = cursor.isNull(3) ? null : Integer.valueOf(cursor.getInt(3));"));
+        assertTrue(!mapper.contains("notMapped"));
+    }
+
+    @Test
+    public void test_misuseIsError() throws IOException {
+        final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        final String mapper = process("com.example.Song",
+                "package com.example;\n"
+                        + "import com.frolo.rxcontent.annotation.*;\n"
+                        + "@CursorRow final class Song {\n"
+                        + "    @Column(\"_id\") long id;\n"
+                        + "    @Column(\"_id\") long sameId;\n"
+                        + "    @Column(\"title\") private String title;\n"
+                        + "    @Column(\"tags\") java.util.List<String> tags;\n"
+                        + "}\n",
+                diagnostics);
+
+        final List<String> errors = new ArrayList<>();
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+            if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                errors.add(diagnostic.getMessage(Locale.ROOT));
+            }
+        }
+        assertEquals(errors.toString(), 3, errors.size());
+        assertTrue(errors.contains("Column '_id' is already mapped to another field"));
+        assertTrue(errors.contains("@Column field must be neither private, nor final, nor static"));
+        assertTrue(errors.contains("Unsupported @Column field type: java.util.List<java.lang.String>"));
+        assertEquals(null, mapper);
+    }
+}
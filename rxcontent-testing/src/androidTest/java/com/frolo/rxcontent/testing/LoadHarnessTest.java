@@ -0,0 +1,100 @@
+package com.frolo.rxcontent.testing;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.frolo.rxcontent.CursorMapper;
+import com.frolo.rxcontent.RxContent;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Flowable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+@RunWith(JUnit4.class)
+public class LoadHarnessTest {
+
+    private static final CursorMapper<Long> ID_MAPPER = new CursorMapper<Long>() {
+        @Override
+        public Long map(Cursor cursor) {
+            return cursor.getLong(0);
+        }
+    };
+
+    @Test
+    public void test_notificationStorm() throws Exception {
+        final Context context = InstrumentationRegistry.getInstrumentation().getContext();
+        final ContentResolver resolver = context.getContentResolver();
+        final FakeTable table = FakeContentProvider.table(context, "songs")
+                .setRowCount(1_000)
+                .setQueryLatency(20, TimeUnit.MILLISECONDS);
+
+        final List<Uri> itemUris = new ArrayList<>();
+        for (long id = 1; id <= 100; id++) {
+            itemUris.add(table.getItemUri(id));
+        }
+        final NotificationTrace storm = NotificationTrace.ofRate(itemUris, 500, 1, TimeUnit.SECONDS);
+
+        // The trace survives saving and loading
+        final StringWriter writer = new StringWriter();
+        storm.writeTo(writer);
+        final NotificationTrace loaded = NotificationTrace.readFrom(new StringReader(writer.toString()));
+        assertEquals(storm.size(), loaded.size());
+        assertEquals(storm.getDurationNanos(), loaded.getDurationNanos());
+
+        final ExecutorService queryExecutor = Executors.newSingleThreadExecutor();
+        final LoadReport report;
+        try {
+            report = new LoadHarness(resolver)
+                    .setSettleTime(500, TimeUnit.MILLISECONDS)
+                    .run(RxContent.query(resolver, table.getUri(), new String[] { "_id" }, null, null, null,
+                            queryExecutor, ID_MAPPER), loaded, table);
+        } finally {
+            queryExecutor.shutdown();
+        }
+
+        assertEquals(500, report.getNotificationCount());
+        // The notifications are coalesced, so there are much fewer queries than notifications
+        assertTrue(report.getRequeryCount() > 0);
+        assertTrue(report.getRequeryCount() < report.getNotificationCount());
+        assertFalse(report.isStale());
+    }
+
+    @Test
+    public void test_failingQuery() throws Exception {
+        final Context context = InstrumentationRegistry.getInstrumentation().getContext();
+        final ContentResolver resolver = context.getContentResolver();
+        final FakeTable table = FakeContentProvider.table(context, "songs");
+        final NotificationTrace trace = NotificationTrace.ofRate(
+                Collections.singletonList(table.getUri()), 10, 1, TimeUnit.SECONDS);
+
+        final IOException error = new IOException("Test");
+        try {
+            new LoadHarness(resolver).run(Flowable.error(error), trace);
+            fail("The run did not fail");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getCause() == error);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.frolo.rxcontent.testing;
+
+import android.content.ContentProvider;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * In-memory content provider, that serves {@link FakeTable}s at <code>content://{applicationId}.rxcontent.testing/{table}</code>
+ * and <code>content://{applicationId}.rxcontent.testing/{table}/{id}</code>.
+ *
+ * The provider is declared in the manifest of this artifact, so it runs in the process of the tests,
+ * and {@link com.frolo.rxcontent.RxContent} runs against it with the real {@link android.content.ContentResolver}.
+ * Notifications of the tables go through the system, as in production.
+ *
+ * Example:
+ * <pre>
+ *     FakeTable songs = FakeContentProvider.table(context, "songs")
+ *          .setRowCount(10_000)
+ *          .setQueryLatency(20, TimeUnit.MILLISECONDS);
+ *     RxContent.query(resolver, songs.getUri(), null, null, null, null, executor, mapper)...
+ *     songs.notifyItemChange(resolver, 1);
+ * </pre>
+ */
+public final class FakeContentProvider extends ContentProvider {
+
+    private static final String AUTHORITY_SUFFIX = ".rxcontent.testing";
+
+    private static final ConcurrentHashMap<String, FakeTable> sTables = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the authority of the provider in the apk of <code>context</code>.
+     * @param context of the apk that includes this artifact, e.g. the instrumentation context
+     * @return the authority
+     */
+    public static String getAuthority(Context context) {
+        return context.getPackageName() + AUTHORITY_SUFFIX;
+    }
+
+    /**
+     * Returns the table with <code>name</code>, creating an empty one if there is no such table yet.
+     * Tables live as long as the process.
+     * @param context of the apk that includes this artifact, e.g. the instrumentation context
+     * @param name of the table
+     * @return the table
+     */
+    public static FakeTable table(Context context, String name) {
+        FakeTable table = sTables.get(name);
+        if (table == null) {
+            final Uri uri = new Uri.Builder()
+                    .scheme("content")
+                    .authority(getAuthority(context))
+                    .appendPath(name)
+                    .build();
+            final FakeTable newTable = new FakeTable(uri);
+            table = sTables.putIfAbsent(name, newTable);
+            if (table == null) {
+                table = newTable;
+            }
+        }
+        return table;
+    }
+
+    @Override
+    public boolean onCreate() {
+        return true;
+    }
+
+    @Override
+    public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder) {
+        final List<String> segments = uri.getPathSegments();
+        final FakeTable table = segments.isEmpty() ? null : sTables.get(segments.get(0));
+        if (table == null) {
+            // Same as ContentResolver returns for an unknown Uri
+            return null;
+        }
+        switch (segments.size()) {
+            case 1: return table.query(-1, projection);
+            case 2: return table.query(Long.parseLong(segments.get(1)), projection);
+            default: return null;
+        }
+    }
+
+    @Override
+    public String getType(Uri uri) {
+        return null;
+    }
+
+    @Override
+    public Uri insert(Uri uri, ContentValues values) {
+        throw new UnsupportedOperationException("Fake tables are read-only, use FakeTable to change them");
+    }
+
+    @Override
+    public int delete(Uri uri, String selection, String[] selectionArgs) {
+        throw new UnsupportedOperationException("Fake tables are read-only, use FakeTable to change them");
+    }
+
+    @Override
+    public int update(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
+        throw new UnsupportedOperationException("Fake tables are read-only, use FakeTable to change them");
+    }
+}
@@ -0,0 +1,171 @@
+package com.frolo.rxcontent.testing;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.provider.BaseColumns;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * In-memory table served by {@link FakeContentProvider}.
+ *
+ * The table has a configurable number of rows, which values are generated on each query:
+ * {@link BaseColumns#_ID} is the row id from 1 to the row count, other columns are strings like <code>title #1</code>.
+ * Each query takes at least the configured latency, to mimic a slow provider, and is counted,
+ * so that re-queries caused by notifications can be checked.
+ *
+ * Get a table with {@link FakeContentProvider#table(android.content.Context, String)}.
+ */
+public final class FakeTable {
+
+    private final Uri mUri;
+
+    private volatile String[] mColumns = { BaseColumns._ID, "title" };
+    private volatile int mRowCount;
+    private volatile long mQueryLatencyNanos;
+
+    private final AtomicInteger mQueryCount = new AtomicInteger();
+
+    /*package*/ FakeTable(Uri uri) {
+        this.mUri = uri;
+    }
+
+    /**
+     * Returns the Uri of the table, which is also the Uri to observe for changes of the table.
+     * @return the Uri of the table
+     */
+    public Uri getUri() {
+        return mUri;
+    }
+
+    /**
+     * Returns the Uri of the row with <code>id</code>, like the item Uris of MediaStore.
+     * @param id of the row
+     * @return the Uri of the row
+     */
+    public Uri getItemUri(long id) {
+        return ContentUris.withAppendedId(mUri, id);
+    }
+
+    /**
+     * Sets the columns of the table. {@link BaseColumns#_ID} is added if it is missing.
+     * @param columns of the table
+     * @return this table
+     */
+    public FakeTable setColumns(String... columns) {
+        for (String column : columns) {
+            if (BaseColumns._ID.equals(column)) {
+                mColumns = columns.clone();
+                return this;
+            }
+        }
+        final String[] withId = new String[columns.length + 1];
+        withId[0] = BaseColumns._ID;
+        System.arraycopy(columns, 0, withId, 1, columns.length);
+        mColumns = withId;
+        return this;
+    }
+
+    /**
+     * Sets the number of rows of the table.
+     * @param rowCount of the table
+     * @return this table
+     */
+    public FakeTable setRowCount(int rowCount) {
+        if (rowCount < 0) {
+            throw new IllegalArgumentException("Negative row count: " + rowCount);
+        }
+        mRowCount = rowCount;
+        return this;
+    }
+
+    /**
+     * Sets the min time each query of the table takes.
+     * @param latency of a query
+     * @param unit of <code>latency</code>
+     * @return this table
+     */
+    public FakeTable setQueryLatency(long latency, TimeUnit unit) {
+        mQueryLatencyNanos = unit.toNanos(latency);
+        return this;
+    }
+
+    /**
+     * Returns the number of queries of the table performed so far.
+     * @return the number of queries
+     */
+    public int getQueryCount() {
+        return mQueryCount.get();
+    }
+
+    /**
+     * Notifies observers of the table that it is changed.
+     * @param resolver to notify the change with
+     */
+    public void notifyChange(ContentResolver resolver) {
+        resolver.notifyChange(mUri, null);
+    }
+
+    /**
+     * Notifies observers of the table that the row with <code>id</code> is changed.
+     * @param resolver to notify the change with
+     * @param id of the changed row
+     */
+    public void notifyItemChange(ContentResolver resolver, long id) {
+        resolver.notifyChange(getItemUri(id), null);
+    }
+
+    /**
+     * Performs the query of the table or of its row with <code>itemId</code>.
+     * @param itemId of the row, or -1 to query all the rows
+     */
+    /*package*/ Cursor query(long itemId, String[] projection) {
+        final long startTime = System.nanoTime();
+        mQueryCount.incrementAndGet();
+
+        final String[] columns = mColumns;
+        final String[] resultColumns = projection != null ? projection : columns;
+        final int[] indexes = new int[resultColumns.length];
+        for (int i = 0; i < resultColumns.length; i++) {
+            indexes[i] = indexOf(columns, resultColumns[i]);
+            if (indexes[i] < 0) {
+                // Same as SQLite does for an unknown column
+                throw new IllegalArgumentException("No such column: " + resultColumns[i]);
+            }
+        }
+
+        final int rowCount = mRowCount;
+        final long firstId = itemId >= 0 ? Math.max(itemId, 1) : 1;
+        final long lastId = itemId >= 0 ? Math.min(itemId, rowCount) : rowCount;
+        final MatrixCursor cursor = new MatrixCursor(resultColumns, (int) Math.max(0, lastId - firstId + 1));
+        final Object[] row = new Object[resultColumns.length];
+        for (long id = firstId; id <= lastId; id++) {
+            for (int i = 0; i < indexes.length; i++) {
+                final String column = columns[indexes[i]];
+                row[i] = BaseColumns._ID.equals(column) ? (Object) id : column + " #" + id;
+            }
+            cursor.addRow(row);
+        }
+
+        final long remainingMillis = TimeUnit.NANOSECONDS.toMillis(mQueryLatencyNanos - (System.nanoTime() - startTime));
+        if (remainingMillis > 0) {
+            SystemClock.sleep(remainingMillis);
+        }
+        return cursor;
+    }
+
+    private static int indexOf(String[] columns, String column) {
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i].equals(column)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
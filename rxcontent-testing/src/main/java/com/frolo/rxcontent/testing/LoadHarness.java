@@ -0,0 +1,166 @@
+package com.frolo.rxcontent.testing;
+
+import android.content.ContentResolver;
+
+import com.frolo.rxcontent.Histogram;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import io.reactivex.Flowable;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Consumer;
+
+
+/**
+ * Harness that plays a {@link NotificationTrace} against an observed query, e.g. one created with
+ * {@link com.frolo.rxcontent.RxContent#query}, and reports how the query behaves under the load.
+ *
+ * Example:
+ * <pre>
+ *     FakeTable songs = FakeContentProvider.table(context, "songs").setRowCount(10_000);
+ *     Flowable&lt;List&lt;Song&gt;&gt; query = RxContent.query(resolver, songs.getUri(), ...);
+ *     NotificationTrace storm = NotificationTrace.ofRate(itemUris, 500, 5, TimeUnit.SECONDS);
+ *     LoadReport report = new LoadHarness(resolver).run(query, storm, songs);
+ * </pre>
+ *
+ * The harness subscribes to the query, waits for its initial emission and plays the notifications on the calling thread
+ * at the offsets of the trace. Then it waits until the query settles, i.e. there is no emission for the settle time.
+ * If the query fails, or does not emit its initial result in 10 seconds, the run fails with {@link IllegalStateException}.
+ * The latencies are approximate: a notification that comes while a query is performed is considered answered by the result of that query.
+ */
+public final class LoadHarness {
+
+    private static final long DEFAULT_SETTLE_TIME_MILLIS = 1_000;
+    private static final long INITIAL_EMISSION_TIMEOUT_MILLIS = 10_000;
+
+    private final ContentResolver mResolver;
+    private long mSettleTimeNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_SETTLE_TIME_MILLIS);
+
+    public LoadHarness(ContentResolver resolver) {
+        this.mResolver = resolver;
+    }
+
+    /**
+     * Sets the time without emissions, after which the query is considered settled. The default is 1 second.
+     * @param settleTime without emissions
+     * @param unit of <code>settleTime</code>
+     * @return this harness
+     */
+    public LoadHarness setSettleTime(long settleTime, TimeUnit unit) {
+        mSettleTimeNanos = unit.toNanos(settleTime);
+        return this;
+    }
+
+    /**
+     * Same as {@link LoadHarness#run(Flowable, NotificationTrace, FakeTable)}, but the re-queries are not counted.
+     */
+    public LoadReport run(Flowable<?> query, NotificationTrace trace) throws InterruptedException {
+        return run(query, trace, null);
+    }
+
+    /**
+     * Plays <code>trace</code> against <code>query</code>.
+     * @param query that observes the Uris of the trace
+     * @param trace of the notifications
+     * @param table that is queried by <code>query</code>, to count re-queries, or null
+     * @return the report of the run
+     * @throws InterruptedException if the calling thread is interrupted
+     * @throws IllegalStateException if the query fails or does not emit its initial result in time
+     */
+    public LoadReport run(Flowable<?> query, NotificationTrace trace, FakeTable table) throws InterruptedException {
+        final Histogram latency = new Histogram();
+        final AtomicInteger emissionCount = new AtomicInteger();
+        final AtomicLong lastEmissionTime = new AtomicLong();
+        // Time of the first notification, that is not yet answered by an emission, or 0
+        final AtomicLong unansweredSince = new AtomicLong();
+        final AtomicLong peakHeap = new AtomicLong();
+        final CountDownLatch initialEmission = new CountDownLatch(1);
+        final AtomicReference<Throwable> queryError = new AtomicReference<>();
+
+        final int initialQueryCount = table != null ? table.getQueryCount() : 0;
+
+        final Disposable disposable = query.subscribe(new Consumer<Object>() {
+            @Override
+            public void accept(Object result) {
+                final long now = System.nanoTime();
+                lastEmissionTime.set(now);
+                sampleHeap(peakHeap);
+                if (initialEmission.getCount() > 0) {
+                    initialEmission.countDown();
+                    return;
+                }
+                emissionCount.incrementAndGet();
+                final long since = unansweredSince.getAndSet(0L);
+                if (since != 0L) {
+                    latency.record(now - since);
+                }
+            }
+        }, new Consumer<Throwable>() {
+            @Override
+            public void accept(Throwable error) {
+                queryError.set(error);
+                // Releases the harness, if the query fails before its initial emission
+                initialEmission.countDown();
+            }
+        });
+
+        try {
+            if (!initialEmission.await(INITIAL_EMISSION_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                throw new IllegalStateException("Query did not emit its initial result in " + INITIAL_EMISSION_TIMEOUT_MILLIS + " ms");
+            }
+            checkError(queryError);
+
+            final long startTime = System.nanoTime();
+            for (int i = 0; i < trace.size(); i++) {
+                final long deadline = startTime + trace.getOffsetNanos(i);
+                long remaining;
+                while ((remaining = deadline - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(remaining);
+                    if (Thread.interrupted()) {
+                        throw new InterruptedException();
+                    }
+                }
+                unansweredSince.compareAndSet(0L, System.nanoTime());
+                mResolver.notifyChange(trace.getUri(i), null);
+                sampleHeap(peakHeap);
+            }
+
+            // Waits until the query settles
+            long lastSeen;
+            do {
+                lastSeen = lastEmissionTime.get();
+                TimeUnit.NANOSECONDS.sleep(mSettleTimeNanos);
+            } while (lastEmissionTime.get() != lastSeen);
+            checkError(queryError);
+        } finally {
+            disposable.dispose();
+        }
+
+        final int requeryCount = table != null ? table.getQueryCount() - initialQueryCount - 1 : -1;
+        return new LoadReport(trace.size(), emissionCount.get(), requeryCount, latency,
+                peakHeap.get(), unansweredSince.get() != 0L);
+    }
+
+    private static void checkError(AtomicReference<Throwable> queryError) {
+        final Throwable error = queryError.get();
+        if (error != null) {
+            throw new IllegalStateException("Query failed", error);
+        }
+    }
+
+    private static void sampleHeap(AtomicLong peakHeap) {
+        final Runtime runtime = Runtime.getRuntime();
+        final long used = runtime.totalMemory() - runtime.freeMemory();
+        for (;;) {
+            final long peak = peakHeap.get();
+            if (used <= peak || peakHeap.compareAndSet(peak, used)) {
+                break;
+            }
+        }
+    }
+}
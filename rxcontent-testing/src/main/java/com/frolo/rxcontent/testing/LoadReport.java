@@ -0,0 +1,99 @@
+package com.frolo.rxcontent.testing;
+
+import com.frolo.rxcontent.Histogram;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Result of a {@link LoadHarness} run.
+ */
+public final class LoadReport {
+
+    private final int mNotificationCount;
+    private final int mEmissionCount;
+    private final int mRequeryCount;
+    private final Histogram mLatency;
+    private final long mPeakHeapBytes;
+    private final boolean mStale;
+
+    /*package*/ LoadReport(
+            int notificationCount,
+            int emissionCount,
+            int requeryCount,
+            Histogram latency,
+            long peakHeapBytes,
+            boolean stale
+    ) {
+        this.mNotificationCount = notificationCount;
+        this.mEmissionCount = emissionCount;
+        this.mRequeryCount = requeryCount;
+        this.mLatency = latency;
+        this.mPeakHeapBytes = peakHeapBytes;
+        this.mStale = stale;
+    }
+
+    /**
+     * Returns the number of the played notifications.
+     * @return the number of the notifications
+     */
+    public int getNotificationCount() {
+        return mNotificationCount;
+    }
+
+    /**
+     * Returns the number of emissions after the initial one.
+     * @return the number of the emissions
+     */
+    public int getEmissionCount() {
+        return mEmissionCount;
+    }
+
+    /**
+     * Returns the number of queries of the table after the initial one,
+     * or -1 if the run is not bound to a {@link FakeTable}.
+     * @return the number of the re-queries
+     */
+    public int getRequeryCount() {
+        return mRequeryCount;
+    }
+
+    /**
+     * Returns latencies from the first notification, that is not yet reflected in an emission, to the next emission, in nanoseconds.
+     * @return histogram of the latencies
+     */
+    public Histogram getLatency() {
+        return mLatency;
+    }
+
+    /**
+     * Returns the peak of the used Java heap sampled during the run.
+     * @return the peak heap in bytes
+     */
+    public long getPeakHeapBytes() {
+        return mPeakHeapBytes;
+    }
+
+    /**
+     * Returns true if some notification is not followed by an emission before the run ended,
+     * i.e. the subscriber may have been left with a stale result.
+     * @return true if the last result may be stale
+     */
+    public boolean isStale() {
+        return mStale;
+    }
+
+    @Override
+    public String toString() {
+        return "LoadReport{"
+                + "notifications=" + mNotificationCount
+                + ", emissions=" + mEmissionCount
+                + ", requeries=" + mRequeryCount
+                + ", latencyMs=[p50=" + TimeUnit.NANOSECONDS.toMillis(mLatency.getValueAtPercentile(50))
+                + ", p99=" + TimeUnit.NANOSECONDS.toMillis(mLatency.getValueAtPercentile(99))
+                + ", max=" + TimeUnit.NANOSECONDS.toMillis(mLatency.getMax()) + "]"
+                + ", peakHeapKb=" + (mPeakHeapBytes / 1024)
+                + ", stale=" + mStale
+                + '}';
+    }
+}
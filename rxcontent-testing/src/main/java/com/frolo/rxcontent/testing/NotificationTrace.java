@@ -0,0 +1,212 @@
+package com.frolo.rxcontent.testing;
+
+import android.content.ContentResolver;
+import android.database.ContentObserver;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.HandlerThread;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Immutable sequence of Uri change notifications with their time offsets from the start of the sequence.
+ *
+ * A trace is either generated with {@link NotificationTrace#ofRate(List, double, long, TimeUnit)},
+ * or recorded from real notifications, e.g. of a media scan on a device, with {@link NotificationTrace#startRecording(ContentResolver, Uri)}.
+ * Recorded traces can be saved with {@link NotificationTrace#writeTo(Writer)}, loaded with {@link NotificationTrace#readFrom(Reader)}
+ * and redirected to a {@link FakeTable} with {@link NotificationTrace#withAuthority(String)}.
+ * The traces are played by {@link LoadHarness}.
+ */
+public final class NotificationTrace {
+
+    /**
+     * Records notifications of a Uri until it is stopped.
+     */
+    public static final class Recorder {
+
+        private final ContentResolver mResolver;
+        private final Uri mUri;
+        private final HandlerThread mThread;
+        private final ContentObserver mObserver;
+        private final long mStartTime = System.nanoTime();
+        private final List<Long> mOffsets = new ArrayList<>();
+        private final List<Uri> mUris = new ArrayList<>();
+
+        private Recorder(ContentResolver resolver, Uri uri) {
+            this.mResolver = resolver;
+            this.mUri = uri;
+            this.mThread = new HandlerThread("NotificationTrace.Recorder");
+            mThread.start();
+            this.mObserver = new ContentObserver(new Handler(mThread.getLooper())) {
+                @Override
+                public void onChange(boolean selfChange, Uri uri) {
+                    synchronized (mOffsets) {
+                        mOffsets.add(System.nanoTime() - mStartTime);
+                        // Old platforms do not report the changed Uri
+                        mUris.add(uri != null ? uri : mUri);
+                    }
+                }
+            };
+            resolver.registerContentObserver(uri, true, mObserver);
+        }
+
+        /**
+         * Stops the recording.
+         * @return the trace of the notifications received so far
+         */
+        public NotificationTrace stop() {
+            mResolver.unregisterContentObserver(mObserver);
+            mThread.quit();
+            synchronized (mOffsets) {
+                final long[] offsets = new long[mOffsets.size()];
+                for (int i = 0; i < offsets.length; i++) {
+                    offsets[i] = mOffsets.get(i);
+                }
+                return new NotificationTrace(offsets, mUris.toArray(new Uri[0]));
+            }
+        }
+    }
+
+    private final long[] mOffsetsNanos;
+    private final Uri[] mUris;
+
+    private NotificationTrace(long[] offsetsNanos, Uri[] uris) {
+        this.mOffsetsNanos = offsetsNanos;
+        this.mUris = uris;
+    }
+
+    /**
+     * Generates a trace of notifications at a constant <code>rate</code>, that cycle through <code>uris</code>,
+     * e.g. the item Uris of a {@link FakeTable} to mimic a bulk sync.
+     * @param uris to notify
+     * @param rate of the notifications per second
+     * @param duration of the trace
+     * @param unit of <code>duration</code>
+     * @return the trace
+     */
+    public static NotificationTrace ofRate(List<Uri> uris, double rate, long duration, TimeUnit unit) {
+        if (uris.isEmpty()) {
+            throw new IllegalArgumentException("No Uris to notify");
+        }
+        if (rate <= 0) {
+            throw new IllegalArgumentException("Rate must be positive: " + rate);
+        }
+        final double intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        final int count = (int) (unit.toNanos(duration) / intervalNanos);
+        final long[] offsets = new long[count];
+        final Uri[] notified = new Uri[count];
+        for (int i = 0; i < count; i++) {
+            offsets[i] = (long) (i * intervalNanos);
+            notified[i] = uris.get(i % uris.size());
+        }
+        return new NotificationTrace(offsets, notified);
+    }
+
+    /**
+     * Starts recording notifications of <code>uri</code> and its descendants.
+     * @param resolver to observe <code>uri</code>
+     * @param uri to observe
+     * @return the recorder to stop
+     */
+    public static Recorder startRecording(ContentResolver resolver, Uri uri) {
+        return new Recorder(resolver, uri);
+    }
+
+    /**
+     * Reads a trace written with {@link NotificationTrace#writeTo(Writer)}.
+     * @param reader to read the trace from
+     * @return the trace
+     * @throws IOException if the reading fails or the trace is malformed
+     */
+    public static NotificationTrace readFrom(Reader reader) throws IOException {
+        final BufferedReader lines = new BufferedReader(reader);
+        final List<Long> offsets = new ArrayList<>();
+        final List<Uri> uris = new ArrayList<>();
+        String line;
+        while ((line = lines.readLine()) != null) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            final int tab = line.indexOf('\t');
+            if (tab < 0) {
+                throw new IOException("Malformed trace line: " + line);
+            }
+            try {
+                offsets.add(Long.parseLong(line.substring(0, tab)));
+            } catch (NumberFormatException e) {
+                throw new IOException("Malformed trace line: " + line, e);
+            }
+            uris.add(Uri.parse(line.substring(tab + 1)));
+        }
+        final long[] offsetsNanos = new long[offsets.size()];
+        for (int i = 0; i < offsetsNanos.length; i++) {
+            offsetsNanos[i] = offsets.get(i);
+        }
+        return new NotificationTrace(offsetsNanos, uris.toArray(new Uri[0]));
+    }
+
+    /**
+     * Writes the trace as lines of the offset in nanoseconds and the Uri separated with a tab.
+     * @param writer to write the trace to
+     * @throws IOException if the writing fails
+     */
+    public void writeTo(Writer writer) throws IOException {
+        for (int i = 0; i < mUris.length; i++) {
+            writer.write(String.valueOf(mOffsetsNanos[i]));
+            writer.write('\t');
+            writer.write(mUris[i].toString());
+            writer.write('\n');
+        }
+        writer.flush();
+    }
+
+    /**
+     * Returns the same trace, but with the Uris moved to <code>authority</code>, keeping their paths,
+     * e.g. to replay a trace recorded from MediaStore against {@link FakeContentProvider}.
+     * @param authority of the Uris
+     * @return the redirected trace
+     */
+    public NotificationTrace withAuthority(String authority) {
+        final Uri[] uris = new Uri[mUris.length];
+        for (int i = 0; i < uris.length; i++) {
+            uris[i] = mUris[i].buildUpon().authority(authority).build();
+        }
+        return new NotificationTrace(mOffsetsNanos, uris);
+    }
+
+    /**
+     * Returns the number of the notifications.
+     * @return the number of the notifications
+     */
+    public int size() {
+        return mUris.length;
+    }
+
+    /**
+     * Returns the offset of the last notification.
+     * @return the duration in nanoseconds
+     */
+    public long getDurationNanos() {
+        return mOffsetsNanos.length > 0 ? mOffsetsNanos[mOffsetsNanos.length - 1] : 0L;
+    }
+
+    /*package*/ long getOffsetNanos(int index) {
+        return mOffsetsNanos[index];
+    }
+
+    /*package*/ Uri getUri(int index) {
+        return mUris[index];
+    }
+
+    @Override
+    public String toString() {
+        return "NotificationTrace{size=" + size() + ", durationMs=" + TimeUnit.NANOSECONDS.toMillis(getDurationNanos()) + '}';
+    }
+}
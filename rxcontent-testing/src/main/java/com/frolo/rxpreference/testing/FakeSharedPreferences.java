@@ -0,0 +1,272 @@
+package com.frolo.rxpreference.testing;
+
+import android.content.SharedPreferences;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * In-memory {@link SharedPreferences}, that runs on the JVM as well as on a device,
+ * e.g. to benchmark or stress {@link com.frolo.rxpreference.RxPreference} without the disk.
+ *
+ * Each apply or commit, that changes at least one value, is counted as a disk write,
+ * since the platform implementation writes the file for each of them.
+ * Change listeners are notified on the writing thread, unless an executor for them is given,
+ * e.g. one that posts to the main thread as the platform does.
+ * As the platform does since Android R, a clear is notified with the null key, not with each removed key.
+ * Unlike the platform implementation, the listeners are held strongly.
+ */
+public final class FakeSharedPreferences implements SharedPreferences {
+
+    private final Executor mListenerExecutor;
+
+    private final Map<String, Object> mValues = new HashMap<>();
+
+    private final List<OnSharedPreferenceChangeListener> mListeners = new CopyOnWriteArrayList<>();
+
+    private final AtomicInteger mDiskWriteCount = new AtomicInteger();
+    private final AtomicInteger mDispatchCount = new AtomicInteger();
+
+    /**
+     * Creates preferences that notify the listeners on the writing thread.
+     */
+    public FakeSharedPreferences() {
+        this(null);
+    }
+
+    /**
+     * Creates preferences that notify the listeners on <code>listenerExecutor</code>.
+     * @param listenerExecutor to notify the listeners on, or null to notify them on the writing thread
+     */
+    public FakeSharedPreferences(Executor listenerExecutor) {
+        this.mListenerExecutor = listenerExecutor;
+    }
+
+    /**
+     * Returns the number of applies and commits that changed at least one value.
+     * @return the number of disk writes the platform implementation would do
+     */
+    public int getDiskWriteCount() {
+        return mDiskWriteCount.get();
+    }
+
+    /**
+     * Returns the number of changed keys dispatched to the listeners, for each registered listener.
+     * @return the number of listener calls
+     */
+    public int getDispatchCount() {
+        return mDispatchCount.get();
+    }
+
+    @Override
+    public Map<String, ?> getAll() {
+        synchronized (mValues) {
+            return new HashMap<>(mValues);
+        }
+    }
+
+    private Object get(String key) {
+        synchronized (mValues) {
+            return mValues.get(key);
+        }
+    }
+
+    @Override
+    public String getString(String key, String defValue) {
+        final Object value = get(key);
+        return value != null ? (String) value : defValue;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Set<String> getStringSet(String key, Set<String> defValues) {
+        final Object value = get(key);
+        return value != null ? (Set<String>) value : defValues;
+    }
+
+    @Override
+    public int getInt(String key, int defValue) {
+        final Object value = get(key);
+        return value != null ? (Integer) value : defValue;
+    }
+
+    @Override
+    public long getLong(String key, long defValue) {
+        final Object value = get(key);
+        return value != null ? (Long) value : defValue;
+    }
+
+    @Override
+    public float getFloat(String key, float defValue) {
+        final Object value = get(key);
+        return value != null ? (Float) value : defValue;
+    }
+
+    @Override
+    public boolean getBoolean(String key, boolean defValue) {
+        final Object value = get(key);
+        return value != null ? (Boolean) value : defValue;
+    }
+
+    @Override
+    public boolean contains(String key) {
+        synchronized (mValues) {
+            return mValues.containsKey(key);
+        }
+    }
+
+    @Override
+    public Editor edit() {
+        return new FakeEditor();
+    }
+
+    @Override
+    public void registerOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+        if (!mListeners.contains(listener)) {
+            mListeners.add(listener);
+        }
+    }
+
+    @Override
+    public void unregisterOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+        mListeners.remove(listener);
+    }
+
+    private void notifyListeners(final boolean cleared, final List<String> changedKeys) {
+        if ((!cleared && changedKeys.isEmpty()) || mListeners.isEmpty()) {
+            return;
+        }
+
+        final Runnable notification = new Runnable() {
+            @Override
+            public void run() {
+                for (OnSharedPreferenceChangeListener listener : mListeners) {
+                    if (cleared) {
+                        mDispatchCount.incrementAndGet();
+                        listener.onSharedPreferenceChanged(FakeSharedPreferences.this, null);
+                    }
+                    // The platform notifies of the changes in the reverse order
+                    for (int i = changedKeys.size() - 1; i >= 0; i--) {
+                        mDispatchCount.incrementAndGet();
+                        listener.onSharedPreferenceChanged(FakeSharedPreferences.this, changedKeys.get(i));
+                    }
+                }
+            }
+        };
+
+        if (mListenerExecutor != null) {
+            mListenerExecutor.execute(notification);
+        } else {
+            notification.run();
+        }
+    }
+
+    private final class FakeEditor implements Editor {
+
+        /**
+         * Pending values by their keys. The value of a removed key is this editor.
+         */
+        private final Map<String, Object> mPending = new HashMap<>();
+        private boolean mClear;
+
+        private Editor put(String key, Object value) {
+            synchronized (this) {
+                mPending.put(key, value != null ? value : this);
+            }
+            return this;
+        }
+
+        @Override
+        public Editor putString(String key, String value) {
+            return put(key, value);
+        }
+
+        @Override
+        public Editor putStringSet(String key, Set<String> values) {
+            return put(key, values != null ? Collections.unmodifiableSet(new HashSet<>(values)) : null);
+        }
+
+        @Override
+        public Editor putInt(String key, int value) {
+            return put(key, value);
+        }
+
+        @Override
+        public Editor putLong(String key, long value) {
+            return put(key, value);
+        }
+
+        @Override
+        public Editor putFloat(String key, float value) {
+            return put(key, value);
+        }
+
+        @Override
+        public Editor putBoolean(String key, boolean value) {
+            return put(key, value);
+        }
+
+        @Override
+        public Editor remove(String key) {
+            return put(key, null);
+        }
+
+        @Override
+        public Editor clear() {
+            synchronized (this) {
+                mClear = true;
+            }
+            return this;
+        }
+
+        @Override
+        public boolean commit() {
+            final Set<String> changedKeys = new LinkedHashSet<>();
+            final boolean cleared;
+            boolean changed = false;
+            synchronized (this) {
+                synchronized (mValues) {
+                    cleared = mClear;
+                    if (mClear && !mValues.isEmpty()) {
+                        mValues.clear();
+                        changed = true;
+                    }
+                    mClear = false;
+                    for (Map.Entry<String, Object> entry : mPending.entrySet()) {
+                        final String key = entry.getKey();
+                        final Object value = entry.getValue();
+                        if (value == this) {
+                            if (mValues.remove(key) != null) {
+                                changedKeys.add(key);
+                            }
+                        } else if (!value.equals(mValues.put(key, value))) {
+                            changedKeys.add(key);
+                        }
+                    }
+                    mPending.clear();
+                }
+            }
+
+            if (changed || !changedKeys.isEmpty()) {
+                mDiskWriteCount.incrementAndGet();
+            }
+            notifyListeners(cleared, new ArrayList<>(changedKeys));
+            return true;
+        }
+
+        @Override
+        public void apply() {
+            commit();
+        }
+    }
+}
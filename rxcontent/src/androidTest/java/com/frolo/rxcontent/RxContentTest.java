@@ -3,8 +3,10 @@ package com.frolo.rxcontent;
 import android.Manifest;
 import android.app.Instrumentation;
 import android.content.ContentResolver;
+import android.content.ContentUris;
 import android.content.ContentValues;
 import android.content.Context;
+import android.database.Cursor;
 import android.net.Uri;
 import android.provider.MediaStore;
 
@@ -17,12 +19,25 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import io.reactivex.Flowable;
+import io.reactivex.Scheduler;
+import io.reactivex.schedulers.Schedulers;
 import io.reactivex.subscribers.TestSubscriber;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 
@@ -34,6 +49,11 @@ public class RxContentTest {
      */
     private static final long CONTENT_UPDATE_TIMEOUT = 1_000;
 
+    /**
+     * Uri of the provider declared in the test manifest. Observing it and notifying its changes requires no permissions.
+     */
+    private static final Uri TEST_URI = Uri.parse("content://com.frolo.rxcontent.test.preferences/rxcontent_test");
+
     private static final String[] PERMISSIONS =
             {
                     Manifest.permission.READ_EXTERNAL_STORAGE,
@@ -65,6 +85,18 @@ public class RxContentTest {
         }
     }
 
+    /**
+     * Returns a query that returns the number of times it is performed.
+     */
+    private Callable<Integer> countingQuery(final AtomicInteger queryCount) {
+        return new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return queryCount.incrementAndGet();
+            }
+        };
+    }
+
     @Before
     public void setUp() {
         Instrumentation instrumentation = InstrumentationRegistry.getInstrumentation();
@@ -203,4 +235,580 @@ public class RxContentTest {
         }
     }
 
+    @Test
+    public void test_uriTrie() {
+        final Uri members = Uri.parse("content://media/external/audio/playlists/1/members");
+        final UriTrie trie = new UriTrie();
+        trie.add(ContentUris.withAppendedId(members, 10));
+        trie.add(ContentUris.withAppendedId(members, 11));
+
+        // The uri itself
+        assertTrue(trie.matches(ContentUris.withAppendedId(members, 10), false));
+        // Ancestors
+        assertTrue(trie.matches(members, false));
+        assertTrue(trie.matches(Uri.parse("content://media"), false));
+        // Descendants
+        assertTrue(trie.matches(Uri.parse("content://media/external/audio/playlists/1/members/11/extra"), true));
+        assertFalse(trie.matches(Uri.parse("content://media/external/audio/playlists/1/members/11/extra"), false));
+        // Siblings and other authorities
+        assertFalse(trie.matches(ContentUris.withAppendedId(members, 12), true));
+        assertFalse(trie.matches(Uri.parse("content://contacts/external/audio/playlists/1/members/10"), true));
+    }
+
+    @Test
+    public void test_registerTriggers_collapsesSiblings() {
+        final HistogramMetrics metrics = new HistogramMetrics();
+        RxContent.setMetrics(metrics);
+        final Uri items = TEST_URI.buildUpon().appendPath("items").build();
+        final List<Uri> members = new ArrayList<>();
+        for (int i = 0; i < RxContent.ANCESTOR_COLLAPSE_THRESHOLD; i++) {
+            members.add(ContentUris.withAppendedId(items, i));
+        }
+        final TestSubscriber<Uri> subscriber = TestSubscriber.create();
+        try {
+            final int observerCount = metrics.getObserverCount();
+            RxContent.createUriFlowable(mResolver, members, ObservationSpec.descendants()).subscribe(subscriber);
+            // A single observer is registered on the common ancestor
+            assertEquals(observerCount + 1, metrics.getObserverCount());
+
+            // A change of a member fires, a change of a sibling, that is not a member, is dropped
+            mResolver.notifyChange(ContentUris.withAppendedId(items, 1), null);
+            mResolver.notifyChange(ContentUris.withAppendedId(items, 100), null);
+            sleepSafely(CONTENT_UPDATE_TIMEOUT);
+            subscriber.assertValues(ContentUris.withAppendedId(items, 1));
+
+            subscriber.cancel();
+            assertEquals(observerCount, metrics.getObserverCount());
+        } finally {
+            subscriber.cancel();
+            RxContent.setMetrics(null);
+        }
+    }
+
+    @Test
+    public void test_registerTriggers_belowThreshold() {
+        final HistogramMetrics metrics = new HistogramMetrics();
+        RxContent.setMetrics(metrics);
+        final Uri items = TEST_URI.buildUpon().appendPath("items").build();
+        final List<Uri> members = new ArrayList<>();
+        for (int i = 0; i < RxContent.ANCESTOR_COLLAPSE_THRESHOLD - 1; i++) {
+            members.add(ContentUris.withAppendedId(items, i));
+        }
+        final TestSubscriber<Uri> subscriber = TestSubscriber.create();
+        try {
+            final int observerCount = metrics.getObserverCount();
+            RxContent.createUriFlowable(mResolver, members, ObservationSpec.descendants()).subscribe(subscriber);
+            // One observer per Uri
+            assertEquals(observerCount + members.size(), metrics.getObserverCount());
+
+            mResolver.notifyChange(ContentUris.withAppendedId(items, 1), null);
+            sleepSafely(CONTENT_UPDATE_TIMEOUT);
+            subscriber.assertValues(ContentUris.withAppendedId(items, 1));
+
+            subscriber.cancel();
+            assertEquals(observerCount, metrics.getObserverCount());
+        } finally {
+            subscriber.cancel();
+            RxContent.setMetrics(null);
+        }
+    }
+
+    @Test
+    public void test_observationSpec() {
+        final ObservationSpec spec = ObservationSpec.exact()
+                .pathPattern("/external/audio/playlists/.*/members")
+                .filter(new UriFilter() {
+                    @Override
+                    public boolean accept(Uri uri) {
+                        return !uri.getPathSegments().contains("0");
+                    }
+                });
+
+        assertFalse(spec.notifyForDescendants());
+        assertTrue(spec.accept(Uri.parse("content://media/external/audio/playlists/1/members")));
+        assertFalse(spec.accept(Uri.parse("content://media/external/audio/playlists/0/members")));
+        assertFalse(spec.accept(Uri.parse("content://media/external/audio/playlists/1")));
+        // Changes without uri are always dispatched
+        assertTrue(spec.accept(null));
+    }
+
+    @Test
+    public void test_latestPerFrame() {
+        final int count = 10_000;
+        final TestSubscriber<Integer> subscriber = TestSubscriber.create();
+
+        Flowable.range(0, count)
+                .subscribeOn(Schedulers.computation())
+                .compose(RxContent.<Integer>latestPerFrame())
+                .subscribe(subscriber);
+
+        subscriber.awaitTerminalEvent(CONTENT_UPDATE_TIMEOUT, TimeUnit.MILLISECONDS);
+
+        subscriber.assertComplete();
+        // Intermediate items are dropped, but the latest one is always delivered
+        assertTrue(subscriber.valueCount() < count);
+        assertEquals(Integer.valueOf(count - 1), subscriber.values().get(subscriber.valueCount() - 1));
+    }
+
+    @Test
+    public void test_querySingle() {
+        final Uri uri = MediaStore.Audio.Playlists.EXTERNAL_CONTENT_URI;
+
+        final List<Playlist> playlists = RxContent.querySingle(
+                mResolver, uri, Playlist.PROJECTION, null, null, null, mQueryExecutor, Playlist.CURSOR_MAPPER)
+                .blockingGet();
+
+        final int count = RxContent.count(mResolver, uri, null, null, mQueryExecutor)
+                .blockingGet();
+
+        assertEquals(playlists.size(), count);
+        assertEquals(count > 0, RxContent.exists(mResolver, uri, null, null, mQueryExecutor).blockingGet());
+    }
+
+    @Test
+    public void test_metrics() {
+        final HistogramMetrics metrics = new HistogramMetrics();
+        RxContent.setMetrics(metrics);
+        try {
+            final Uri uri = MediaStore.Audio.Playlists.EXTERNAL_CONTENT_URI;
+            final List<Playlist> playlists = RxContent.querySingle(
+                    mResolver, uri, Playlist.PROJECTION, null, null, null, mQueryExecutor, Playlist.CURSOR_MAPPER)
+                    .blockingGet();
+
+            assertEquals(1, metrics.getQueryLatency().getCount());
+            assertEquals(playlists.size(), metrics.getRowCounts().getMax());
+        } finally {
+            RxContent.setMetrics(null);
+        }
+    }
+
+    @Test
+    public void test_metrics_notifications() throws Exception {
+        final Uri rejectedUri = TEST_URI.buildUpon().appendPath("rejected").build();
+        final ObservationSpec spec = ObservationSpec.descendants()
+                .filter(new UriFilter() {
+                    @Override
+                    public boolean accept(Uri uri) {
+                        return !rejectedUri.equals(uri);
+                    }
+                });
+
+        final HistogramMetrics metrics = new HistogramMetrics();
+        RxContent.setMetrics(metrics);
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        final CountDownLatch gate = new CountDownLatch(1);
+        final AtomicInteger queryCount = new AtomicInteger();
+        final Callable<Integer> query = new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                final int count = queryCount.incrementAndGet();
+                if (count == 2) {
+                    // Holds the first re-query, while the burst of notifications comes
+                    gate.await();
+                }
+                return count;
+            }
+        };
+        final TestSubscriber<Integer> subscriber = TestSubscriber.create();
+        try {
+            RxContent.createFlowable(mResolver, TEST_URI, spec, executor, query).subscribe(subscriber);
+            subscriber.awaitCount(1);
+
+            mResolver.notifyChange(rejectedUri, null);
+            sleepSafely(CONTENT_UPDATE_TIMEOUT);
+
+            mResolver.notifyChange(TEST_URI, null);
+            sleepSafely(CONTENT_UPDATE_TIMEOUT);
+            // The first notification of the burst marks the query dirty, the rest are coalesced into it
+            for (int i = 0; i < 10; i++) {
+                mResolver.notifyChange(TEST_URI, null);
+            }
+            sleepSafely(CONTENT_UPDATE_TIMEOUT);
+            gate.countDown();
+            subscriber.awaitCount(3);
+
+            final HistogramMetrics.NotificationCounts rejectedCounts = metrics.getNotificationCounts().get(rejectedUri);
+            assertEquals(1, rejectedCounts.getReceived());
+            assertEquals(1, rejectedCounts.getDropped());
+            assertEquals(0, rejectedCounts.getCoalesced());
+
+            final HistogramMetrics.NotificationCounts counts = metrics.getNotificationCounts().get(TEST_URI);
+            assertEquals(11, counts.getReceived());
+            assertEquals(0, counts.getDropped());
+            assertEquals(9, counts.getCoalesced());
+        } finally {
+            RxContent.setMetrics(null);
+            gate.countDown();
+            subscriber.cancel();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void test_histogram() {
+        final Histogram histogram = new Histogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+        // Percentiles are reported with the relative error of at most 1/16
+        final long p50 = histogram.getValueAtPercentile(50);
+        assertTrue(Math.abs(p50 - 500000L) <= 500000L / 16);
+        assertEquals(1000000L, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void test_queryPolicy() {
+        final List<QueryViolation> violations = new CopyOnWriteArrayList<>();
+        RxContent.setQueryPolicy(new QueryPolicy.Builder()
+                .detectSlowQueries(1, TimeUnit.NANOSECONDS)
+                .penaltyListener(new QueryPolicy.ViolationHandler() {
+                    @Override
+                    public void onViolation(QueryViolation violation) {
+                        violations.add(violation);
+                    }
+                })
+                .build());
+        // The query runs on another thread, so only the captured call site has this test in the stack
+        final ExecutorService queryExecutor = Executors.newSingleThreadExecutor();
+        try {
+            final Uri uri = MediaStore.Audio.Playlists.EXTERNAL_CONTENT_URI;
+            RxContent.querySingle(
+                    mResolver, uri, Playlist.PROJECTION, null, null, null, queryExecutor, Playlist.CURSOR_MAPPER)
+                    .blockingGet();
+
+            assertEquals(1, violations.size());
+            final QueryViolation violation = violations.get(0);
+            assertEquals(QueryViolation.Type.SLOW_QUERY, violation.getType());
+            assertEquals(uri, violation.getUri());
+            // The violation is reported with the stack of the subscribing call site
+            assertTrue(hasMethod(violation.getStackTrace(), "test_queryPolicy"));
+        } finally {
+            RxContent.setQueryPolicy(null);
+            queryExecutor.shutdown();
+        }
+    }
+
+    @Test
+    public void test_queryPolicy_mainThread() {
+        final List<QueryViolation> violations = new CopyOnWriteArrayList<>();
+        RxContent.setQueryPolicy(new QueryPolicy.Builder()
+                .detectMainThreadQueries()
+                .penaltyListener(new QueryPolicy.ViolationHandler() {
+                    @Override
+                    public void onViolation(QueryViolation violation) {
+                        violations.add(violation);
+                    }
+                })
+                .build());
+        try {
+            final Uri uri = MediaStore.Audio.Playlists.EXTERNAL_CONTENT_URI;
+
+            // Not a violation on the test thread
+            RxContent.querySingle(
+                    mResolver, uri, Playlist.PROJECTION, null, null, null, mQueryExecutor, Playlist.CURSOR_MAPPER)
+                    .blockingGet();
+            assertTrue(violations.isEmpty());
+
+            InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    RxContent.querySingle(
+                    mResolver, uri, Playlist.PROJECTION, null, null, null, mQueryExecutor, Playlist.CURSOR_MAPPER)
+                    .blockingGet();
+                }
+            });
+
+            assertEquals(1, violations.size());
+            final QueryViolation violation = violations.get(0);
+            assertEquals(QueryViolation.Type.MAIN_THREAD_QUERY, violation.getType());
+            assertEquals(uri, violation.getUri());
+        } finally {
+            RxContent.setQueryPolicy(null);
+        }
+    }
+
+    private static boolean hasMethod(StackTraceElement[] stackTrace, String methodName) {
+        for (StackTraceElement element : stackTrace) {
+            if (methodName.equals(element.getMethodName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Test
+    public void test_trace() {
+        final Uri uri = Uri.parse("content://media/external/audio/playlists?limit=1#fragment");
+        final Uri other = Uri.parse("content://media/external/audio/media");
+
+        // The query and the fragment are left out of the labels
+        assertEquals("RxContent.query media/external/audio/playlists", RxTrace.sectionName("RxContent.query", uri));
+        assertEquals("RxContent.register media/external/audio/playlists +1",
+                RxTrace.sectionName("RxContent.register", Arrays.asList(uri, other)));
+        assertEquals("RxContent.fill", RxTrace.sectionName("RxContent.fill", null));
+
+        final StringBuilder longPath = new StringBuilder("content://media");
+        for (int i = 0; i < 20; i++) {
+            longPath.append("/segment").append(i);
+        }
+        assertEquals(127, RxTrace.sectionName("RxContent.query", Uri.parse(longPath.toString())).length());
+
+        // No sections are begun while tracing is disabled
+        assertFalse(RxTrace.beginSection("RxContent.query", uri));
+        RxTrace.setEnabled(true);
+        try {
+            assertTrue(RxTrace.isEnabled());
+            final boolean traced = RxTrace.beginSection("RxContent.query", uri);
+            RxTrace.endSection(traced);
+            assertTrue(traced);
+        } finally {
+            RxTrace.setEnabled(false);
+        }
+        assertFalse(RxTrace.isEnabled());
+    }
+
+    @Test
+    public void test_projectionPruning() {
+        final Uri uri = MediaStore.Audio.Playlists.EXTERNAL_CONTENT_URI;
+        final ContentValues values = new ContentValues();
+        values.put(MediaStore.Audio.Playlists.NAME, "test_projection");
+        final Uri insertedUri = mResolver.insert(uri, values);
+
+        final List<Integer> columnCounts = new CopyOnWriteArrayList<>();
+        final ProjectionCursorMapper<Long> idMapper = new ProjectionCursorMapper<Long>() {
+            final String[] columns = { MediaStore.Audio.Playlists._ID };
+
+            @Override
+            public String[] getColumns() {
+                return columns;
+            }
+
+            @Override
+            public Long map(Cursor cursor) {
+                columnCounts.add(cursor.getColumnCount());
+                return cursor.getLong(0);
+            }
+        };
+
+        final List<QueryViolation> violations = new CopyOnWriteArrayList<>();
+        try {
+            // The declared columns replace the null projection
+            final List<Long> ids = RxContent.querySingle(
+                    mResolver, uri, null, null, null, null, mQueryExecutor, idMapper)
+                    .blockingGet();
+            assertFalse(ids.isEmpty());
+            for (Integer columnCount : columnCounts) {
+                assertEquals(1, (int) columnCount);
+            }
+
+            // The mapper looks up the name, that its columns are missing
+            RxContent.setQueryPolicy(new QueryPolicy.Builder()
+                    .detectUnprojectedColumns()
+                    .penaltyListener(new QueryPolicy.ViolationHandler() {
+                        @Override
+                        public void onViolation(QueryViolation violation) {
+                            violations.add(violation);
+                        }
+                    })
+                    .build());
+            final ProjectionCursorMapper<String> nameMapper = new ProjectionCursorMapper<String>() {
+                @Override
+                public String[] getColumns() {
+                    return idMapper.getColumns();
+                }
+
+                @Override
+                public String map(Cursor cursor) {
+                    final int index = cursor.getColumnIndex(MediaStore.Audio.Playlists.NAME);
+                    return index >= 0 ? cursor.getString(index) : null;
+                }
+            };
+            final List<String> names = RxContent.querySingle(
+                    mResolver, uri, Playlist.PROJECTION, null, null, null, mQueryExecutor, nameMapper)
+                    .blockingGet();
+
+            assertFalse(names.isEmpty());
+            // Reported once per query, not once per row
+            assertEquals(1, violations.size());
+            final QueryViolation violation = violations.get(0);
+            assertEquals(QueryViolation.Type.UNPROJECTED_COLUMN, violation.getType());
+            assertEquals(MediaStore.Audio.Playlists.NAME, violation.getColumn());
+        } finally {
+            RxContent.setQueryPolicy(null);
+            if (insertedUri != null) {
+                mResolver.delete(insertedUri, null, null);
+            }
+        }
+    }
+
+    @Test
+    public void test_createFlowable_coalescesNotifications() throws Exception {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        final CountDownLatch gate = new CountDownLatch(1);
+        final AtomicInteger queryCount = new AtomicInteger();
+        final Callable<Integer> query = new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                final int count = queryCount.incrementAndGet();
+                if (count == 2) {
+                    // Holds the first re-query, while the burst of notifications comes
+                    gate.await();
+                }
+                return count;
+            }
+        };
+        final TestSubscriber<Integer> subscriber = TestSubscriber.create();
+        try {
+            RxContent.createFlowable(mResolver, TEST_URI, executor, query).subscribe(subscriber);
+            subscriber.awaitCount(1);
+
+            mResolver.notifyChange(TEST_URI, null);
+            sleepSafely(CONTENT_UPDATE_TIMEOUT);
+            for (int i = 0; i < 10; i++) {
+                mResolver.notifyChange(TEST_URI, null);
+            }
+            sleepSafely(CONTENT_UPDATE_TIMEOUT);
+            gate.countDown();
+
+            subscriber.awaitCount(3);
+            sleepSafely(CONTENT_UPDATE_TIMEOUT);
+            // The burst is coalesced into a single re-query
+            assertEquals(3, queryCount.get());
+            subscriber.assertValues(1, 2, 3);
+        } finally {
+            gate.countDown();
+            subscriber.cancel();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void test_createFlowable_keepsLatest() {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        final AtomicInteger queryCount = new AtomicInteger();
+        final TestSubscriber<Integer> subscriber = TestSubscriber.create(1L);
+        try {
+            RxContent.createFlowable(mResolver, TEST_URI, executor, countingQuery(queryCount)).subscribe(subscriber);
+            subscriber.awaitCount(1);
+
+            // The consumer is slow to request, so the results of the re-queries replace each other
+            for (int i = 0; i < 3; i++) {
+                mResolver.notifyChange(TEST_URI, null);
+                sleepSafely(CONTENT_UPDATE_TIMEOUT);
+            }
+            assertEquals(4, queryCount.get());
+            subscriber.assertValues(1);
+
+            subscriber.request(1);
+            subscriber.awaitCount(2);
+            subscriber.assertValues(1, 4);
+        } finally {
+            subscriber.cancel();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void test_createFlowable_cancel() {
+        final HistogramMetrics metrics = new HistogramMetrics();
+        RxContent.setMetrics(metrics);
+        final List<Scheduler.Worker> workers = new CopyOnWriteArrayList<>();
+        final Scheduler scheduler = new Scheduler() {
+            @Override
+            public Worker createWorker() {
+                final Worker worker = Schedulers.single().createWorker();
+                workers.add(worker);
+                return worker;
+            }
+        };
+        final AtomicInteger queryCount = new AtomicInteger();
+        final TestSubscriber<Integer> subscriber = TestSubscriber.create();
+        try {
+            final int observerCount = metrics.getObserverCount();
+            RxContent.createFlowable(mResolver, TEST_URI, scheduler, countingQuery(queryCount)).subscribe(subscriber);
+            subscriber.awaitCount(1);
+            assertEquals(observerCount + 1, metrics.getObserverCount());
+
+            subscriber.cancel();
+            sleepSafely(CONTENT_UPDATE_TIMEOUT);
+            assertEquals(observerCount, metrics.getObserverCount());
+            assertEquals(1, workers.size());
+            assertTrue(workers.get(0).isDisposed());
+
+            // Nothing is queried after the cancellation
+            mResolver.notifyChange(TEST_URI, null);
+            sleepSafely(CONTENT_UPDATE_TIMEOUT);
+            assertEquals(1, queryCount.get());
+        } finally {
+            subscriber.cancel();
+            RxContent.setMetrics(null);
+        }
+    }
+
+    @Test
+    public void test_createFlowable_error() {
+        final HistogramMetrics metrics = new HistogramMetrics();
+        RxContent.setMetrics(metrics);
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        final AtomicInteger queryCount = new AtomicInteger();
+        final Callable<Integer> query = new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                final int count = queryCount.incrementAndGet();
+                if (count == 2) {
+                    throw new IllegalStateException("Test query failure");
+                }
+                return count;
+            }
+        };
+        final TestSubscriber<Integer> subscriber = TestSubscriber.create();
+        try {
+            final int observerCount = metrics.getObserverCount();
+            RxContent.createFlowable(mResolver, TEST_URI, executor, query).subscribe(subscriber);
+            subscriber.awaitCount(1);
+
+            mResolver.notifyChange(TEST_URI, null);
+            assertTrue(subscriber.awaitTerminalEvent(CONTENT_UPDATE_TIMEOUT, TimeUnit.MILLISECONDS));
+            subscriber.assertValues(1);
+            subscriber.assertError(IllegalStateException.class);
+            // The observers are unregistered before the error is delivered
+            assertEquals(observerCount, metrics.getObserverCount());
+        } finally {
+            subscriber.cancel();
+            executor.shutdown();
+            RxContent.setMetrics(null);
+        }
+    }
+
+    @Test
+    public void test_createFlowable_skipsNull() {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        final AtomicInteger queryCount = new AtomicInteger();
+        final Callable<Integer> query = new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                final int count = queryCount.incrementAndGet();
+                return count != 2 ? count : null;
+            }
+        };
+        final TestSubscriber<Integer> subscriber = TestSubscriber.create();
+        try {
+            RxContent.createFlowable(mResolver, TEST_URI, executor, query).subscribe(subscriber);
+            subscriber.awaitCount(1);
+
+            mResolver.notifyChange(TEST_URI, null);
+            sleepSafely(CONTENT_UPDATE_TIMEOUT);
+            subscriber.assertValues(1);
+
+            mResolver.notifyChange(TEST_URI, null);
+            subscriber.awaitCount(2);
+            subscriber.assertValues(1, 3);
+            subscriber.assertNoErrors();
+            subscriber.assertNotComplete();
+        } finally {
+            subscriber.cancel();
+            executor.shutdown();
+        }
+    }
+
 }
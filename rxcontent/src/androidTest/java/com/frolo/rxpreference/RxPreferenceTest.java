@@ -13,16 +13,28 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
+import java.io.File;
+import java.io.RandomAccessFile;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import io.reactivex.Completable;
+import io.reactivex.disposables.Disposable;
 import io.reactivex.subscribers.TestSubscriber;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 
@@ -31,6 +43,16 @@ public class RxPreferenceTest {
 
     private static final String PREFS_NAME = "com.frolo.rxpreference.test";
 
+    /**
+     * Authority of {@link PreferenceProvider} declared in the test manifest.
+     */
+    private static final String MULTI_PROCESS_AUTHORITY = "com.frolo.rxcontent.test.preferences";
+
+    /**
+     * Max time that {@link android.content.ContentResolver} may take to dispatch Uri changes to its observers.
+     */
+    private static final long CONTENT_UPDATE_TIMEOUT = 1_000;
+
     private SharedPreferences mPreferences;
     private Handler mMainHandler;
     private Executor mPrefsExecutor;
@@ -428,4 +450,434 @@ public class RxPreferenceTest {
     }
     //endregion
 
+    //region Test shared listener
+    @Test
+    public void test_ConcurrentSubscribers() {
+        final RxPreference<Integer> preference = RxPreference.ofInt(mPreferences,"int_key", mPrefsExecutor);
+        final RxPreference<Integer> otherPreference = RxPreference.ofInt(mPreferences,"other_int_key", mPrefsExecutor);
+
+        final TestSubscriber<Integer> subscriber1 = TestSubscriber.create();
+        final TestSubscriber<Integer> subscriber2 = TestSubscriber.create();
+        final TestSubscriber<Integer> otherSubscriber = TestSubscriber.create();
+
+        preference.get(0).subscribe(subscriber1);
+        preference.get(0).subscribe(subscriber2);
+        otherPreference.get(0).subscribe(otherSubscriber);
+
+        preference.set(1).subscribe();
+
+        runOnNextLoop(new Runnable() {
+            @Override
+            public void run() {
+                subscriber1.assertValues(0, 1);
+                subscriber2.assertValues(0, 1);
+                // Changes of other keys are not dispatched
+                otherSubscriber.assertValues(0);
+
+                subscriber1.cancel();
+
+                preference.set(2).subscribe();
+            }
+        });
+
+        runOnNextLoop(new Runnable() {
+            @Override
+            public void run() {
+                subscriber1.assertValues(0, 1);
+                subscriber2.assertValues(0, 1, 2);
+
+                subscriber2.cancel();
+                otherSubscriber.cancel();
+            }
+        });
+    }
+    //endregion
+
+    //region Test transaction
+    @Test
+    public void test_Transaction() {
+        final RxPreference<Integer> intPreference = RxPreference.ofInt(mPreferences,"int_key", mPrefsExecutor);
+        final RxPreference<String> stringPreference = RxPreference.ofString(mPreferences,"string_key", mPrefsExecutor);
+        final RxPreference<Boolean> boolPreference = RxPreference.ofBoolean(mPreferences,"bool_key", mPrefsExecutor);
+
+        boolPreference.blockingSet(true);
+
+        RxPreferences.transaction(mPreferences)
+                .set(intPreference, 1)
+                .set(stringPreference, "x")
+                .set(intPreference, 2)
+                .remove(boolPreference)
+                .commit()
+                .blockingAwait();
+
+        assertEquals(Integer.valueOf(2), intPreference.blockingGet());
+        assertEquals("x", stringPreference.blockingGet());
+        assertNull(boolPreference.blockingGet());
+    }
+    //endregion
+
+    //region Test write coalescing
+    @Test
+    public void test_CoalescedWrites() {
+        final RxPreference<Long> preference = RxPreference.ofLong(mPreferences,"long_key", mPrefsExecutor);
+
+        RxPreferences.coalesceWrites(mPreferences, 1, TimeUnit.HOURS);
+        try {
+            preference.blockingSet(1L);
+            preference.blockingSet(2L);
+
+            // The latest value is visible, but not written yet
+            assertEquals(Long.valueOf(2L), preference.blockingGet());
+            assertFalse(mPreferences.contains("long_key"));
+
+            RxPreferences.flush(mPreferences).blockingAwait();
+
+            assertEquals(2L, mPreferences.getLong("long_key", 0L));
+        } finally {
+            RxPreferences.coalesceWrites(mPreferences, 0, TimeUnit.HOURS);
+        }
+    }
+    //endregion
+
+    //region Test primitive preferences
+    @Test
+    public void test_IntPrimitive() {
+        final RxIntPreference preference = RxIntPreference.of(mPreferences, "int_key", mPrefsExecutor);
+        final int[] observed = new int[1];
+
+        assertFalse(preference.isPresent());
+        assertEquals(7, preference.getInt(7));
+
+        final Disposable observation = preference.observe(7, new RxIntPreference.Listener() {
+            @Override
+            public void onValueChanged(int value) {
+                observed[0] = value;
+            }
+        });
+        assertEquals(7, observed[0]);
+
+        preference.set(1).blockingAwait();
+
+        assertTrue(preference.isPresent());
+        assertEquals(1, preference.getInt(7));
+
+        // Writes made bypassing the preference are mirrored too
+        mPreferences.edit().putInt("int_key", 2).apply();
+
+        runOnNextLoop(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    assertEquals(2, preference.getInt(7));
+                    assertEquals(2, observed[0]);
+                } finally {
+                    observation.dispose();
+                }
+            }
+        });
+    }
+
+    @Test
+    public void test_OtherPrimitives() {
+        final RxLongPreference longPreference = RxLongPreference.of(mPreferences, "long_key", mPrefsExecutor);
+        final RxFloatPreference floatPreference = RxFloatPreference.of(mPreferences, "float_key", mPrefsExecutor);
+        final RxBooleanPreference booleanPreference = RxBooleanPreference.of(mPreferences, "boolean_key", mPrefsExecutor);
+
+        assertEquals(-1L, longPreference.getLong(-1L));
+        assertEquals(-1.5f, floatPreference.getFloat(-1.5f), 0f);
+        assertTrue(booleanPreference.getBoolean(true));
+
+        longPreference.set(Long.MIN_VALUE).blockingAwait();
+        floatPreference.set(0.25f).blockingAwait();
+        booleanPreference.set(false).blockingAwait();
+
+        assertEquals(Long.MIN_VALUE, longPreference.getLong(-1L));
+        assertEquals(0.25f, floatPreference.getFloat(-1.5f), 0f);
+        assertFalse(booleanPreference.getBoolean(true));
+
+        floatPreference.remove().blockingAwait();
+        assertFalse(floatPreference.isPresent());
+        assertEquals(-1.5f, floatPreference.getFloat(-1.5f), 0f);
+    }
+    //endregion
+
+    //region Test immediate emission
+    @Test
+    public void test_Immediate() {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final RxPreference<String> preference = RxPreference.ofString(mPreferences, "string_key", executor);
+            preference.blockingSet("test1");
+            // Makes sure the file is loaded
+            preference.blockingGet();
+
+            final TestSubscriber<String> subscriber = TestSubscriber.create();
+            preference.getImmediate("default").subscribe(subscriber);
+
+            // The current value is emitted on the subscribing thread
+            subscriber.assertValue("test1");
+
+            preference.blockingSet("test2");
+
+            subscriber.awaitCount(2);
+            subscriber.assertValues("test1", "test2");
+
+            subscriber.cancel();
+        } finally {
+            executor.shutdown();
+        }
+    }
+    //endregion
+
+    //region Test distinct values
+    @Test
+    public void test_DistinctValues() {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final RxPreference<Integer> preference = RxPreference.ofInt(mPreferences, "int_key", executor);
+            preference.blockingSet(1);
+
+            final TestSubscriber<Integer> subscriber = TestSubscriber.create();
+            preference.get(0).subscribe(subscriber);
+            subscriber.awaitCount(1);
+
+            // Writing the same value again is not emitted
+            preference.blockingSet(1);
+            preference.blockingSet(2);
+
+            subscriber.awaitCount(2);
+            subscriber.assertValues(1, 2);
+
+            subscriber.cancel();
+        } finally {
+            executor.shutdown();
+        }
+    }
+    //endregion
+
+    //region Test snapshots
+    @Test
+    public void test_Snapshot() {
+        final RxPreference<Integer> volume = RxPreference.ofInt(mPreferences, "int_key", mPrefsExecutor);
+        final RxPreference<String> theme = RxPreference.ofString(mPreferences, "string_key", mPrefsExecutor);
+        final RxPreference<Boolean> shuffle = RxPreference.ofBoolean(mPreferences, "boolean_key", mPrefsExecutor);
+        volume.blockingSet(1);
+
+        final TestSubscriber<PreferenceSnapshot> subscriber = TestSubscriber.create();
+        RxPreferences.observe(volume, theme, shuffle).subscribe(subscriber);
+
+        subscriber.awaitCount(1);
+        PreferenceSnapshot snapshot = subscriber.values().get(0);
+        assertEquals(Integer.valueOf(1), snapshot.get(volume));
+        assertEquals("default", snapshot.get(theme, "default"));
+
+        // One bulk write results in one snapshot
+        RxPreferences.transaction(mPreferences)
+                .set(volume, 2)
+                .set(theme, "dark")
+                .commit()
+                .blockingAwait();
+
+        subscriber.awaitCount(2);
+        snapshot = subscriber.values().get(1);
+        assertEquals(Integer.valueOf(2), snapshot.get(volume));
+        assertEquals("dark", snapshot.get(theme));
+        assertTrue(snapshot.isChanged(volume));
+        assertFalse(snapshot.isChanged(shuffle));
+        assertEquals(2, snapshot.getChangedKeys().size());
+
+        subscriber.cancel();
+    }
+    //endregion
+
+    //region Test object preferences
+    @Test
+    public void test_Object() {
+        final AtomicInteger decodeCount = new AtomicInteger(0);
+        final Codec<int[]> codec = new Codec<int[]>() {
+            @Override
+            public byte[] encode(int[] value) {
+                final byte[] bytes = new byte[value.length];
+                for (int i = 0; i < value.length; i++) {
+                    bytes[i] = (byte) value[i];
+                }
+                return bytes;
+            }
+
+            @Override
+            public int[] decode(byte[] bytes) {
+                decodeCount.incrementAndGet();
+                final int[] value = new int[bytes.length];
+                for (int i = 0; i < bytes.length; i++) {
+                    value[i] = bytes[i];
+                }
+                return value;
+            }
+        };
+
+        final RxPreference<int[]> preference = RxPreference.ofObject(mPreferences, "object_key", codec, mPrefsExecutor);
+        assertNull(preference.blockingGet());
+
+        // Written by another instance, so that this one has to decode it
+        RxPreference.ofObject(mPreferences, "object_key", codec).blockingSet(new int[] { 1, 2, 3 });
+
+        final int[] value = preference.blockingGet();
+        assertEquals(3, value.length);
+        assertEquals(2, value[1]);
+
+        // The decoded value is cached until the key is changed
+        assertSame(value, preference.blockingGet());
+        assertEquals(1, decodeCount.get());
+    }
+    //endregion
+
+    //region Test preloading
+    @Test
+    public void test_Preload() {
+        final Context ctx = InstrumentationRegistry.getInstrumentation().getContext();
+        final Set<String> preloaded = new HashSet<>();
+
+        RxPreferences.preload(ctx, Arrays.asList(PREFS_NAME, PREFS_NAME + ".other"), new RxPreferences.PreloadListener() {
+            @Override
+            public void onPreloaded(String name, long loadTimeMillis) {
+                assertTrue(loadTimeMillis >= 0);
+                synchronized (preloaded) {
+                    preloaded.add(name);
+                }
+            }
+        }).blockingAwait();
+
+        assertTrue(equals(setOf(PREFS_NAME, PREFS_NAME + ".other"), preloaded));
+        // The file marked by the preload may be collected, the loaded state is kept for the preferences
+        Runtime.getRuntime().gc();
+        assertTrue(PreferenceFile.of(mPreferences).isLoaded());
+    }
+    //endregion
+
+    //region Test mapped log preferences
+    @Test
+    public void test_MappedLog() throws Exception {
+        final Context ctx = InstrumentationRegistry.getInstrumentation().getContext();
+        final File file = new File(ctx.getCacheDir(), "rxpreference_test.log");
+        file.delete();
+
+        MappedLogPreferences preferences = MappedLogPreferences.open(file);
+        final RxPreference<Integer> intPreference = RxPreference.ofInt(preferences, "int_key", mPrefsExecutor);
+        final RxPreference<Set<String>> setPreference = RxPreference.ofStringSet(preferences, "string_set_key", mPrefsExecutor);
+
+        // Enough writes to compact the log a few times
+        for (int i = 0; i < 10000; i++) {
+            intPreference.blockingSet(i);
+        }
+        // The log is compacted in the background, back to the minimal region
+        preferences.awaitCompaction();
+        assertTrue(file.length() < 10000 * 8);
+        setPreference.blockingSet(setOf("a", "b"));
+        assertTrue(preferences.edit().putString("string_key", "last").commit());
+        preferences.close();
+
+        // Corrupt the last record as if the process crashed in the middle of writing it
+        final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        long last = raf.length() - 1;
+        while (last > 0) {
+            raf.seek(last);
+            if (raf.read() != 0) {
+                break;
+            }
+            last--;
+        }
+        raf.seek(last);
+        raf.write(0x7f);
+        raf.close();
+
+        preferences = MappedLogPreferences.open(file);
+        assertEquals(9999, preferences.getInt("int_key", -1));
+        assertTrue(equals(setOf("a", "b"), preferences.getStringSet("string_set_key", null)));
+        assertFalse(preferences.contains("string_key"));
+
+        // The log is writable after the recovery
+        assertTrue(preferences.edit().putString("string_key", "recovered").commit());
+        preferences.close();
+        preferences = MappedLogPreferences.open(file);
+        assertEquals("recovered", preferences.getString("string_key", null));
+        preferences.close();
+    }
+    //endregion
+
+    //region Test durable writes
+    @Test
+    public void test_DurableWrites() {
+        final RxPreference<Integer> intPreference = RxPreference.ofInt(mPreferences, "int_key", mPrefsExecutor);
+        final RxPreference<String> stringPreference = RxPreference.ofString(mPreferences, "string_key", mPrefsExecutor);
+        stringPreference.blockingSet("test");
+
+        Completable.mergeArray(
+                intPreference.setDurable(1),
+                intPreference.setDurable(2),
+                stringPreference.removeDurable()
+        ).blockingAwait();
+
+        assertEquals(Integer.valueOf(2), intPreference.blockingGet());
+        assertNull(stringPreference.blockingGet());
+    }
+    //endregion
+
+    //region Test multi-process preferences
+    @Test
+    public void test_MultiProcess() throws Exception {
+        final Context ctx = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        final String name = PREFS_NAME + ".multiprocess";
+        // The file as it is seen in the process of the provider
+        final SharedPreferences local = ctx.getSharedPreferences(name, Context.MODE_PRIVATE);
+        assertTrue(local.edit().clear().commit());
+
+        final SharedPreferences preferences = RxPreferences.multiProcess(ctx, MULTI_PROCESS_AUTHORITY, name);
+
+        // Put
+        assertTrue(preferences.edit()
+                .putInt("int_key", 1)
+                .putString("string_key", "test")
+                .putStringSet("string_set_key", setOf("a", "b"))
+                .commit());
+        assertEquals(1, preferences.getInt("int_key", -1));
+        assertEquals("test", preferences.getString("string_key", null));
+        assertTrue(equals(setOf("a", "b"), preferences.getStringSet("string_set_key", null)));
+        assertEquals(1, local.getInt("int_key", -1));
+
+        // Remove
+        assertTrue(preferences.edit().remove("string_key").commit());
+        assertFalse(preferences.contains("string_key"));
+        assertFalse(local.contains("string_key"));
+
+        // A write of the other process invalidates the cached value and is delivered to the listeners
+        final CountDownLatch changed = new CountDownLatch(1);
+        final List<Integer> readValues = new CopyOnWriteArrayList<>();
+        final SharedPreferences.OnSharedPreferenceChangeListener listener =
+                new SharedPreferences.OnSharedPreferenceChangeListener() {
+            @Override
+            public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+                // The notifications of the writes above may still be on the way
+                if ("int_key".equals(key)) {
+                    readValues.add(sharedPreferences.getInt("int_key", -1));
+                    changed.countDown();
+                }
+            }
+        };
+        preferences.registerOnSharedPreferenceChangeListener(listener);
+        try {
+            assertTrue(local.edit().putInt("int_key", 2).commit());
+            assertTrue(changed.await(CONTENT_UPDATE_TIMEOUT, TimeUnit.MILLISECONDS));
+            assertEquals(Arrays.asList(2), readValues);
+            assertEquals(2, preferences.getInt("int_key", -1));
+        } finally {
+            preferences.unregisterOnSharedPreferenceChangeListener(listener);
+        }
+
+        // Clear
+        assertTrue(preferences.edit().clear().commit());
+        assertTrue(preferences.getAll().isEmpty());
+        assertTrue(local.getAll().isEmpty());
+    }
+    //endregion
+
 }
@@ -5,6 +5,7 @@ import android.database.Cursor;
 
 /**
  * This builds objects of type <code>T</code> using {@link Cursor}.
+ * Implement {@link ProjectionCursorMapper} to declare the columns the mapper reads, so queries project only them.
  */
 public interface CursorMapper<T> {
 
@@ -0,0 +1,274 @@
+package com.frolo.rxcontent;
+
+import android.content.ContentResolver;
+import android.net.Uri;
+
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.reactivex.Flowable;
+import io.reactivex.Scheduler;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.exceptions.Exceptions;
+import io.reactivex.plugins.RxJavaPlugins;
+
+
+/**
+ * Flowable that observes Uris and performs a query each time they change.
+ *
+ * This does in one operator what the chain of
+ * {@link RxContent#createFlowable(ContentResolver, List, ObservationSpec)}, subscribeOn, unsubscribeOn, observeOn and flatMapMaybe does:
+ * observers are registered, the query is performed and its result is emitted in a single drain loop on one worker.
+ * Changes, that come while the query is performed, are coalesced into one more query.
+ * If the downstream has not requested items, only the latest result is kept until it does.
+ * Null results of the query are not emitted.
+ *
+ * The drain loop runs either on a worker of the scheduler, or right on the executor, without wrapping it into a scheduler.
+ *
+ * @param <T> type of the query result
+ */
+final class FlowableContentQuery<T> extends Flowable<T> {
+
+    private final ContentResolver mResolver;
+    private final List<Uri> mUris;
+    private final ObservationSpec mSpec;
+    private final Scheduler mScheduler;
+    private final Executor mExecutor;
+    private final Callable<T> mCallable;
+
+    FlowableContentQuery(
+            ContentResolver resolver,
+            List<Uri> uris,
+            ObservationSpec spec,
+            Scheduler scheduler,
+            Callable<T> callable
+    ) {
+        this(resolver, uris, spec, scheduler, null, callable);
+    }
+
+    FlowableContentQuery(
+            ContentResolver resolver,
+            List<Uri> uris,
+            ObservationSpec spec,
+            Executor executor,
+            Callable<T> callable
+    ) {
+        this(resolver, uris, spec, null, executor, callable);
+    }
+
+    private FlowableContentQuery(
+            ContentResolver resolver,
+            List<Uri> uris,
+            ObservationSpec spec,
+            Scheduler scheduler,
+            Executor executor,
+            Callable<T> callable
+    ) {
+        this.mResolver = resolver;
+        this.mUris = uris;
+        this.mSpec = spec;
+        this.mScheduler = scheduler;
+        this.mExecutor = executor;
+        this.mCallable = callable;
+    }
+
+    @Override
+    protected void subscribeActual(Subscriber<? super T> s) {
+        final Scheduler.Worker worker = mScheduler != null ? mScheduler.createWorker() : null;
+        final QuerySubscription<T> subscription = new QuerySubscription<>(this, s, worker, QueryPolicy.captureCallSite());
+        s.onSubscribe(subscription);
+        // The first query is performed right after the observers are registered
+        subscription.trigger();
+    }
+
+    static final class QuerySubscription<T> extends AtomicInteger implements Subscription, Runnable {
+
+        final FlowableContentQuery<T> mParent;
+        final Subscriber<? super T> mDownstream;
+        final Scheduler.Worker mWorker;
+        /**
+         * The subscribing call site, reported with violations of {@link QueryPolicy}, or null if no policy is installed.
+         */
+        final Throwable mCallSite;
+        final AtomicLong mRequested = new AtomicLong();
+
+        /**
+         * Name of the async trace section, that spans from a change notification to the emission of the query result,
+         * or null if no section is begun.
+         */
+        final AtomicReference<String> mRequerySection = new AtomicReference<>();
+        final int mCookie = RxTrace.newCookie();
+
+        final RxContent.UriChangeListener mOnChange = new RxContent.UriChangeListener() {
+            @Override
+            public void onUriChanged(Uri uri) {
+                if (mDirty) {
+                    // The query is still to be performed, so it will see this change too
+                    final RxContentMetrics metrics = RxContent.getMetrics();
+                    if (metrics != null) {
+                        metrics.onNotificationCoalesced(uri);
+                    }
+                } else if (mRequerySection.get() == null) {
+                    // Only the observer thread begins the section, so it cannot be begun twice
+                    mRequerySection.set(RxTrace.beginAsyncSection("RxContent.requery", mParent.mUris, mCookie));
+                }
+                trigger();
+            }
+        };
+
+        /**
+         * Set to true each time the query needs to be performed.
+         */
+        volatile boolean mDirty;
+
+        volatile boolean mCancelled;
+
+        /**
+         * Accessed in the drain loop only.
+         */
+        Disposable mRegistration;
+        T mPending;
+        boolean mDone;
+
+        QuerySubscription(
+                FlowableContentQuery<T> parent,
+                Subscriber<? super T> downstream,
+                Scheduler.Worker worker,
+                Throwable callSite
+        ) {
+            this.mParent = parent;
+            this.mDownstream = downstream;
+            this.mWorker = worker;
+            this.mCallSite = callSite;
+        }
+
+        /**
+         * Marks the query as dirty and schedules the drain loop.
+         * Called on the observer thread when an observed Uri changes.
+         */
+        void trigger() {
+            mDirty = true;
+            schedule();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0L) {
+                RxJavaPlugins.onError(new IllegalArgumentException("n > 0 required but it was " + n));
+                return;
+            }
+            for (;;) {
+                long current = mRequested.get();
+                if (current == Long.MAX_VALUE) break;
+                long next = current + n;
+                if (next < 0L) next = Long.MAX_VALUE;
+                if (mRequested.compareAndSet(current, next)) break;
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            mCancelled = true;
+            // The drain loop unregisters the observers on the worker
+            schedule();
+        }
+
+        void schedule() {
+            if (getAndIncrement() == 0) {
+                if (mWorker != null) {
+                    mWorker.schedule(this);
+                } else {
+                    mParent.mExecutor.execute(this);
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            int missed = 1;
+            for (;;) {
+                if (mCancelled || mDone) {
+                    release();
+                    return;
+                }
+
+                if (mRegistration == null) {
+                    mRegistration = RxContent.registerTriggers(
+                            mParent.mResolver, mParent.mUris, mParent.mSpec, mOnChange);
+                }
+
+                if (mDirty) {
+                    mDirty = false;
+
+                    final T result;
+                    try {
+                        result = QueryPolicy.call(mCallSite, mParent.mCallable);
+                    } catch (Throwable error) {
+                        Exceptions.throwIfFatal(error);
+                        mDone = true;
+                        release();
+                        mDownstream.onError(error);
+                        return;
+                    }
+
+                    if (result != null) {
+                        mPending = result;
+                    } else {
+                        endRequerySection();
+                    }
+                }
+
+                final T pending = mPending;
+                if (pending != null && mRequested.get() != 0L) {
+                    mPending = null;
+                    final boolean traced = RxTrace.beginSection("RxContent.emit", mParent.mUris);
+                    try {
+                        mDownstream.onNext(pending);
+                    } finally {
+                        RxTrace.endSection(traced);
+                    }
+                    endRequerySection();
+                    if (mRequested.get() != Long.MAX_VALUE) {
+                        mRequested.decrementAndGet();
+                    }
+                }
+
+                missed = addAndGet(-missed);
+                if (missed == 0) {
+                    break;
+                }
+            }
+        }
+
+        private void endRequerySection() {
+            final String section = mRequerySection.getAndSet(null);
+            if (section != null) {
+                RxTrace.endAsyncSection(section, mCookie);
+            }
+        }
+
+        /**
+         * Unregisters the observers and disposes the worker. Called in the drain loop.
+         */
+        private void release() {
+            mPending = null;
+            endRequerySection();
+            final Disposable registration = mRegistration;
+            if (registration != null) {
+                mRegistration = null;
+                registration.dispose();
+            }
+            if (mWorker != null) {
+                mWorker.dispose();
+            }
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package com.frolo.rxcontent;
+
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.reactivex.Flowable;
+import io.reactivex.FlowableSubscriber;
+import io.reactivex.plugins.RxJavaPlugins;
+
+
+/**
+ * Flowable that delivers items of the source to the main thread, at most one item per frame.
+ * Items are conflated on the thread of the source: only the latest one is kept, older ones are dropped.
+ * The main looper gets a single message per frame at most, no matter how many items the source emits.
+ *
+ * On Jelly Bean and higher, items are delivered in {@link Choreographer.FrameCallback}.
+ * On older platforms, items are delivered with a delay of {@link FlowableLatestPerFrame#FALLBACK_FRAME_MILLIS}.
+ *
+ * @param <T> type of items
+ */
+final class FlowableLatestPerFrame<T> extends Flowable<T> {
+
+    /**
+     * Delay for delivering items on platforms without {@link Choreographer}.
+     */
+    private static final long FALLBACK_FRAME_MILLIS = 16L;
+
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+
+    private final Publisher<T> mSource;
+
+    FlowableLatestPerFrame(Publisher<T> source) {
+        this.mSource = source;
+    }
+
+    @Override
+    protected void subscribeActual(Subscriber<? super T> s) {
+        mSource.subscribe(new LatestPerFrameSubscriber<>(s));
+    }
+
+    static final class LatestPerFrameSubscriber<T> implements FlowableSubscriber<T>, Subscription, Runnable {
+
+        final Subscriber<? super T> mDownstream;
+        final AtomicReference<T> mLatest = new AtomicReference<>();
+        final AtomicLong mRequested = new AtomicLong();
+        final AtomicBoolean mScheduled = new AtomicBoolean();
+        final Object mFrameCallback;
+
+        Subscription mUpstream;
+
+        volatile boolean mDone;
+        Throwable mError;
+
+        volatile boolean mCancelled;
+
+        /**
+         * Accessed on the main thread only.
+         */
+        boolean mTerminated;
+
+        LatestPerFrameSubscriber(Subscriber<? super T> downstream) {
+            this.mDownstream = downstream;
+            this.mFrameCallback = Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN
+                    ? Api16.createFrameCallback(this) : null;
+        }
+
+        @Override
+        public void onSubscribe(Subscription s) {
+            if (mUpstream != null) {
+                s.cancel();
+                RxJavaPlugins.onError(new IllegalStateException("Subscription already set!"));
+                return;
+            }
+            mUpstream = s;
+            mDownstream.onSubscribe(this);
+            s.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(T t) {
+            mLatest.set(t);
+            schedule();
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            mError = t;
+            mDone = true;
+            schedule();
+        }
+
+        @Override
+        public void onComplete() {
+            mDone = true;
+            schedule();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0L) {
+                RxJavaPlugins.onError(new IllegalArgumentException("n > 0 required but it was " + n));
+                return;
+            }
+            for (;;) {
+                long current = mRequested.get();
+                if (current == Long.MAX_VALUE) break;
+                long next = current + n;
+                if (next < 0L) next = Long.MAX_VALUE;
+                if (mRequested.compareAndSet(current, next)) break;
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            mCancelled = true;
+            mUpstream.cancel();
+            if (mScheduled.get()) {
+                // The pending delivery would find the subscription cancelled anyway,
+                // it is removed not to keep the subscriber alive until the next frame
+                sMainHandler.removeCallbacks(this);
+                if (mFrameCallback != null) {
+                    if (Looper.myLooper() == Looper.getMainLooper()) {
+                        Api16.removeFrameCallback(mFrameCallback);
+                    } else {
+                        // The choreographer of the main thread is only accessible on the main thread
+                        sMainHandler.post(new Runnable() {
+                            @Override
+                            public void run() {
+                                Api16.removeFrameCallback(mFrameCallback);
+                            }
+                        });
+                    }
+                }
+            }
+        }
+
+        /**
+         * Schedules delivery on the next frame, unless it is already scheduled.
+         */
+        void schedule() {
+            if (!mScheduled.compareAndSet(false, true)) {
+                return;
+            }
+
+            if (mFrameCallback == null) {
+                sMainHandler.postDelayed(this, FALLBACK_FRAME_MILLIS);
+            } else if (Looper.myLooper() == Looper.getMainLooper()) {
+                run();
+            } else {
+                // The choreographer of the main thread is only accessible on the main thread
+                sMainHandler.post(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            if (mFrameCallback != null) {
+                Api16.postFrameCallback(mFrameCallback);
+            } else {
+                drain();
+            }
+        }
+
+        /**
+         * Delivers the latest item and the terminal event, if any. Called on the main thread.
+         */
+        void drain() {
+            // Reset the flag before consuming, so that an item arriving meanwhile schedules the next frame
+            mScheduled.set(false);
+
+            if (mCancelled) {
+                mLatest.lazySet(null);
+                return;
+            }
+
+            final boolean done = mDone;
+
+            if (mRequested.get() != 0L) {
+                final T item = mLatest.getAndSet(null);
+                if (item != null) {
+                    mDownstream.onNext(item);
+                    if (mRequested.get() != Long.MAX_VALUE) {
+                        mRequested.decrementAndGet();
+                    }
+                }
+            }
+
+            if (done && !mTerminated && mLatest.get() == null) {
+                mTerminated = true;
+                final Throwable error = mError;
+                if (error != null) {
+                    mDownstream.onError(error);
+                } else {
+                    mDownstream.onComplete();
+                }
+            }
+        }
+    }
+
+    /**
+     * Isolates {@link Choreographer} references, so that the enclosing classes can be loaded on older platforms.
+     */
+    private static final class Api16 {
+
+        static Object createFrameCallback(final LatestPerFrameSubscriber<?> subscriber) {
+            return new Choreographer.FrameCallback() {
+                @Override
+                public void doFrame(long frameTimeNanos) {
+                    subscriber.drain();
+                }
+            };
+        }
+
+        static void postFrameCallback(Object frameCallback) {
+            Choreographer.getInstance().postFrameCallback((Choreographer.FrameCallback) frameCallback);
+        }
+
+        static void removeFrameCallback(Object frameCallback) {
+            Choreographer.getInstance().removeFrameCallback((Choreographer.FrameCallback) frameCallback);
+        }
+    }
+}
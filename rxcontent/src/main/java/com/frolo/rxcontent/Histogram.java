@@ -0,0 +1,137 @@
+package com.frolo.rxcontent;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+/**
+ * Lock-free histogram of non-negative long values, e.g. latencies in nanoseconds, with log-linear buckets.
+ *
+ * As in HdrHistogram, each power of two range is divided into {@link Histogram#SUB_BUCKET_COUNT} linear sub-buckets,
+ * so percentiles are reported with the relative error of at most 1/{@link Histogram#SUB_BUCKET_COUNT},
+ * at a fixed memory cost and without allocations on record.
+ * Values above 2^{@link Histogram#MAX_MAGNITUDE} are recorded in the last bucket.
+ */
+public final class Histogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_MAGNITUDE = 40;
+    private static final int BUCKET_COUNT = SUB_BUCKET_COUNT + (MAX_MAGNITUDE - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray mCounts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong mTotalCount = new AtomicLong();
+    private final AtomicLong mTotalSum = new AtomicLong();
+    private final AtomicLong mMax = new AtomicLong();
+
+    private static int indexOf(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        final int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        if (magnitude >= MAX_MAGNITUDE) {
+            return BUCKET_COUNT - 1;
+        }
+        final int shift = magnitude - SUB_BUCKET_BITS;
+        final int subBucket = (int) (value >>> shift) - SUB_BUCKET_COUNT;
+        return SUB_BUCKET_COUNT + shift * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    /**
+     * Returns the highest value that falls into the bucket at <code>index</code>.
+     */
+    private static long highestValueOf(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        final int shift = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_COUNT;
+        final int subBucket = (index - SUB_BUCKET_COUNT) % SUB_BUCKET_COUNT;
+        return ((long) (SUB_BUCKET_COUNT + subBucket + 1) << shift) - 1;
+    }
+
+    /**
+     * Records <code>value</code>. Negative values are recorded as zero.
+     * @param value to record
+     */
+    public void record(long value) {
+        final long safeValue = value > 0 ? value : 0;
+        mCounts.incrementAndGet(indexOf(safeValue));
+        mTotalCount.incrementAndGet();
+        mTotalSum.addAndGet(safeValue);
+        for (;;) {
+            final long max = mMax.get();
+            if (safeValue <= max || mMax.compareAndSet(max, safeValue)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of recorded values.
+     * @return the number of recorded values
+     */
+    public long getCount() {
+        return mTotalCount.get();
+    }
+
+    /**
+     * Returns the max recorded value.
+     * @return the max recorded value, or 0 if there are no values
+     */
+    public long getMax() {
+        return mMax.get();
+    }
+
+    /**
+     * Returns the mean of the recorded values.
+     * @return the mean, or 0 if there are no values
+     */
+    public double getMean() {
+        final long count = mTotalCount.get();
+        return count > 0 ? (double) mTotalSum.get() / count : 0;
+    }
+
+    /**
+     * Returns the value, below or at which <code>percentile</code> percent of the recorded values are.
+     * @param percentile from 0 to 100
+     * @return the value at the percentile, or 0 if there are no values
+     */
+    public long getValueAtPercentile(double percentile) {
+        final long count = mTotalCount.get();
+        if (count == 0) {
+            return 0;
+        }
+
+        final long target = Math.max(1, (long) Math.ceil(Math.min(percentile, 100.0) / 100.0 * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += mCounts.get(i);
+            if (seen >= target) {
+                return Math.min(highestValueOf(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Removes all the recorded values.
+     * Values recorded concurrently with the reset may be lost or partially counted.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            mCounts.set(i, 0);
+        }
+        mTotalCount.set(0);
+        mTotalSum.set(0);
+        mMax.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return "count=" + getCount()
+                + ", p50=" + getValueAtPercentile(50)
+                + ", p90=" + getValueAtPercentile(90)
+                + ", p99=" + getValueAtPercentile(99)
+                + ", max=" + getMax();
+    }
+}
@@ -0,0 +1,204 @@
+package com.frolo.rxcontent;
+
+import android.net.Uri;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * {@link RxContentMetrics} that collects query latencies in {@link Histogram}s and counts notifications per Uri.
+ *
+ * Example:
+ * <pre>
+ *     HistogramMetrics metrics = new HistogramMetrics();
+ *     RxContent.setMetrics(metrics);
+ *     ...
+ *     Log.d(TAG, "Query p99, ns: " + metrics.getQueryLatency().getValueAtPercentile(99));
+ * </pre>
+ *
+ * Notifications are counted per changed Uri. Note that observing with descendants may report many distinct Uris,
+ * e.g. one per changed item.
+ */
+public final class HistogramMetrics implements RxContentMetrics {
+
+    /**
+     * Counts of notifications of a Uri.
+     */
+    public static final class NotificationCounts {
+
+        final AtomicLong mReceived = new AtomicLong();
+        final AtomicLong mCoalesced = new AtomicLong();
+        final AtomicLong mDropped = new AtomicLong();
+
+        public long getReceived() {
+            return mReceived.get();
+        }
+
+        public long getCoalesced() {
+            return mCoalesced.get();
+        }
+
+        public long getDropped() {
+            return mDropped.get();
+        }
+
+        @Override
+        public String toString() {
+            return "received=" + getReceived() + ", coalesced=" + getCoalesced() + ", dropped=" + getDropped();
+        }
+    }
+
+    private final Histogram mCursorLatency = new Histogram();
+    private final Histogram mFillLatency = new Histogram();
+    private final Histogram mMappingLatency = new Histogram();
+    private final Histogram mQueryLatency = new Histogram();
+    private final Histogram mRowCounts = new Histogram();
+
+    private final ConcurrentHashMap<Uri, NotificationCounts> mNotificationCounts = new ConcurrentHashMap<>();
+
+    private final AtomicInteger mObserverCount = new AtomicInteger();
+    private final AtomicInteger mMaxObserverCount = new AtomicInteger();
+
+    private NotificationCounts getCounts(Uri uri) {
+        final Uri key = uri != null ? uri : Uri.EMPTY;
+        NotificationCounts counts = mNotificationCounts.get(key);
+        if (counts == null) {
+            final NotificationCounts newCounts = new NotificationCounts();
+            counts = mNotificationCounts.putIfAbsent(key, newCounts);
+            if (counts == null) {
+                counts = newCounts;
+            }
+        }
+        return counts;
+    }
+
+    @Override
+    public void onQuery(Uri uri, long cursorNanos, long fillNanos, long mappingNanos, int rowCount, long sizeBytes) {
+        mCursorLatency.record(cursorNanos);
+        mFillLatency.record(fillNanos);
+        mMappingLatency.record(mappingNanos);
+        mQueryLatency.record(cursorNanos + fillNanos + mappingNanos);
+        mRowCounts.record(rowCount);
+    }
+
+    @Override
+    public void onNotificationReceived(Uri uri) {
+        getCounts(uri).mReceived.incrementAndGet();
+    }
+
+    @Override
+    public void onNotificationDropped(Uri uri) {
+        getCounts(uri).mDropped.incrementAndGet();
+    }
+
+    @Override
+    public void onNotificationCoalesced(Uri uri) {
+        getCounts(uri).mCoalesced.incrementAndGet();
+    }
+
+    @Override
+    public void onObserverCountChanged(int count) {
+        mObserverCount.set(count);
+        for (;;) {
+            final int max = mMaxObserverCount.get();
+            if (count <= max || mMaxObserverCount.compareAndSet(max, count)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Returns latencies until the cursor is returned by the provider, in nanoseconds.
+     * @return histogram of the latencies
+     */
+    public Histogram getCursorLatency() {
+        return mCursorLatency;
+    }
+
+    /**
+     * Returns latencies of filling the cursor windows, in nanoseconds.
+     * @return histogram of the latencies
+     */
+    public Histogram getFillLatency() {
+        return mFillLatency;
+    }
+
+    /**
+     * Returns latencies of mapping the rows, in nanoseconds.
+     * @return histogram of the latencies
+     */
+    public Histogram getMappingLatency() {
+        return mMappingLatency;
+    }
+
+    /**
+     * Returns total latencies of the queries, in nanoseconds.
+     * @return histogram of the latencies
+     */
+    public Histogram getQueryLatency() {
+        return mQueryLatency;
+    }
+
+    /**
+     * Returns numbers of rows of the queries.
+     * @return histogram of the row counts
+     */
+    public Histogram getRowCounts() {
+        return mRowCounts;
+    }
+
+    /**
+     * Returns counts of notifications by the changed Uris.
+     * Notifications without a Uri are counted for {@link Uri#EMPTY}.
+     * @return unmodifiable live view of the counts
+     */
+    public Map<Uri, NotificationCounts> getNotificationCounts() {
+        return Collections.unmodifiableMap(mNotificationCounts);
+    }
+
+    /**
+     * Returns the number of currently registered observers.
+     * @return the number of the observers
+     */
+    public int getObserverCount() {
+        return mObserverCount.get();
+    }
+
+    /**
+     * Returns the max number of registered observers reported so far.
+     * @return the max number of the observers
+     */
+    public int getMaxObserverCount() {
+        return mMaxObserverCount.get();
+    }
+
+    /**
+     * Resets all the collected metrics, except for the current observer count.
+     */
+    public void reset() {
+        mCursorLatency.reset();
+        mFillLatency.reset();
+        mMappingLatency.reset();
+        mQueryLatency.reset();
+        mRowCounts.reset();
+        mNotificationCounts.clear();
+        mMaxObserverCount.set(mObserverCount.get());
+    }
+
+    @Override
+    public String toString() {
+        return "HistogramMetrics{"
+                + "query=[" + mQueryLatency + "]"
+                + ", cursor=[" + mCursorLatency + "]"
+                + ", fill=[" + mFillLatency + "]"
+                + ", mapping=[" + mMappingLatency + "]"
+                + ", rows=[" + mRowCounts + "]"
+                + ", observers=" + getObserverCount()
+                + ", maxObservers=" + getMaxObserverCount()
+                + '}';
+    }
+}
@@ -0,0 +1,116 @@
+package com.frolo.rxcontent;
+
+import android.content.ContentResolver;
+import android.database.ContentObserver;
+import android.net.Uri;
+import android.os.PatternMatcher;
+
+
+/**
+ * Describes how Uris are observed for changes.
+ * The spec defines the value of notifyForDescendants flag, that is passed to {@link ContentResolver#registerContentObserver(Uri, boolean, ContentObserver)},
+ * and an optional {@link UriFilter} for changed Uris.
+ *
+ * Changes, that do not pass the filter, are dropped on the observer thread, before they trigger a query.
+ *
+ * Instances are immutable, so the same spec may be shared between many sources.
+ */
+public final class ObservationSpec {
+
+    private static final ObservationSpec DESCENDANTS = new ObservationSpec(true, null);
+    private static final ObservationSpec EXACT = new ObservationSpec(false, null);
+
+    /**
+     * Returns a spec for observing Uris along with all their descendants.
+     * This is the default behaviour of {@link RxContent}.
+     * @return observation spec
+     */
+    public static ObservationSpec descendants() {
+        return DESCENDANTS;
+    }
+
+    /**
+     * Returns a spec for observing Uris without their descendants.
+     * Observers are still notified when an observed Uri or one of its ancestors changes.
+     * @return observation spec
+     */
+    public static ObservationSpec exact() {
+        return EXACT;
+    }
+
+    private final boolean mNotifyForDescendants;
+    private final UriFilter mFilter;
+
+    private ObservationSpec(boolean notifyForDescendants, UriFilter filter) {
+        this.mNotifyForDescendants = notifyForDescendants;
+        this.mFilter = filter;
+    }
+
+    /**
+     * Returns a new spec that additionally drops changes not accepted by <code>filter</code>.
+     * If this spec already has a filter, then a change must be accepted by both of them.
+     * @param filter for changed Uris
+     * @return observation spec
+     */
+    public ObservationSpec filter(final UriFilter filter) {
+        if (filter == null) {
+            throw new NullPointerException("Filter is null");
+        }
+
+        final UriFilter current = mFilter;
+        if (current == null) {
+            return new ObservationSpec(mNotifyForDescendants, filter);
+        }
+
+        return new ObservationSpec(mNotifyForDescendants, new UriFilter() {
+            @Override
+            public boolean accept(Uri uri) {
+                return current.accept(uri) && filter.accept(uri);
+            }
+        });
+    }
+
+    /**
+     * Returns a new spec that additionally drops changes, the path of which does not match <code>pattern</code>.
+     * @param pattern for the path of changed Uris
+     * @param type of the pattern: {@link PatternMatcher#PATTERN_LITERAL},
+     *             {@link PatternMatcher#PATTERN_PREFIX} or {@link PatternMatcher#PATTERN_SIMPLE_GLOB}
+     * @return observation spec
+     */
+    public ObservationSpec pathPattern(String pattern, int type) {
+        final PatternMatcher matcher = new PatternMatcher(pattern, type);
+        return filter(new UriFilter() {
+            @Override
+            public boolean accept(Uri uri) {
+                final String path = uri.getPath();
+                return path != null && matcher.match(path);
+            }
+        });
+    }
+
+    /**
+     * Same as {@link ObservationSpec#pathPattern(String, int)} with {@link PatternMatcher#PATTERN_SIMPLE_GLOB} type.
+     * @param pattern simple glob pattern for the path of changed Uris
+     * @return observation spec
+     */
+    public ObservationSpec pathPattern(String pattern) {
+        return pathPattern(pattern, PatternMatcher.PATTERN_SIMPLE_GLOB);
+    }
+
+    /**
+     * @return the value of notifyForDescendants flag for observers
+     */
+    boolean notifyForDescendants() {
+        return mNotifyForDescendants;
+    }
+
+    /**
+     * Checks whether the change of <code>uri</code> should be dispatched.
+     * The uri may be null on old platforms, that do not report the changed Uri. Such changes are always dispatched.
+     * @param uri that has been changed
+     * @return true if the change should be dispatched, false - if it should be dropped
+     */
+    boolean accept(Uri uri) {
+        return uri == null || mFilter == null || mFilter.accept(uri);
+    }
+}
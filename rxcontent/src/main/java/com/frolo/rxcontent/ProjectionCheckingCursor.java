@@ -0,0 +1,54 @@
+package com.frolo.rxcontent;
+
+import android.database.Cursor;
+import android.database.CursorWrapper;
+import android.net.Uri;
+
+import java.util.HashSet;
+import java.util.Set;
+
+
+/**
+ * Cursor that reports to {@link QueryPolicy} the columns, that are looked up by a {@link CursorMapper} but are not projected.
+ * Each column is reported once per query.
+ */
+final class ProjectionCheckingCursor extends CursorWrapper {
+
+    private final QueryPolicy mPolicy;
+    private final Uri mUri;
+    private Set<String> mReported;
+
+    ProjectionCheckingCursor(Cursor cursor, QueryPolicy policy, Uri uri) {
+        super(cursor);
+        this.mPolicy = policy;
+        this.mUri = uri;
+    }
+
+    private void report(String columnName) {
+        if (mReported == null) {
+            mReported = new HashSet<>();
+        }
+        if (mReported.add(columnName)) {
+            mPolicy.reportUnprojectedColumn(mUri, columnName);
+        }
+    }
+
+    @Override
+    public int getColumnIndex(String columnName) {
+        final int index = super.getColumnIndex(columnName);
+        if (index < 0) {
+            report(columnName);
+        }
+        return index;
+    }
+
+    @Override
+    public int getColumnIndexOrThrow(String columnName) {
+        final int index = super.getColumnIndex(columnName);
+        if (index < 0) {
+            report(columnName);
+            throw new IllegalArgumentException("column '" + columnName + "' does not exist");
+        }
+        return index;
+    }
+}
@@ -0,0 +1,23 @@
+package com.frolo.rxcontent;
+
+
+/**
+ * {@link CursorMapper} that declares the columns it reads.
+ *
+ * Queries of {@link RxContent} with such a mapper are performed with the declared columns as the projection,
+ * whatever projection is passed, e.g. null. So providers do not transfer the columns, that are never read,
+ * which matters on wide tables like the ones of MediaStore.
+ * As the declared columns are the projection, the mapper may read them by their positions in {@link ProjectionCursorMapper#getColumns()}.
+ *
+ * To check that a mapper does not read other columns, install {@link QueryPolicy} with {@link QueryPolicy.Builder#detectUnprojectedColumns()}.
+ *
+ * @param <T> type of the mapped objects
+ */
+public interface ProjectionCursorMapper<T> extends CursorMapper<T> {
+
+    /**
+     * Returns the columns that this mapper reads. The returned array must not be modified.
+     * @return non-empty array of the columns
+     */
+    String[] getColumns();
+}
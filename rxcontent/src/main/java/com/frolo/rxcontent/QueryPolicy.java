@@ -0,0 +1,255 @@
+package com.frolo.rxcontent;
+
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Policy of detecting queries of {@link RxContent}, that are performed on the main thread, take too long
+ * or read columns they do not project, similar to {@link android.os.StrictMode.ThreadPolicy}. Install it with {@link RxContent#setQueryPolicy(QueryPolicy)}.
+ *
+ * Example:
+ * <pre>
+ *     RxContent.setQueryPolicy(new QueryPolicy.Builder()
+ *          .detectMainThreadQueries()
+ *          .detectSlowQueries(100, TimeUnit.MILLISECONDS)
+ *          .detectSlowMappings(16, TimeUnit.MILLISECONDS)
+ *          .detectUnprojectedColumns()
+ *          .penaltyLog()
+ *          .build());
+ * </pre>
+ *
+ * Violations are reported with {@link QueryViolation}, which stack trace is the stack of the call site that subscribed to the query.
+ * Capturing the stack costs an allocation per subscription, so the policy is meant for debug builds.
+ */
+public final class QueryPolicy {
+
+    private static final String LOG_TAG = "RxContent";
+
+    /**
+     * Handler of violations of the policy.
+     */
+    public interface ViolationHandler {
+        /**
+         * Called on the query thread when a violation is detected.
+         * The handler may throw the violation to fail the query.
+         * @param violation detected
+         */
+        void onViolation(QueryViolation violation);
+    }
+
+    private static final ViolationHandler LOG_HANDLER = new ViolationHandler() {
+        @Override
+        public void onViolation(QueryViolation violation) {
+            Log.w(LOG_TAG, violation.getMessage(), violation);
+        }
+    };
+
+    private static final ViolationHandler DEATH_HANDLER = new ViolationHandler() {
+        @Override
+        public void onViolation(QueryViolation violation) {
+            throw violation;
+        }
+    };
+
+    public static final class Builder {
+
+        private boolean mDetectMainThreadQueries;
+        private long mQueryBudgetNanos;
+        private long mMappingBudgetNanos;
+        private boolean mDetectUnprojectedColumns;
+        private final List<ViolationHandler> mHandlers = new ArrayList<>();
+
+        /**
+         * Detects queries performed on the main thread.
+         * @return this builder
+         */
+        public Builder detectMainThreadQueries() {
+            mDetectMainThreadQueries = true;
+            return this;
+        }
+
+        /**
+         * Detects queries that take longer than <code>budget</code> until the cursor is returned and filled.
+         * @param budget of a query
+         * @param unit of <code>budget</code>
+         * @return this builder
+         */
+        public Builder detectSlowQueries(long budget, TimeUnit unit) {
+            mQueryBudgetNanos = unit.toNanos(budget);
+            return this;
+        }
+
+        /**
+         * Detects mappings of query cursors with {@link CursorMapper} that take longer than <code>budget</code>.
+         * @param budget of mapping all the rows of a query
+         * @param unit of <code>budget</code>
+         * @return this builder
+         */
+        public Builder detectSlowMappings(long budget, TimeUnit unit) {
+            mMappingBudgetNanos = unit.toNanos(budget);
+            return this;
+        }
+
+        /**
+         * Detects mappers that look up columns, which are not in the projection of the query,
+         * with {@link android.database.Cursor#getColumnIndex(String)} or {@link android.database.Cursor#getColumnIndexOrThrow(String)}.
+         * Such a mapper reads nothing, so the projection, or {@link ProjectionCursorMapper#getColumns()}, is missing the column.
+         * Each column is reported once per query. The check wraps the cursor of each query, so it is meant for debug builds.
+         * @return this builder
+         */
+        public Builder detectUnprojectedColumns() {
+            mDetectUnprojectedColumns = true;
+            return this;
+        }
+
+        /**
+         * Logs violations with the stack of the call site.
+         * @return this builder
+         */
+        public Builder penaltyLog() {
+            return penaltyListener(LOG_HANDLER);
+        }
+
+        /**
+         * Throws violations on the query thread, so the query fails with {@link QueryViolation}.
+         * @return this builder
+         */
+        public Builder penaltyDeath() {
+            return penaltyListener(DEATH_HANDLER);
+        }
+
+        /**
+         * Passes violations to <code>handler</code>, e.g. to count them.
+         * @param handler of violations
+         * @return this builder
+         */
+        public Builder penaltyListener(ViolationHandler handler) {
+            mHandlers.add(handler);
+            return this;
+        }
+
+        public QueryPolicy build() {
+            return new QueryPolicy(this);
+        }
+    }
+
+    /**
+     * Call site of the query performed on the current thread.
+     */
+    private static final ThreadLocal<Throwable> sCallSite = new ThreadLocal<>();
+
+    /**
+     * Captures the stack of the current thread, if a policy is installed.
+     * Called on the subscribing thread.
+     * @return the call site, or null if no policy is installed
+     */
+    static Throwable captureCallSite() {
+        return RxContent.getQueryPolicy() != null ? new Throwable() : null;
+    }
+
+    /**
+     * Performs <code>callable</code>, so that the violations of the queries it performs are reported with <code>callSite</code>.
+     * @param callSite captured with {@link QueryPolicy#captureCallSite()}, may be null
+     * @param callable to perform
+     * @return the result of <code>callable</code>
+     */
+    static <T> T call(Throwable callSite, Callable<T> callable) throws Exception {
+        if (callSite == null) {
+            return callable.call();
+        }
+
+        final Throwable previous = sCallSite.get();
+        sCallSite.set(callSite);
+        try {
+            return callable.call();
+        } finally {
+            sCallSite.set(previous);
+        }
+    }
+
+    /**
+     * Wraps <code>callable</code> with {@link QueryPolicy#call(Throwable, Callable)}.
+     */
+    static <T> Callable<T> withCallSite(final Throwable callSite, final Callable<T> callable) {
+        if (callSite == null) {
+            return callable;
+        }
+        return new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                return QueryPolicy.call(callSite, callable);
+            }
+        };
+    }
+
+    private final boolean mDetectMainThreadQueries;
+    private final long mQueryBudgetNanos;
+    private final long mMappingBudgetNanos;
+    private final boolean mDetectUnprojectedColumns;
+    private final ViolationHandler[] mHandlers;
+
+    private QueryPolicy(Builder builder) {
+        this.mDetectMainThreadQueries = builder.mDetectMainThreadQueries;
+        this.mQueryBudgetNanos = builder.mQueryBudgetNanos;
+        this.mMappingBudgetNanos = builder.mMappingBudgetNanos;
+        this.mDetectUnprojectedColumns = builder.mDetectUnprojectedColumns;
+        this.mHandlers = builder.mHandlers.toArray(new ViolationHandler[0]);
+    }
+
+    private void report(QueryViolation.Type type, Uri uri, long durationNanos, long budgetNanos) {
+        report(new QueryViolation(type, uri, durationNanos, budgetNanos, sCallSite.get()));
+    }
+
+    private void report(QueryViolation violation) {
+        for (ViolationHandler handler : mHandlers) {
+            handler.onViolation(violation);
+        }
+    }
+
+    /**
+     * Checks the thread of the query to <code>uri</code>. Called right before the query.
+     */
+    void checkThread(Uri uri) {
+        if (mDetectMainThreadQueries && Looper.myLooper() == Looper.getMainLooper()) {
+            report(QueryViolation.Type.MAIN_THREAD_QUERY, uri, 0L, 0L);
+        }
+    }
+
+    /**
+     * Checks the durations of the query to <code>uri</code>. Called right after the query.
+     */
+    void checkDurations(Uri uri, long queryNanos, long mappingNanos) {
+        if (mQueryBudgetNanos > 0 && queryNanos > mQueryBudgetNanos) {
+            report(QueryViolation.Type.SLOW_QUERY, uri, queryNanos, mQueryBudgetNanos);
+        }
+        if (mMappingBudgetNanos > 0 && mappingNanos > mMappingBudgetNanos) {
+            report(QueryViolation.Type.SLOW_MAPPING, uri, mappingNanos, mMappingBudgetNanos);
+        }
+    }
+
+    /**
+     * Wraps the cursor of the query to <code>uri</code> to check the columns looked up by the mapper, if detection is enabled.
+     * Called right after the query.
+     */
+    Cursor checkColumns(Uri uri, Cursor cursor) {
+        if (mDetectUnprojectedColumns && cursor != null) {
+            return new ProjectionCheckingCursor(cursor, this, uri);
+        }
+        return cursor;
+    }
+
+    /**
+     * Reports that <code>column</code> is looked up, but not projected by the query to <code>uri</code>.
+     */
+    void reportUnprojectedColumn(Uri uri, String column) {
+        report(new QueryViolation(QueryViolation.Type.UNPROJECTED_COLUMN, uri, 0L, 0L, column, sCallSite.get()));
+    }
+}
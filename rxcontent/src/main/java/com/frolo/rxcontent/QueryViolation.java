@@ -0,0 +1,104 @@
+package com.frolo.rxcontent;
+
+import android.net.Uri;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Violation of {@link QueryPolicy} by a query of {@link RxContent}.
+ * The stack trace of the violation is the stack of the call site that subscribed to the query, if it is known,
+ * or the stack of the query thread otherwise.
+ */
+public final class QueryViolation extends RuntimeException {
+
+    public enum Type {
+        /**
+         * The query is performed on the main thread.
+         */
+        MAIN_THREAD_QUERY,
+        /**
+         * The query, until the cursor is returned and filled, takes longer than the budget.
+         */
+        SLOW_QUERY,
+        /**
+         * Mapping of the rows of the cursor takes longer than the budget.
+         */
+        SLOW_MAPPING,
+        /**
+         * The mapper looks up a column, that is not in the projection of the query.
+         */
+        UNPROJECTED_COLUMN
+    }
+
+    private final Type mType;
+    private final Uri mUri;
+    private final long mDurationNanos;
+    private final long mBudgetNanos;
+    private final String mColumn;
+
+    QueryViolation(Type type, Uri uri, long durationNanos, long budgetNanos, Throwable callSite) {
+        this(type, uri, durationNanos, budgetNanos, null, callSite);
+    }
+
+    QueryViolation(Type type, Uri uri, long durationNanos, long budgetNanos, String column, Throwable callSite) {
+        super(message(type, uri, durationNanos, budgetNanos, column));
+        this.mType = type;
+        this.mUri = uri;
+        this.mDurationNanos = durationNanos;
+        this.mBudgetNanos = budgetNanos;
+        this.mColumn = column;
+        if (callSite != null) {
+            setStackTrace(callSite.getStackTrace());
+        }
+    }
+
+    private static String message(Type type, Uri uri, long durationNanos, long budgetNanos, String column) {
+        switch (type) {
+            case MAIN_THREAD_QUERY:
+                return "Query to " + uri + " on the main thread";
+            case SLOW_QUERY:
+                return "Query to " + uri + " took " + TimeUnit.NANOSECONDS.toMillis(durationNanos)
+                        + " ms, the budget is " + TimeUnit.NANOSECONDS.toMillis(budgetNanos) + " ms";
+            case SLOW_MAPPING:
+                return "Mapping of the query to " + uri + " took " + TimeUnit.NANOSECONDS.toMillis(durationNanos)
+                        + " ms, the budget is " + TimeUnit.NANOSECONDS.toMillis(budgetNanos) + " ms";
+            case UNPROJECTED_COLUMN:
+                return "Column '" + column + "' is read, but not projected by the query to " + uri;
+            default:
+                return "Violation of the query to " + uri;
+        }
+    }
+
+    public Type getType() {
+        return mType;
+    }
+
+    public Uri getUri() {
+        return mUri;
+    }
+
+    /**
+     * Returns the column that is read but not projected, or null for other types than {@link Type#UNPROJECTED_COLUMN}.
+     * @return the name of the column
+     */
+    public String getColumn() {
+        return mColumn;
+    }
+
+    /**
+     * Returns the duration that exceeds the budget, or 0 for {@link Type#MAIN_THREAD_QUERY} and {@link Type#UNPROJECTED_COLUMN}.
+     * @return the duration in nanoseconds
+     */
+    public long getDurationNanos() {
+        return mDurationNanos;
+    }
+
+    /**
+     * Returns the exceeded budget, or 0 for {@link Type#MAIN_THREAD_QUERY} and {@link Type#UNPROJECTED_COLUMN}.
+     * @return the budget in nanoseconds
+     */
+    public long getBudgetNanos() {
+        return mBudgetNanos;
+    }
+}
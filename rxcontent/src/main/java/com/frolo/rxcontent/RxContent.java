@@ -8,28 +8,49 @@ import android.database.Cursor;
 import android.net.Uri;
 import android.os.Handler;
 import android.os.HandlerThread;
+import android.provider.BaseColumns;
+
+import org.reactivestreams.Publisher;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import io.reactivex.BackpressureStrategy;
 import io.reactivex.Flowable;
 import io.reactivex.FlowableEmitter;
 import io.reactivex.FlowableOnSubscribe;
+import io.reactivex.FlowableTransformer;
 import io.reactivex.Maybe;
-import io.reactivex.MaybeSource;
+import io.reactivex.MaybeEmitter;
+import io.reactivex.MaybeOnSubscribe;
 import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import io.reactivex.SingleEmitter;
+import io.reactivex.SingleOnSubscribe;
+import io.reactivex.disposables.Disposable;
 import io.reactivex.disposables.Disposables;
+import io.reactivex.exceptions.Exceptions;
 import io.reactivex.functions.Action;
-import io.reactivex.functions.Function;
-import io.reactivex.schedulers.Schedulers;
 
 public final class RxContent {
 
     private static final Object NOTHING = new Object();
 
+    /**
+     * Min number of Uris with a common ancestor, starting from which they are observed with a single observer.
+     * @see RxContent#registerTriggers(ContentResolver, List, ObservationSpec, Runnable)
+     */
+    /*package*/ static final int ANCESTOR_COLLAPSE_THRESHOLD = 4;
+
+    private static final String[] COUNT_PROJECTION = { "COUNT(*)" };
+    private static final String[] ID_PROJECTION = { BaseColumns._ID };
+
     /**
      * Holder for a {@link ObserverHandler#sInstance}.
      * This handler is used for dispatching uri changes in {@link ContentResolver}.
@@ -46,10 +67,61 @@ public final class RxContent {
         }
     }
 
+    /**
+     * Installed metrics listener, or null. Read once per hot path, so that it costs a single volatile read when not installed.
+     */
+    private static volatile RxContentMetrics sMetrics;
+
+    /**
+     * Installed query policy, or null.
+     */
+    private static volatile QueryPolicy sQueryPolicy;
+
+    /**
+     * Number of content observers registered by {@link RxContent#registerTriggers(ContentResolver, List, ObservationSpec, UriChangeListener)}.
+     */
+    private static final AtomicInteger sObserverCount = new AtomicInteger(0);
+
     /*No instances*/
     private RxContent() {
     }
 
+    /**
+     * Installs <code>metrics</code> listener, replacing the current one.
+     * The current number of observers is reported to the listener right away.
+     * @param metrics listener to install, or null to uninstall the current one
+     */
+    public static void setMetrics(RxContentMetrics metrics) {
+        sMetrics = metrics;
+        if (metrics != null) {
+            metrics.onObserverCountChanged(sObserverCount.get());
+        }
+    }
+
+    /*package*/ static RxContentMetrics getMetrics() {
+        return sMetrics;
+    }
+
+    /**
+     * Installs <code>policy</code> of detecting main thread and slow queries, replacing the current one.
+     * @param policy to install, or null to uninstall the current one
+     */
+    public static void setQueryPolicy(QueryPolicy policy) {
+        sQueryPolicy = policy;
+    }
+
+    /*package*/ static QueryPolicy getQueryPolicy() {
+        return sQueryPolicy;
+    }
+
+    private static void onObserverCountChanged(int delta) {
+        final int count = sObserverCount.addAndGet(delta);
+        final RxContentMetrics metrics = sMetrics;
+        if (metrics != null) {
+            metrics.onObserverCountChanged(count);
+        }
+    }
+
     /**
      * Checks that <code>cursor</code> returned by the query to <code>uri</code> is not null.
      * If the cursor is null then this throws {@link NullPointerException} with an appropriate message.
@@ -63,6 +135,480 @@ public final class RxContent {
         }
     }
 
+    /**
+     * Returns the columns declared by <code>cursorMapper</code>, if it is a {@link ProjectionCursorMapper},
+     * or <code>projection</code> otherwise.
+     */
+    private static String[] projectionOf(String[] projection, CursorMapper<?> cursorMapper) {
+        if (cursorMapper instanceof ProjectionCursorMapper) {
+            final String[] columns = ((ProjectionCursorMapper<?>) cursorMapper).getColumns();
+            if (columns != null) {
+                return columns;
+            }
+        }
+        return projection;
+    }
+
+    /**
+     * Blocking performs the query to <code>uri</code> and maps all the rows of the cursor with <code>cursorMapper</code>.
+     * @return list of mapped rows
+     * @throws NullPointerException if the cursor is null
+     */
+    private static <T> List<T> blockingQuery(
+            ContentResolver resolver,
+            Uri uri,
+            String[] projection,
+            String selection,
+            String[] selectionArgs,
+            String sortOrder,
+            CursorMapper<T> cursorMapper
+    ) {
+        final boolean traced = RxTrace.beginSection("RxContent.query", uri);
+        try {
+            final RxContentMetrics metrics = sMetrics;
+            final QueryPolicy policy = sQueryPolicy;
+            final boolean timed = metrics != null || policy != null;
+            if (policy != null) {
+                policy.checkThread(uri);
+            }
+            final long startTime = timed ? System.nanoTime() : 0L;
+
+            Cursor cursor = resolver.query(
+                    uri, projectionOf(projection, cursorMapper), selection, selectionArgs, sortOrder);
+
+            checkCursor(cursor, uri);
+            if (policy != null) {
+                cursor = policy.checkColumns(uri, cursor);
+            }
+
+            final long cursorTime = timed ? System.nanoTime() : 0L;
+
+            // Counting the rows fills the cursor window
+            final boolean tracedFill = RxTrace.beginSection("RxContent.fill");
+            final List<T> items;
+            try {
+                items = new ArrayList<>(cursor.getCount());
+            } finally {
+                RxTrace.endSection(tracedFill);
+            }
+
+            final long fillTime = timed ? System.nanoTime() : 0L;
+
+            final boolean tracedMap = RxTrace.beginSection("RxContent.map");
+            try {
+                if (cursor.moveToFirst()) {
+                    do {
+                        items.add(cursorMapper.map(cursor));
+                    } while (cursor.moveToNext());
+                }
+            } finally {
+                cursor.close();
+                RxTrace.endSection(tracedMap);
+            }
+
+            final long endTime = timed ? System.nanoTime() : 0L;
+            if (metrics != null) {
+                metrics.onQuery(uri, cursorTime - startTime, fillTime - cursorTime,
+                        endTime - fillTime, items.size(), RxContentMetrics.UNKNOWN_SIZE);
+            }
+            if (policy != null) {
+                policy.checkDurations(uri, fillTime - startTime, endTime - fillTime);
+            }
+
+            return items;
+        } finally {
+            RxTrace.endSection(traced);
+        }
+    }
+
+    /**
+     * Blocking performs the query to <code>itemUri</code> and maps the first row of the cursor with <code>cursorMapper</code>.
+     * @return mapped row, or null if the cursor is empty
+     * @throws NullPointerException if the cursor is null
+     */
+    private static <T> T blockingQueryItem(
+            ContentResolver resolver,
+            Uri uri,
+            Uri itemUri,
+            String[] projection,
+            CursorMapper<T> cursorMapper
+    ) {
+        final boolean traced = RxTrace.beginSection("RxContent.queryItem", itemUri);
+        try {
+            final RxContentMetrics metrics = sMetrics;
+            final QueryPolicy policy = sQueryPolicy;
+            final boolean timed = metrics != null || policy != null;
+            if (policy != null) {
+                policy.checkThread(itemUri);
+            }
+            final long startTime = timed ? System.nanoTime() : 0L;
+
+            Cursor cursor = resolver.query(
+                    itemUri, projectionOf(projection, cursorMapper), null, null, null);
+
+            checkCursor(cursor, uri);
+            if (policy != null) {
+                cursor = policy.checkColumns(itemUri, cursor);
+            }
+
+            final long cursorTime = timed ? System.nanoTime() : 0L;
+            long fillTime = 0L;
+
+            T item = null;
+
+            final boolean tracedMap = RxTrace.beginSection("RxContent.map");
+            try {
+                final boolean hasRow = cursor.moveToFirst();
+                fillTime = timed ? System.nanoTime() : 0L;
+                if (hasRow) {
+                    item = cursorMapper.map(cursor);
+                }
+            } finally {
+                cursor.close();
+                RxTrace.endSection(tracedMap);
+            }
+
+            final long endTime = timed ? System.nanoTime() : 0L;
+            if (metrics != null) {
+                metrics.onQuery(itemUri, cursorTime - startTime, fillTime - cursorTime,
+                        endTime - fillTime, item != null ? 1 : 0, RxContentMetrics.UNKNOWN_SIZE);
+            }
+            if (policy != null) {
+                policy.checkDurations(itemUri, fillTime - startTime, endTime - fillTime);
+            }
+
+            return item;
+        } finally {
+            RxTrace.endSection(traced);
+        }
+    }
+
+    /**
+     * Blocking counts the rows matching the query to <code>uri</code>.
+     * The count is pushed down to the provider with {@link RxContent#COUNT_PROJECTION}, so no rows are transferred.
+     * If the provider rejects the projection or ignores it, the rows are counted on the cursor with a minimal projection.
+     * @return number of matching rows
+     * @throws NullPointerException if the cursor is null
+     */
+    private static int blockingCount(
+            ContentResolver resolver,
+            Uri uri,
+            String selection,
+            String[] selectionArgs
+    ) {
+        final boolean traced = RxTrace.beginSection("RxContent.count", uri);
+        try {
+            final RxContentMetrics metrics = sMetrics;
+            final QueryPolicy policy = sQueryPolicy;
+            final boolean timed = metrics != null || policy != null;
+            if (policy != null) {
+                policy.checkThread(uri);
+            }
+            final long startTime = timed ? System.nanoTime() : 0L;
+
+            Cursor cursor;
+            try {
+                cursor = resolver.query(uri, COUNT_PROJECTION, selection, selectionArgs, null);
+            } catch (IllegalArgumentException e) {
+                // Providers with strict projection maps do not accept aggregate columns
+                cursor = resolver.query(uri, ID_PROJECTION, selection, selectionArgs, null);
+            }
+
+            checkCursor(cursor, uri);
+
+            final long cursorTime = timed ? System.nanoTime() : 0L;
+
+            final int count;
+            try {
+                if (cursor.getColumnCount() == 1
+                        && COUNT_PROJECTION[0].equalsIgnoreCase(cursor.getColumnName(0))) {
+                    count = cursor.moveToFirst() ? cursor.getInt(0) : 0;
+                } else {
+                    count = cursor.getCount();
+                }
+            } finally {
+                cursor.close();
+            }
+
+            final long endTime = timed ? System.nanoTime() : 0L;
+            if (metrics != null) {
+                metrics.onQuery(uri, cursorTime - startTime, endTime - cursorTime,
+                        0L, count, RxContentMetrics.UNKNOWN_SIZE);
+            }
+            if (policy != null) {
+                policy.checkDurations(uri, endTime - startTime, 0L);
+            }
+
+            return count;
+        } finally {
+            RxTrace.endSection(traced);
+        }
+    }
+
+    /**
+     * Callback of the observers registered with {@link RxContent#registerTriggers(ContentResolver, List, ObservationSpec, UriChangeListener)}.
+     */
+    /*package*/ interface UriChangeListener {
+        /**
+         * Called on {@link ObserverHandler#sInstance} thread when a uri changes.
+         * @param uri that is changed, or null if the platform does not report it
+         */
+        void onUriChanged(Uri uri);
+    }
+
+    /**
+     * Same as {@link RxContent#registerTriggers(ContentResolver, List, ObservationSpec, UriChangeListener)},
+     * for callers that do not need the changed Uri.
+     */
+    /*package*/ static Disposable registerTriggers(
+            final ContentResolver contentResolver,
+            final List<Uri> uris,
+            final ObservationSpec spec,
+            final Runnable onChange
+    ) {
+        return registerTriggers(contentResolver, uris, spec, new UriChangeListener() {
+            @Override
+            public void onUriChanged(Uri uri) {
+                onChange.run();
+            }
+        });
+    }
+
+    /**
+     * Creates a single that performs <code>callable</code> once right on <code>queryExecutor</code>,
+     * without wrapping it into a scheduler, capturing the subscribing call site for {@link QueryPolicy}.
+     * The query is skipped if the single is disposed before the executor runs it.
+     */
+    private static <T> Single<T> singleQuery(final Callable<T> callable, final Executor queryExecutor) {
+        return Single.create(new SingleOnSubscribe<T>() {
+            @Override
+            public void subscribe(final SingleEmitter<T> emitter) {
+                final Throwable callSite = QueryPolicy.captureCallSite();
+                queryExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (emitter.isDisposed()) {
+                            return;
+                        }
+                        final T result;
+                        try {
+                            result = QueryPolicy.call(callSite, callable);
+                        } catch (Throwable error) {
+                            Exceptions.throwIfFatal(error);
+                            emitter.tryOnError(error);
+                            return;
+                        }
+                        // A null result is signalled as NullPointerException
+                        emitter.onSuccess(result);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Creates a maybe that performs <code>callable</code> once right on <code>queryExecutor</code>,
+     * without wrapping it into a scheduler, capturing the subscribing call site for {@link QueryPolicy}.
+     * A null result completes the maybe without a value.
+     * The query is skipped if the maybe is disposed before the executor runs it.
+     */
+    private static <T> Maybe<T> maybeQuery(final Callable<T> callable, final Executor queryExecutor) {
+        return Maybe.create(new MaybeOnSubscribe<T>() {
+            @Override
+            public void subscribe(final MaybeEmitter<T> emitter) {
+                final Throwable callSite = QueryPolicy.captureCallSite();
+                queryExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (emitter.isDisposed()) {
+                            return;
+                        }
+                        final T result;
+                        try {
+                            result = QueryPolicy.call(callSite, callable);
+                        } catch (Throwable error) {
+                            Exceptions.throwIfFatal(error);
+                            emitter.tryOnError(error);
+                            return;
+                        }
+                        if (result != null) {
+                            emitter.onSuccess(result);
+                        } else {
+                            emitter.onComplete();
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Registers content observers that notify <code>listener</code> each time a uri from <code>uris</code> changes.
+     * The observers are registered with notifyForDescendants flag from <code>spec</code>.
+     * Changes, that are not accepted by <code>spec</code>, are dropped right on the observer thread.
+     *
+     * The Uris are grouped by their scheme and authority.
+     * If a group contains at least {@link RxContent#ANCESTOR_COLLAPSE_THRESHOLD} Uris with a non-root common ancestor,
+     * then a single observer is registered on that ancestor.
+     * Changes received by such an observer are checked with {@link UriTrie} and only those that concern the Uris of the group are passed to <code>listener</code>.
+     * So the number of observers registered via binder does not grow with the number of Uris that share an ancestor,
+     * e.g. with members of the same playlist.
+     *
+     * @param contentResolver to register Uri observers
+     * @param uris to observe data changes
+     * @param spec describing how to observe <code>uris</code>
+     * @param listener to notify on {@link ObserverHandler#sInstance} thread when a uri changes
+     * @return disposable that unregisters all the observers
+     */
+    /*package*/ static Disposable registerTriggers(
+            final ContentResolver contentResolver,
+            final List<Uri> uris,
+            final ObservationSpec spec,
+            final UriChangeListener listener
+    ) {
+        final boolean notifyForDescendants = spec.notifyForDescendants();
+
+        final Map<String, List<Uri>> groups = new LinkedHashMap<>();
+        for (Uri uri : uris) {
+            final String root = uri.getScheme() + "://" + uri.getAuthority();
+            List<Uri> group = groups.get(root);
+            if (group == null) {
+                group = new ArrayList<>();
+                groups.put(root, group);
+            }
+            group.add(uri);
+        }
+
+        final List<ContentObserver> triggers = new ArrayList<>();
+        final UriTrie trie = new UriTrie();
+
+        final boolean tracedRegistration = RxTrace.beginSection("RxContent.register", uris);
+        try {
+            for (List<Uri> group : groups.values()) {
+                final Uri ancestor = group.size() >= ANCESTOR_COLLAPSE_THRESHOLD
+                        ? findCommonAncestor(group) : null;
+
+                if (ancestor != null) {
+                    for (Uri uri : group) {
+                        trie.add(uri);
+                    }
+
+                    final ContentObserver trigger = new ContentObserver(ObserverHandler.sInstance) {
+                        @Override
+                        public void onChange(boolean selfChange, Uri uri) {
+                            final boolean traced = RxTrace.beginSection("RxContent.notify", uri);
+                            try {
+                                final RxContentMetrics metrics = sMetrics;
+                                if (metrics != null) {
+                                    metrics.onNotificationReceived(uri);
+                                }
+                                if ((uri == null || trie.matches(uri, notifyForDescendants)) && spec.accept(uri)) {
+                                    listener.onUriChanged(uri);
+                                } else if (metrics != null) {
+                                    metrics.onNotificationDropped(uri);
+                                }
+                            } finally {
+                                RxTrace.endSection(traced);
+                            }
+                        }
+                    };
+
+                    // The ancestor is always observed with descendants, so that the changes of the group Uris reach it
+                    contentResolver.registerContentObserver(ancestor, true, trigger);
+                    triggers.add(trigger);
+                } else {
+                    for (Uri uri : group) {
+                        final ContentObserver trigger = new ContentObserver(ObserverHandler.sInstance) {
+                            @Override
+                            public void onChange(boolean selfChange, Uri uri) {
+                                final boolean traced = RxTrace.beginSection("RxContent.notify", uri);
+                                try {
+                                    final RxContentMetrics metrics = sMetrics;
+                                    if (metrics != null) {
+                                        metrics.onNotificationReceived(uri);
+                                    }
+                                    if (spec.accept(uri)) {
+                                        listener.onUriChanged(uri);
+                                    } else if (metrics != null) {
+                                        metrics.onNotificationDropped(uri);
+                                    }
+                                } finally {
+                                    RxTrace.endSection(traced);
+                                }
+                            }
+                        };
+
+                        contentResolver.registerContentObserver(uri, notifyForDescendants, trigger);
+                        triggers.add(trigger);
+                    }
+                }
+            }
+        } finally {
+            RxTrace.endSection(tracedRegistration);
+        }
+
+        onObserverCountChanged(triggers.size());
+
+        return Disposables.fromAction(new Action() {
+            @Override
+            public void run() {
+                for (ContentObserver trigger : triggers) {
+                    contentResolver.unregisterContentObserver(trigger);
+                }
+                onObserverCountChanged(-triggers.size());
+            }
+        });
+    }
+
+    /**
+     * Finds the nearest common ancestor of <code>uris</code> that all have the same scheme and authority.
+     * The ancestor may be one of the Uris itself.
+     * @param uris non-empty list of Uris with the same scheme and authority
+     * @return the common ancestor, or null if the Uris have no common path segments
+     */
+    private static Uri findCommonAncestor(List<Uri> uris) {
+        final Uri first = uris.get(0);
+        final List<String> firstSegments = first.getPathSegments();
+        int commonCount = firstSegments.size();
+        for (int i = 1, size = uris.size(); i < size && commonCount > 0; i++) {
+            final List<String> segments = uris.get(i).getPathSegments();
+            int j = 0;
+            final int limit = Math.min(commonCount, segments.size());
+            while (j < limit && firstSegments.get(j).equals(segments.get(j))) {
+                j++;
+            }
+            commonCount = j;
+        }
+
+        if (commonCount == 0) {
+            // Observing the whole authority would wake for each change in it
+            return null;
+        }
+
+        final Uri.Builder builder = new Uri.Builder()
+                .scheme(first.getScheme())
+                .authority(first.getAuthority());
+        for (int i = 0; i < commonCount; i++) {
+            builder.appendPath(firstSegments.get(i));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Creates same flowable as {@link RxContent#createFlowable(ContentResolver, Uri, ObservationSpec)}
+     * passing {@link ObservationSpec#descendants()} as the spec.
+     *
+     * @param contentResolver to register Uri observer
+     * @param uri to observe data changes
+     * @return flowable source
+     */
+    public static Flowable<Object> createFlowable(
+            final ContentResolver contentResolver,
+            final Uri uri
+    ) {
+        return createFlowable(contentResolver, uri, ObservationSpec.descendants());
+    }
+
     /**
      * Creates a flowable that emits {@link RxContent#NOTHING} each time the specified <code>uri</code> changes.
      * On the subscribe, {@link RxContent#NOTHING} is emitted at least once.
@@ -71,40 +617,74 @@ public final class RxContent {
      *
      * The first object is not dispatched on a particular thread, but on the thread of the subscription.
      * Objects emitted on Uri changes are dispatched on {@link ObserverHandler#sInstance} thread.
+     * Changes, that are not accepted by <code>spec</code>, are not emitted.
      *
      * @param contentResolver to register Uri observer
      * @param uri to observe data changes
+     * @param spec describing how to observe <code>uri</code>
      * @return flowable source
      */
     public static Flowable<Object> createFlowable(
             final ContentResolver contentResolver,
-            final Uri uri
+            final Uri uri,
+            final ObservationSpec spec
+    ) {
+        return createFlowable(contentResolver, Collections.singletonList(uri), spec);
+    }
+
+    /**
+     * Creates same flowable as {@link RxContent#createFlowable(ContentResolver, List, ObservationSpec)}
+     * passing {@link ObservationSpec#descendants()} as the spec.
+     *
+     * @param contentResolver to register Uri observers
+     * @param uris to observe data changes
+     * @return flowable source
+     */
+    public static Flowable<Object> createFlowable(
+            final ContentResolver contentResolver,
+            final List<Uri> uris
+    ) {
+        return createFlowable(contentResolver, uris, ObservationSpec.descendants());
+    }
+
+    /**
+     * Creates a flowable that emits {@link RxContent#NOTHING} each time a uri from the specified <code>uris</code> collection changes.
+     * On the subscribe, {@link RxContent#NOTHING} is emitted at least once.
+     * <code>uris</code> are observed using {@link ContentResolver#registerContentObserver(Uri, boolean, ContentObserver)} method.
+     * On the source cancellation, observation is terminated using {@link ContentResolver#unregisterContentObserver(ContentObserver)} method.
+     *
+     * The first object is not dispatched on a particular thread, but on the thread of the subscription.
+     * Objects emitted on Uri changes are dispatched on {@link ObserverHandler#sInstance} thread.
+     * Changes, that are not accepted by <code>spec</code>, are not emitted.
+     *
+     * Uris that share a common ancestor are not observed one by one, if there are many of them.
+     * Instead, a single observer is registered on the ancestor and the changes it receives are filtered against <code>uris</code>.
+     * @see RxContent#registerTriggers(ContentResolver, List, ObservationSpec, Runnable)
+     *
+     * @param contentResolver to register Uri observers
+     * @param uris to observe data changes
+     * @param spec describing how to observe <code>uris</code>
+     * @return flowable source
+     */
+    public static Flowable<Object> createFlowable(
+            final ContentResolver contentResolver,
+            final List<Uri> uris,
+            final ObservationSpec spec
     ) {
         return Flowable.create(new FlowableOnSubscribe<Object>() {
             @Override
             public void subscribe(final FlowableEmitter<Object> emitter) {
                 if (!emitter.isCancelled()) {
-                    final boolean notifyForDescendants = true;
-                    final ContentObserver trigger = new ContentObserver(ObserverHandler.sInstance) {
+                    final Runnable onChange = new Runnable() {
                         @Override
-                        public void onChange(boolean selfChange, Uri uri) {
+                        public void run() {
                             if (!emitter.isCancelled()) {
                                 emitter.onNext(NOTHING);
                             }
                         }
                     };
 
-                    contentResolver.registerContentObserver(
-                            uri,
-                            notifyForDescendants,
-                            trigger);
-
-                    emitter.setDisposable(Disposables.fromAction(new Action() {
-                        @Override
-                        public void run() {
-                            contentResolver.unregisterContentObserver(trigger);
-                        }
-                    }));
+                    emitter.setDisposable(registerTriggers(contentResolver, uris, spec, onChange));
                 }
 
                 if (!emitter.isCancelled()) {
@@ -115,62 +695,41 @@ public final class RxContent {
     }
 
     /**
-     * Creates a flowable that emits {@link RxContent#NOTHING} each time a uri from the specified <code>uris</code> collection changes.
-     * On the subscribe, {@link RxContent#NOTHING} is emitted at least once.
-     * <code>uris</code> are observed using {@link ContentResolver#registerContentObserver(Uri, boolean, ContentObserver)} method.
-     * On the source cancellation, observation is terminated using {@link ContentResolver#unregisterContentObserver(ContentObserver)} method.
+     * Creates a flowable that emits the changed Uri each time a uri from the specified <code>uris</code> collection changes,
+     * e.g. to tell which of the descendants of an observed Uri has changed.
+     * Unlike {@link RxContent#createFlowable(ContentResolver, List, ObservationSpec)}, nothing is emitted on the subscribe
+     * and the changes are not coalesced: each of them is emitted, so that changes of different Uris are not lost.
+     * If the platform does not report the changed Uri, then {@link Uri#EMPTY} is emitted.
      *
-     * The first object is not dispatched on a particular thread, but on the thread of the subscription.
-     * Objects emitted on Uri changes are dispatched on {@link ObserverHandler#sInstance} thread.
+     * Uris are emitted on {@link ObserverHandler#sInstance} thread.
      *
      * @param contentResolver to register Uri observers
      * @param uris to observe data changes
+     * @param spec describing how to observe <code>uris</code>
      * @return flowable source
      */
-    public static Flowable<Object> createFlowable(
+    public static Flowable<Uri> createUriFlowable(
             final ContentResolver contentResolver,
-            final List<Uri> uris
+            final List<Uri> uris,
+            final ObservationSpec spec
     ) {
-        return Flowable.create(new FlowableOnSubscribe<Object>() {
+        return Flowable.create(new FlowableOnSubscribe<Uri>() {
             @Override
-            public void subscribe(final FlowableEmitter<Object> emitter) {
+            public void subscribe(final FlowableEmitter<Uri> emitter) {
                 if (!emitter.isCancelled()) {
-                    final boolean notifyForDescendants = true;
-                    final List<ContentObserver> triggers = new ArrayList<>(uris.size());
-
-                    for (Uri uri : uris) {
-                        final ContentObserver trigger = new ContentObserver(ObserverHandler.sInstance) {
-                            @Override
-                            public void onChange(boolean selfChange, Uri uri) {
-                                if (!emitter.isCancelled()) {
-                                    emitter.onNext(NOTHING);
-                                }
-                            }
-                        };
-
-                        contentResolver.registerContentObserver(
-                                uri,
-                                notifyForDescendants,
-                                trigger);
-
-                        triggers.add(trigger);
-                    }
-
-                    emitter.setDisposable(Disposables.fromAction(new Action() {
+                    final UriChangeListener listener = new UriChangeListener() {
                         @Override
-                        public void run() {
-                            for (ContentObserver trigger : triggers) {
-                                contentResolver.unregisterContentObserver(trigger);
+                        public void onUriChanged(Uri uri) {
+                            if (!emitter.isCancelled()) {
+                                emitter.onNext(uri != null ? uri : Uri.EMPTY);
                             }
                         }
-                    }));
-                }
+                    };
 
-                if (!emitter.isCancelled()) {
-                    emitter.onNext(NOTHING);
+                    emitter.setDisposable(registerTriggers(contentResolver, uris, spec, listener));
                 }
             }
-        }, BackpressureStrategy.LATEST);
+        }, BackpressureStrategy.BUFFER);
     }
 
     /**
@@ -181,6 +740,9 @@ public final class RxContent {
      * On the source cancellation, observation is terminated using {@link ContentResolver#unregisterContentObserver(ContentObserver)} method.
      *
      * The query is performed on <code>scheduler</code> thread.
+     * Registration of the observer, the query and the emission of its result are done on a single worker of <code>scheduler</code>.
+     * Changes, that come while the query is being performed, are coalesced into one more query.
+     * If the downstream is not ready to receive the result, only the latest one is kept.
      *
      * @param contentResolver to register Uri observer
      * @param uri to observe data changes
@@ -194,26 +756,40 @@ public final class RxContent {
             final Scheduler scheduler,
             final Callable<T> callable
     ) {
-        final Maybe<T> maybe = Maybe.fromCallable(callable);
-        return createFlowable(contentResolver, uri)
-                .subscribeOn(scheduler)
-                .unsubscribeOn(scheduler)
-                .observeOn(scheduler)
-                .flatMapMaybe(new Function<Object, MaybeSource<? extends T>>() {
-                    @Override
-                    public MaybeSource<? extends T> apply(Object o) {
-                        return maybe;
-                    }
-                });
+        return createFlowable(contentResolver, uri, ObservationSpec.descendants(), scheduler, callable);
+    }
+
+    /**
+     * Creates a flowable that emits objects of type {@link T} returned by <code>callable</code> query.
+     * The query is triggered the first time when subscribing and then each time the specified <code>uri</code> is changed,
+     * if the change is accepted by <code>spec</code>.
+     *
+     * @see RxContent#createFlowable(ContentResolver, Uri, Scheduler, Callable)
+     *
+     * @param contentResolver to register Uri observer
+     * @param uri to observe data changes
+     * @param spec describing how to observe <code>uri</code>
+     * @param scheduler on which the query is performed
+     * @param callable query
+     * @return flowable source
+     */
+    public static <T> Flowable<T> createFlowable(
+            final ContentResolver contentResolver,
+            final Uri uri,
+            final ObservationSpec spec,
+            final Scheduler scheduler,
+            final Callable<T> callable
+    ) {
+        return new FlowableContentQuery<>(contentResolver, Collections.singletonList(uri), spec, scheduler, callable);
     }
 
     /**
-     * Creates same flowable as {@link RxContent#createFlowable(ContentResolver, Uri, Scheduler, Callable)}
-     * passing as the scheduler {@link Schedulers#from(Executor)} from <code>queryExecutor</code>.
+     * Creates same flowable as {@link RxContent#createFlowable(ContentResolver, Uri, Scheduler, Callable)},
+     * but the query is performed right on <code>queryExecutor</code>, without wrapping it into a scheduler.
      *
      * @param contentResolver @see {@link RxContent#createFlowable(ContentResolver, Uri, Scheduler, Callable)}
      * @param uri @see {@link RxContent#createFlowable(ContentResolver, Uri, Scheduler, Callable)}
-     * @param queryExecutor from which the query scheduler is created
+     * @param queryExecutor on which the query is performed
      * @param callable @see {@link RxContent#createFlowable(ContentResolver, Uri, Scheduler, Callable)}
      * @return flowable source
      */
@@ -223,8 +799,28 @@ public final class RxContent {
             final Executor queryExecutor,
             final Callable<T> callable
     ) {
-        final Scheduler scheduler = Schedulers.from(queryExecutor);
-        return createFlowable(contentResolver, uri, scheduler, callable);
+        return createFlowable(contentResolver, uri, ObservationSpec.descendants(), queryExecutor, callable);
+    }
+
+    /**
+     * Creates same flowable as {@link RxContent#createFlowable(ContentResolver, Uri, ObservationSpec, Scheduler, Callable)},
+     * but the query is performed right on <code>queryExecutor</code>, without wrapping it into a scheduler.
+     *
+     * @param contentResolver to register Uri observer
+     * @param uri to observe data changes
+     * @param spec describing how to observe <code>uri</code>
+     * @param queryExecutor on which the query is performed
+     * @param callable query
+     * @return flowable source
+     */
+    public static <T> Flowable<T> createFlowable(
+            final ContentResolver contentResolver,
+            final Uri uri,
+            final ObservationSpec spec,
+            final Executor queryExecutor,
+            final Callable<T> callable
+    ) {
+        return new FlowableContentQuery<>(contentResolver, Collections.singletonList(uri), spec, queryExecutor, callable);
     }
 
     /**
@@ -235,6 +831,7 @@ public final class RxContent {
      * On the source cancellation, observation is terminated using {@link ContentResolver#unregisterContentObserver(ContentObserver)} method.
      *
      * The query is performed on <code>scheduler</code> thread.
+     * @see RxContent#createFlowable(ContentResolver, Uri, Scheduler, Callable)
      *
      * @param contentResolver to register Uri observers
      * @param uris to observe data changes
@@ -248,26 +845,40 @@ public final class RxContent {
             final Scheduler scheduler,
             final Callable<T> callable
     ) {
-        final Maybe<T> maybe = Maybe.fromCallable(callable);
-        return createFlowable(contentResolver, uris)
-                .subscribeOn(scheduler)
-                .unsubscribeOn(scheduler)
-                .observeOn(scheduler)
-                .flatMapMaybe(new Function<Object, MaybeSource<? extends T>>() {
-                    @Override
-                    public MaybeSource<? extends T> apply(Object o) {
-                        return maybe;
-                    }
-                });
+        return createFlowable(contentResolver, uris, ObservationSpec.descendants(), scheduler, callable);
     }
 
     /**
-     * Creates same flowable as {@link RxContent#createFlowable(ContentResolver, List, Scheduler, Callable)}
-     * passing as the scheduler {@link Schedulers#from(Executor)} from <code>queryExecutor</code>.
+     * Creates a flowable that emits objects of type {@link T} returned by <code>callable</code> query.
+     * The query is triggered the first time when subscribing and then each time a uri from the specified <code>uris</code> collection changes,
+     * if the change is accepted by <code>spec</code>.
+     *
+     * @see RxContent#createFlowable(ContentResolver, List, Scheduler, Callable)
+     *
+     * @param contentResolver to register Uri observer
+     * @param uris to observe data changes
+     * @param spec describing how to observe <code>uris</code>
+     * @param scheduler on which the query is performed
+     * @param callable query
+     * @return flowable source
+     */
+    public static <T> Flowable<T> createFlowable(
+            final ContentResolver contentResolver,
+            final List<Uri> uris,
+            final ObservationSpec spec,
+            final Scheduler scheduler,
+            final Callable<T> callable
+    ) {
+        return new FlowableContentQuery<>(contentResolver, uris, spec, scheduler, callable);
+    }
+
+    /**
+     * Creates same flowable as {@link RxContent#createFlowable(ContentResolver, List, Scheduler, Callable)},
+     * but the query is performed right on <code>queryExecutor</code>, without wrapping it into a scheduler.
      *
      * @param contentResolver @see {@link RxContent#createFlowable(ContentResolver, List, Scheduler, Callable)}
      * @param uris @see {@link RxContent#createFlowable(ContentResolver, List, Scheduler, Callable)}
-     * @param queryExecutor from which the query scheduler is created
+     * @param queryExecutor on which the query is performed
      * @param callable @see {@link RxContent#createFlowable(ContentResolver, List, Scheduler, Callable)}
      * @return flowable source
      */
@@ -277,8 +888,28 @@ public final class RxContent {
             final Executor queryExecutor,
             final Callable<T> callable
     ) {
-        final Scheduler scheduler = Schedulers.from(queryExecutor);
-        return createFlowable(contentResolver, uris, scheduler, callable);
+        return createFlowable(contentResolver, uris, ObservationSpec.descendants(), queryExecutor, callable);
+    }
+
+    /**
+     * Creates same flowable as {@link RxContent#createFlowable(ContentResolver, List, ObservationSpec, Scheduler, Callable)},
+     * but the query is performed right on <code>queryExecutor</code>, without wrapping it into a scheduler.
+     *
+     * @param contentResolver to register Uri observer
+     * @param uris to observe data changes
+     * @param spec describing how to observe <code>uris</code>
+     * @param queryExecutor on which the query is performed
+     * @param callable query
+     * @return flowable source
+     */
+    public static <T> Flowable<T> createFlowable(
+            final ContentResolver contentResolver,
+            final List<Uri> uris,
+            final ObservationSpec spec,
+            final Executor queryExecutor,
+            final Callable<T> callable
+    ) {
+        return new FlowableContentQuery<>(contentResolver, uris, spec, queryExecutor, callable);
     }
 
     /**
@@ -313,32 +944,48 @@ public final class RxContent {
             final String sortOrder,
             final Executor queryExecutor,
             final CursorMapper<T> cursorMapper
+    ) {
+        return query(resolver, uri, projection, selection, selectionArgs, sortOrder,
+                ObservationSpec.descendants(), queryExecutor, cursorMapper);
+    }
+
+    /**
+     * Creates same flowable as {@link RxContent#query(ContentResolver, Uri, String[], String, String[], String, Executor, CursorMapper)},
+     * but <code>uri</code> is observed as described by <code>spec</code>.
+     * Changes, that are not accepted by <code>spec</code>, do not trigger the query.
+     *
+     * @param resolver to perform the query and observe Uri changes
+     * @param uri to query and observe
+     * @param projection @see {@link ContentResolver#query(Uri, String[], String, String[], String)}
+     * @param selection @see {@link ContentResolver#query(Uri, String[], String, String[], String)}
+     * @param selectionArgs @see {@link ContentResolver#query(Uri, String[], String, String[], String)}
+     * @param sortOrder @see {@link ContentResolver#query(Uri, String[], String, String[], String)}
+     * @param spec describing how to observe <code>uri</code>
+     * @param queryExecutor on which the query is performed
+     * @param cursorMapper for mapping the query cursor to objects of type {@link T}
+     * @param <T> type of the query
+     * @return flowable source
+     */
+    public static <T> Flowable<List<T>> query(
+            final ContentResolver resolver,
+            final Uri uri,
+            final String[] projection,
+            final String selection,
+            final String[] selectionArgs,
+            final String sortOrder,
+            final ObservationSpec spec,
+            final Executor queryExecutor,
+            final CursorMapper<T> cursorMapper
     ) {
         return createFlowable(
                 resolver,
                 uri,
+                spec,
                 queryExecutor,
                 new Callable<List<T>>() {
                     @Override
                     public List<T> call() {
-                        Cursor cursor = resolver.query(
-                                uri, projection, selection, selectionArgs, sortOrder);
-
-                        checkCursor(cursor, uri);
-
-                        List<T> items = new ArrayList<>(cursor.getCount());
-
-                        try {
-                            if (cursor.moveToFirst()) {
-                                do {
-                                    items.add(cursorMapper.map(cursor));
-                                } while (cursor.moveToNext());
-                            }
-                        } finally {
-                            cursor.close();
-                        }
-
-                        return items;
+                        return blockingQuery(resolver, uri, projection, selection, selectionArgs, sortOrder, cursorMapper);
                     }
                 }
         );
@@ -372,29 +1019,45 @@ public final class RxContent {
             final long itemId,
             final Executor queryExecutor,
             final CursorMapper<T> cursorMapper
+    ) {
+        return queryItem(resolver, uri, projection, itemId,
+                ObservationSpec.descendants(), queryExecutor, cursorMapper);
+    }
+
+    /**
+     * Creates same flowable as {@link RxContent#queryItem(ContentResolver, Uri, String[], long, Executor, CursorMapper)},
+     * but the item uri is observed as described by <code>spec</code>.
+     * Changes, that are not accepted by <code>spec</code>, do not trigger the query.
+     *
+     * @param resolver to perform the query and observe Uri changes
+     * @param uri to query and observe
+     * @param projection @see {@link ContentResolver#query(Uri, String[], String, String[], String)}
+     * @param itemId @see {@link ContentResolver#query(Uri, String[], String, String[], String)}
+     * @param spec describing how to observe the item uri
+     * @param queryExecutor on which the query is performed
+     * @param cursorMapper for mapping the query cursor to objects of type {@link T}
+     * @param <T> type of the query
+     * @return flowable source
+     */
+    public static <T> Flowable<T> queryItem(
+            final ContentResolver resolver,
+            final Uri uri,
+            final String[] projection,
+            final long itemId,
+            final ObservationSpec spec,
+            final Executor queryExecutor,
+            final CursorMapper<T> cursorMapper
     ) {
         final Uri itemUri = ContentUris.withAppendedId(uri, itemId);
         return createFlowable(
                 resolver,
                 itemUri,
+                spec,
                 queryExecutor,
                 new Callable<T>() {
                     @Override
                     public T call() {
-                        Cursor cursor = resolver.query(
-                                itemUri, projection, null, null, null);
-
-                        checkCursor(cursor, uri);
-
-                        T item = null;
-
-                        try {
-                            if (cursor.moveToFirst()) {
-                                item = cursorMapper.map(cursor);
-                            }
-                        } finally {
-                            cursor.close();
-                        }
+                        final T item = blockingQueryItem(resolver, uri, itemUri, projection, cursorMapper);
 
                         if (item == null) {
                             throw new NullPointerException("Item not found: uri=" + uri);
@@ -405,4 +1068,151 @@ public final class RxContent {
                 }
         );
     }
+
+    /**
+     * Creates a single that emits the list of objects of type {@link T} returned by the query to <code>uri</code>.
+     * Unlike {@link RxContent#query(ContentResolver, Uri, String[], String, String[], String, Executor, CursorMapper)},
+     * this does not observe <code>uri</code>: the query is performed once on the subscribe.
+     *
+     * The query is performed on <code>queryExecutor</code> thread.
+     *
+     * @param resolver to perform the query
+     * @param uri to query
+     * @param projection @see {@link ContentResolver#query(Uri, String[], String, String[], String)}
+     * @param selection @see {@link ContentResolver#query(Uri, String[], String, String[], String)}
+     * @param selectionArgs @see {@link ContentResolver#query(Uri, String[], String, String[], String)}
+     * @param sortOrder @see {@link ContentResolver#query(Uri, String[], String, String[], String)}
+     * @param queryExecutor on which the query is performed
+     * @param cursorMapper for mapping the query cursor to objects of type {@link T}
+     * @param <T> type of the query
+     * @return single source
+     */
+    public static <T> Single<List<T>> querySingle(
+            final ContentResolver resolver,
+            final Uri uri,
+            final String[] projection,
+            final String selection,
+            final String[] selectionArgs,
+            final String sortOrder,
+            final Executor queryExecutor,
+            final CursorMapper<T> cursorMapper
+    ) {
+        return singleQuery(new Callable<List<T>>() {
+            @Override
+            public List<T> call() {
+                return blockingQuery(resolver, uri, projection, selection, selectionArgs, sortOrder, cursorMapper);
+            }
+        }, queryExecutor);
+    }
+
+    /**
+     * Creates a maybe that emits the object of type {@link T} returned by the query to <code>uri</code> with the appended <code>itemId</code>.
+     * Unlike {@link RxContent#queryItem(ContentResolver, Uri, String[], long, Executor, CursorMapper)},
+     * this does not observe the item uri: the query is performed once on the subscribe.
+     * If the item is not found, then the maybe completes without a value.
+     *
+     * The query is performed on <code>queryExecutor</code> thread.
+     *
+     * @param resolver to perform the query
+     * @param uri to query
+     * @param projection @see {@link ContentResolver#query(Uri, String[], String, String[], String)}
+     * @param itemId id of the item, appended to <code>uri</code>
+     * @param queryExecutor on which the query is performed
+     * @param cursorMapper for mapping the query cursor to objects of type {@link T}
+     * @param <T> type of the query
+     * @return maybe source
+     */
+    public static <T> Maybe<T> queryItemMaybe(
+            final ContentResolver resolver,
+            final Uri uri,
+            final String[] projection,
+            final long itemId,
+            final Executor queryExecutor,
+            final CursorMapper<T> cursorMapper
+    ) {
+        final Uri itemUri = ContentUris.withAppendedId(uri, itemId);
+        return maybeQuery(new Callable<T>() {
+            @Override
+            public T call() {
+                return blockingQueryItem(resolver, uri, itemUri, projection, cursorMapper);
+            }
+        }, queryExecutor);
+    }
+
+    /**
+     * Creates a single that emits the number of rows matching the query to <code>uri</code>.
+     * The rows are not mapped: the count is pushed down to the provider with COUNT(*) projection.
+     * If the provider does not support it, the rows are counted on the cursor with the projection of {@link BaseColumns#_ID} only.
+     * The query is performed once on the subscribe, <code>uri</code> is not observed.
+     *
+     * The query is performed on <code>queryExecutor</code> thread.
+     *
+     * @param resolver to perform the query
+     * @param uri to query
+     * @param selection @see {@link ContentResolver#query(Uri, String[], String, String[], String)}
+     * @param selectionArgs @see {@link ContentResolver#query(Uri, String[], String, String[], String)}
+     * @param queryExecutor on which the query is performed
+     * @return single source
+     */
+    public static Single<Integer> count(
+            final ContentResolver resolver,
+            final Uri uri,
+            final String selection,
+            final String[] selectionArgs,
+            final Executor queryExecutor
+    ) {
+        return singleQuery(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return blockingCount(resolver, uri, selection, selectionArgs);
+            }
+        }, queryExecutor);
+    }
+
+    /**
+     * Creates a single that emits true if there is at least one row matching the query to <code>uri</code>, false - otherwise.
+     * @see RxContent#count(ContentResolver, Uri, String, String[], Executor)
+     *
+     * @param resolver to perform the query
+     * @param uri to query
+     * @param selection @see {@link ContentResolver#query(Uri, String[], String, String[], String)}
+     * @param selectionArgs @see {@link ContentResolver#query(Uri, String[], String, String[], String)}
+     * @param queryExecutor on which the query is performed
+     * @return single source
+     */
+    public static Single<Boolean> exists(
+            final ContentResolver resolver,
+            final Uri uri,
+            final String selection,
+            final String[] selectionArgs,
+            final Executor queryExecutor
+    ) {
+        return singleQuery(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return blockingCount(resolver, uri, selection, selectionArgs) > 0;
+            }
+        }, queryExecutor);
+    }
+
+    /**
+     * Returns a transformer that delivers items to the main thread at most once per frame.
+     * Between frames, items are conflated on the upstream thread: only the latest one is delivered, the others are dropped
+     * before they reach the main looper. This is useful for feeding query results to UI, that is updated on each item,
+     * e.g. to a RecyclerView adapter.
+     *
+     * The frames are tracked with {@link android.view.Choreographer} of the main thread.
+     * On older platforms, that do not have it, the items are delivered with a delay of one frame duration.
+     *
+     * @param <T> type of items
+     * @return flowable transformer
+     */
+    public static <T> FlowableTransformer<T, T> latestPerFrame() {
+        return new FlowableTransformer<T, T>() {
+            @Override
+            public Publisher<T> apply(Flowable<T> upstream) {
+                return new FlowableLatestPerFrame<>(upstream);
+            }
+        };
+    }
 }
@@ -0,0 +1,58 @@
+package com.frolo.rxcontent;
+
+import android.net.Uri;
+
+
+/**
+ * Listener of metrics of {@link RxContent} queries and observers.
+ * Install it with {@link RxContent#setMetrics(RxContentMetrics)}.
+ *
+ * While no listener is installed, the hot paths of {@link RxContent} do not even read the clock.
+ * Callbacks are called on the threads of queries and observers, so implementations must be thread-safe and fast.
+ *
+ * @see HistogramMetrics
+ */
+public interface RxContentMetrics {
+
+    /**
+     * Passed as the size of the data when it is unknown.
+     */
+    long UNKNOWN_SIZE = -1L;
+
+    /**
+     * Called when a query of {@link RxContent#query}, {@link RxContent#queryItem} or their one-shot counterparts is performed.
+     * @param uri that is queried
+     * @param cursorNanos time until the cursor is returned by the provider
+     * @param fillNanos time of filling the cursor window, which is mostly counting the rows
+     * @param mappingNanos time of mapping the rows with {@link CursorMapper}
+     * @param rowCount number of the rows
+     * @param sizeBytes size of the data of the rows, or {@link RxContentMetrics#UNKNOWN_SIZE}
+     */
+    void onQuery(Uri uri, long cursorNanos, long fillNanos, long mappingNanos, int rowCount, long sizeBytes);
+
+    /**
+     * Called when an observer receives a change notification.
+     * @param uri that is changed, or null if the platform does not report it
+     */
+    void onNotificationReceived(Uri uri);
+
+    /**
+     * Called when a received notification is dropped, since it does not concern the observed Uris
+     * or is not accepted by {@link ObservationSpec}.
+     * @param uri that is changed, or null if the platform does not report it
+     */
+    void onNotificationDropped(Uri uri);
+
+    /**
+     * Called when a received notification is coalesced with a previous one, that has not yet been processed,
+     * so that it does not result in a query of its own.
+     * @param uri that is changed, or null if the platform does not report it
+     */
+    void onNotificationCoalesced(Uri uri);
+
+    /**
+     * Called when the number of content observers registered by {@link RxContent} changes.
+     * @param count of the registered observers
+     */
+    void onObserverCountChanged(int count);
+}
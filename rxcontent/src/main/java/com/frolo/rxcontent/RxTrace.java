@@ -0,0 +1,163 @@
+package com.frolo.rxcontent;
+
+import android.net.Uri;
+import android.os.Build;
+import android.os.Trace;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * Opt-in system trace sections of {@link RxContent} and {@link com.frolo.rxpreference.RxPreference} stages,
+ * that show up in Perfetto or systrace: observer registration, notification dispatch, query, cursor filling, mapping,
+ * preference read, write and emission.
+ *
+ * Sections are labeled with the authority and path of the Uri or with the preference key,
+ * e.g. <code>RxContent.query media/external/audio/playlists</code>.
+ * Async sections <code>RxContent.requery</code> span from the notification of an observed query to the emission of its result
+ * across threads, so a frame drop can be tracked down to the observed query that caused it.
+ *
+ * Tracing is disabled by default. While it is disabled, or below API 18, no labels are built.
+ * Async sections require API 29.
+ * Only enabling is public, the sections are begun and ended by the library itself.
+ *
+ * Example:
+ * <pre>
+ *     if (BuildConfig.DEBUG) {
+ *         RxTrace.setEnabled(true);
+ *     }
+ * </pre>
+ */
+public final class RxTrace {
+
+    /**
+     * Max length of a section name accepted by {@link Trace}.
+     */
+    private static final int MAX_SECTION_NAME_LENGTH = 127;
+
+    private static volatile boolean sEnabled;
+
+    private static final AtomicInteger sNextCookie = new AtomicInteger();
+
+    private RxTrace() {
+    }
+
+    /**
+     * Enables or disables the trace sections.
+     * @param enabled true to enable the sections
+     */
+    public static void setEnabled(boolean enabled) {
+        sEnabled = enabled;
+    }
+
+    /**
+     * Returns true if the trace sections are enabled and supported on this device.
+     * @return true if the sections are enabled
+     */
+    public static boolean isEnabled() {
+        return sEnabled && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2;
+    }
+
+    /**
+     * Begins the section of <code>stage</code> on the current thread, if tracing is enabled.
+     * The section must be ended on the same thread with {@link RxTrace#endSection(boolean)}.
+     * @param stage name of the stage, e.g. <code>RxContent.query</code>
+     * @param subject the stage is performed for: a Uri, a list of Uris, a preference key or null
+     * @return true if the section is begun
+     */
+    /*package*/ static boolean beginSection(String stage, Object subject) {
+        if (!isEnabled()) {
+            return false;
+        }
+        Trace.beginSection(sectionName(stage, subject));
+        return true;
+    }
+
+    /**
+     * Begins the nested section of <code>stage</code> on the current thread, if tracing is enabled.
+     * Unlike {@link RxTrace#beginSection(String, Object)}, this allocates no label, since the enclosing section has it.
+     * @param stage name of the stage
+     * @return true if the section is begun
+     */
+    /*package*/ static boolean beginSection(String stage) {
+        if (!isEnabled()) {
+            return false;
+        }
+        Trace.beginSection(stage);
+        return true;
+    }
+
+    /**
+     * Ends the last section begun on the current thread.
+     * @param begun the result of the begin call, so that the sections stay balanced if tracing is toggled meanwhile
+     */
+    /*package*/ static void endSection(boolean begun) {
+        if (begun) {
+            Trace.endSection();
+        }
+    }
+
+    /**
+     * Returns a new cookie to identify async sections.
+     * @return the cookie
+     */
+    /*package*/ static int newCookie() {
+        return sNextCookie.incrementAndGet();
+    }
+
+    /**
+     * Begins the async section of <code>stage</code>, that may be ended on another thread, if tracing is enabled on API 29+.
+     * @param stage name of the stage
+     * @param subject the stage is performed for
+     * @param cookie that identifies the section among concurrent sections of the same name
+     * @return the name of the begun section, to be passed to {@link RxTrace#endAsyncSection(String, int)}, or null
+     */
+    /*package*/ static String beginAsyncSection(String stage, Object subject, int cookie) {
+        if (!sEnabled || Build.VERSION.SDK_INT < Build.VERSION_CODES.Q) {
+            return null;
+        }
+        final String name = sectionName(stage, subject);
+        Trace.beginAsyncSection(name, cookie);
+        return name;
+    }
+
+    /**
+     * Ends the async section begun with {@link RxTrace#beginAsyncSection(String, Object, int)}.
+     * @param name of the section, or null if it has not been begun
+     * @param cookie of the section
+     */
+    /*package*/ static void endAsyncSection(String name, int cookie) {
+        if (name != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            Trace.endAsyncSection(name, cookie);
+        }
+    }
+
+    /*package*/ static String sectionName(String stage, Object subject) {
+        final String name;
+        if (subject == null) {
+            name = stage;
+        } else {
+            name = stage + ' ' + label(subject);
+        }
+        return name.length() > MAX_SECTION_NAME_LENGTH ? name.substring(0, MAX_SECTION_NAME_LENGTH) : name;
+    }
+
+    private static String label(Object subject) {
+        if (subject instanceof Uri) {
+            // The query and the fragment are left out, as they may be long or carry user data
+            final Uri uri = (Uri) subject;
+            final String path = uri.getPath();
+            return path != null ? uri.getAuthority() + path : String.valueOf(uri.getAuthority());
+        }
+        if (subject instanceof List) {
+            final List<?> list = (List<?>) subject;
+            if (list.isEmpty()) {
+                return "[]";
+            }
+            final String first = label(list.get(0));
+            return list.size() > 1 ? first + " +" + (list.size() - 1) : first;
+        }
+        return String.valueOf(subject);
+    }
+}
@@ -0,0 +1,19 @@
+package com.frolo.rxcontent;
+
+import android.net.Uri;
+
+
+/**
+ * This decides whether a change of {@link Uri}, dispatched to a content observer, should trigger the query.
+ */
+public interface UriFilter {
+
+    /**
+     * Checks whether the change of <code>uri</code> should be dispatched.
+     * This is called on the observer thread for each change, so it should be fast and must not block.
+     *
+     * @param uri that has been changed
+     * @return true if the change should be dispatched, false - if it should be dropped
+     */
+    boolean accept(Uri uri);
+}
@@ -0,0 +1,78 @@
+package com.frolo.rxcontent;
+
+import android.net.Uri;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Prefix tree of Uris.
+ * Each level of the tree is a component of a Uri: the scheme, the authority and then the path segments one by one.
+ * This is used to check whether a changed Uri, dispatched to an observer of a common ancestor, concerns any of the observed Uris.
+ *
+ * The tree is not thread-safe for modifications.
+ * Once all the Uris are added, it is safe to call {@link UriTrie#matches(Uri, boolean)} from any thread.
+ */
+final class UriTrie {
+
+    private static final class Node {
+        final Map<String, Node> children = new HashMap<>(4);
+        boolean terminal;
+    }
+
+    private final Node mRoot = new Node();
+
+    /**
+     * Adds <code>uri</code> to the tree.
+     * @param uri to add
+     */
+    void add(Uri uri) {
+        Node node = child(mRoot, uri.getScheme(), true);
+        node = child(node, uri.getAuthority(), true);
+        final List<String> segments = uri.getPathSegments();
+        for (int i = 0, size = segments.size(); i < size; i++) {
+            node = child(node, segments.get(i), true);
+        }
+        node.terminal = true;
+    }
+
+    /**
+     * Checks if <code>changedUri</code> concerns one of the added Uris.
+     * This is true if <code>changedUri</code> is one of the added Uris or an ancestor of one of them.
+     * If <code>includeDescendants</code> is true, then this is also true if <code>changedUri</code> is a descendant of one of the added Uris.
+     *
+     * That's the same rule that {@link android.content.ContentResolver} applies to dispatch a change to its observers.
+     *
+     * @param changedUri Uri that has been changed
+     * @param includeDescendants whether changes of descendants of the added Uris match
+     * @return true if <code>changedUri</code> matches, false - otherwise
+     */
+    boolean matches(Uri changedUri, boolean includeDescendants) {
+        Node node = child(mRoot, changedUri.getScheme(), false);
+        if (node == null) return false;
+        node = child(node, changedUri.getAuthority(), false);
+        if (node == null) return false;
+        final List<String> segments = changedUri.getPathSegments();
+        for (int i = 0, size = segments.size(); i < size; i++) {
+            if (includeDescendants && node.terminal) {
+                return true;
+            }
+            node = child(node, segments.get(i), false);
+            if (node == null) return false;
+        }
+        // Each node in the tree leads to at least one terminal node,
+        // so the changed uri is either an added uri or an ancestor of it.
+        return true;
+    }
+
+    private static Node child(Node parent, String component, boolean create) {
+        Node node = parent.children.get(component);
+        if (node == null && create) {
+            node = new Node();
+            parent.children.put(component, node);
+        }
+        return node;
+    }
+}
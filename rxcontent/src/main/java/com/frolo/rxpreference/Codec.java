@@ -0,0 +1,31 @@
+package com.frolo.rxpreference;
+
+
+/**
+ * Converts values of a custom type to bytes and back, for storing them in {@link android.content.SharedPreferences}.
+ * The bytes are stored as a Base64 string.
+ *
+ * Values are supposed to be immutable: the decoded value is cached and shared among all the reads and emissions
+ * until the preference is changed.
+ *
+ * @see RxPreference#ofObject(android.content.SharedPreferences, String, Codec)
+ * @param <T> type of values
+ */
+public interface Codec<T> {
+
+    /**
+     * Encodes <code>value</code> to bytes.
+     * @param value to encode, non-null
+     * @return encoded bytes
+     */
+    byte[] encode(T value);
+
+    /**
+     * Decodes a value from <code>bytes</code>.
+     * If the bytes cannot be decoded, then a runtime exception may be thrown,
+     * it is delivered to the subscribers of the preference as an error.
+     * @param bytes returned by {@link Codec#encode(Object)}
+     * @return decoded value, non-null
+     */
+    T decode(byte[] bytes);
+}
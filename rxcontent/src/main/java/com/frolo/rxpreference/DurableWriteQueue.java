@@ -0,0 +1,116 @@
+package com.frolo.rxpreference;
+
+import android.content.SharedPreferences;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.reactivex.CompletableEmitter;
+import io.reactivex.exceptions.Exceptions;
+import io.reactivex.schedulers.Schedulers;
+
+
+/**
+ * Queue of writes of a preferences file that complete only when they are on disk.
+ *
+ * Writes are committed by a single flusher on {@link Schedulers#io()} with {@link SharedPreferences.Editor#commit()},
+ * which returns after the file is synced to disk.
+ * All the writes enqueued while a commit is in progress are grouped into the next commit,
+ * so concurrent durable writes cost one sync of the file rather than one blocking commit each.
+ */
+final class DurableWriteQueue {
+
+    private static final class PendingWrite {
+        final PreferenceWrite<?> write;
+        final CompletableEmitter emitter;
+
+        PendingWrite(PreferenceWrite<?> write, CompletableEmitter emitter) {
+            this.write = write;
+            this.emitter = emitter;
+        }
+    }
+
+    private final PreferenceFile mFile;
+
+    /**
+     * Guarded by this.
+     */
+    private List<PendingWrite> mPending = new ArrayList<>();
+    private boolean mFlushScheduled;
+
+    private final Runnable mFlushTask = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    DurableWriteQueue(PreferenceFile file) {
+        this.mFile = file;
+    }
+
+    /**
+     * Enqueues <code>write</code>. The emitter is completed once the write is on disk,
+     * or gets an {@link IOException} if the commit fails.
+     * @param write to commit
+     * @param emitter to notify
+     */
+    void enqueue(PreferenceWrite<?> write, CompletableEmitter emitter) {
+        synchronized (this) {
+            mPending.add(new PendingWrite(write, emitter));
+            if (mFlushScheduled) {
+                return;
+            }
+            mFlushScheduled = true;
+        }
+        Schedulers.io().scheduleDirect(mFlushTask);
+    }
+
+    private void flush() {
+        for (;;) {
+            final List<PendingWrite> batch;
+            synchronized (this) {
+                if (mPending.isEmpty()) {
+                    mFlushScheduled = false;
+                    return;
+                }
+                batch = mPending;
+                mPending = new ArrayList<>();
+            }
+
+            Throwable error = null;
+            final boolean traced = PreferenceTrace.beginSection("RxPreference.commit");
+            try {
+                // Writes held for coalescing go first, so that the durable writes win.
+                // They are applied to memory under the buffer lock, so readers never miss them while the commit syncs,
+                // and the commit below syncs them to disk along with the durable writes
+                final PreferenceWriteBuffer buffer = mFile.getWriteBuffer();
+                if (buffer != null) {
+                    buffer.flush();
+                }
+                final SharedPreferences.Editor editor = mFile.getPreferences().edit();
+                // The writes are applied in the order they were enqueued, so the last write of a key wins
+                for (PendingWrite pending : batch) {
+                    pending.write.writeTo(editor);
+                }
+                if (!editor.commit()) {
+                    error = new IOException("Failed to commit preferences to disk");
+                }
+            } catch (Throwable e) {
+                Exceptions.throwIfFatal(e);
+                error = e;
+            } finally {
+                PreferenceTrace.endSection(traced);
+            }
+
+            for (PendingWrite pending : batch) {
+                if (error == null) {
+                    pending.emitter.onComplete();
+                } else {
+                    pending.emitter.tryOnError(error);
+                }
+            }
+        }
+    }
+}
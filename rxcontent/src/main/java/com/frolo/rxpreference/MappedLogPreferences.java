@@ -0,0 +1,769 @@
+package com.frolo.rxpreference;
+
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.zip.CRC32;
+
+import io.reactivex.schedulers.Schedulers;
+
+
+/**
+ * {@link SharedPreferences} backed by an append-only log in a memory-mapped file.
+ *
+ * {@link RxPreference} works with any implementation of {@link SharedPreferences}, so this is a drop-in storage backend:
+ * <pre>
+ *     SharedPreferences prefs = MappedLogPreferences.open(new File(context.getFilesDir(), "player.log"));
+ *     RxPreference&lt;Long&gt; position = RxPreference.ofLong(prefs, "position");
+ * </pre>
+ *
+ * Unlike the platform implementation, that rewrites the whole XML file on each apply,
+ * a write appends one record per changed key to the mapped file, that is a memory copy of O(record size).
+ * The kernel writes the mapped pages to disk on its own, so applied writes survive a crash of the process.
+ * {@link Editor#commit()} additionally forces the pages to disk.
+ *
+ * When the log does not fit the mapped region, the region is doubled, which does not write to disk,
+ * and the log is compacted on {@link Schedulers#io()}: the live values are written to a temporary file,
+ * which is forced to disk and then atomically renamed over the log. Meanwhile, the writes are appended to the log as usual
+ * and copied to the compacted one before the rename, and the reads are served from memory.
+ * If a write fails, e.g. the disk is full, the values stay in memory and are written with the next successful compaction.
+ *
+ * Each record is prefixed with its length and CRC32. On open, records are replayed until the first incomplete or corrupted one,
+ * which is the tail torn by a crash, and the rest of the file is zeroed.
+ *
+ * Instances are cached per file, like the platform caches its preferences, so that there is only one writer of a file in the process.
+ * The file must not be used by several processes.
+ */
+public final class MappedLogPreferences implements SharedPreferences {
+
+    private static final String LOG_TAG = "RxPreference";
+
+    private static final int MAGIC = 0x52504c47;
+    private static final int VERSION = 1;
+    private static final int FILE_HEADER_SIZE = 8;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final int MIN_CAPACITY = 16 * 1024;
+
+    private static final byte OP_CLEAR = 0;
+    private static final byte OP_REMOVE = 1;
+    private static final byte OP_BOOLEAN = 2;
+    private static final byte OP_INT = 3;
+    private static final byte OP_LONG = 4;
+    private static final byte OP_FLOAT = 5;
+    private static final byte OP_STRING = 6;
+    private static final byte OP_STRING_SET = 7;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Instances by the absolute paths of their files.
+     */
+    private static final Map<String, MappedLogPreferences> sInstances = new HashMap<>();
+
+    /**
+     * Opens the preferences stored in <code>file</code>, creating the file if it does not exist.
+     * The file is read and recovered synchronously, so call this on a background thread.
+     * @param file of the log
+     * @return preferences of the file
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    public static MappedLogPreferences open(File file) throws IOException {
+        final String path = file.getAbsolutePath();
+        synchronized (sInstances) {
+            MappedLogPreferences preferences = sInstances.get(path);
+            if (preferences == null) {
+                preferences = new MappedLogPreferences(new File(path));
+                sInstances.put(path, preferences);
+            }
+            return preferences;
+        }
+    }
+
+    private final File mFile;
+    private final File mTempFile;
+
+    private final Object mLock = new Object();
+
+    /**
+     * Guarded by mLock.
+     */
+    private final Map<String, Object> mValues = new HashMap<>();
+    private RandomAccessFile mRandomAccessFile;
+    private MappedByteBuffer mBuffer;
+    private int mPosition;
+
+    /**
+     * Whether the log is being compacted. Guarded by mLock.
+     */
+    private boolean mCompacting;
+    /**
+     * Whether the log has to be compacted, as it has outgrown its region or lacks the values of failed writes. Guarded by mLock.
+     */
+    private boolean mCompactionNeeded;
+    /**
+     * Records of the writes made after the compaction has taken the values, to be copied to the compacted log. Guarded by mLock.
+     */
+    private final List<byte[]> mCompactionBacklog = new ArrayList<>();
+    /**
+     * Whether any of the backlog records is committed, so the compacted log is forced to disk before the rename. Guarded by mLock.
+     */
+    private boolean mCompactionBacklogCommitted;
+
+    private final Runnable mCompaction = new Runnable() {
+        @Override
+        public void run() {
+            compact();
+        }
+    };
+
+    /**
+     * Listeners are held weakly, as the platform does. Guarded by mLock.
+     */
+    private final WeakHashMap<OnSharedPreferenceChangeListener, Object> mListeners = new WeakHashMap<>();
+
+    private MappedLogPreferences(File file) throws IOException {
+        this.mFile = file;
+        this.mTempFile = new File(file.getPath() + ".tmp");
+        synchronized (mLock) {
+            load();
+        }
+    }
+
+    //region Log
+    private void load() throws IOException {
+        // A leftover of an interrupted compaction, the log itself is intact
+        if (mTempFile.exists()) {
+            mTempFile.delete();
+        }
+
+        final boolean exists = mFile.exists() && mFile.length() >= FILE_HEADER_SIZE;
+        map(mFile, exists ? (int) mFile.length() : MIN_CAPACITY);
+
+        if (!exists || mBuffer.getInt(0) != MAGIC || mBuffer.getInt(4) != VERSION) {
+            mBuffer.putInt(0, MAGIC);
+            mBuffer.putInt(4, VERSION);
+            mPosition = FILE_HEADER_SIZE;
+            zeroTail();
+            return;
+        }
+
+        mPosition = FILE_HEADER_SIZE;
+        final CRC32 crc = new CRC32();
+        while (mPosition + RECORD_HEADER_SIZE <= mBuffer.capacity()) {
+            final int length = mBuffer.getInt(mPosition);
+            if (length == 0) {
+                // The clean end of the log
+                return;
+            }
+            if (length < 0 || mPosition + RECORD_HEADER_SIZE + length > mBuffer.capacity()) {
+                break;
+            }
+
+            final byte[] payload = new byte[length];
+            mBuffer.position(mPosition + RECORD_HEADER_SIZE);
+            mBuffer.get(payload);
+            crc.reset();
+            crc.update(payload, 0, length);
+            if ((int) crc.getValue() != mBuffer.getInt(mPosition + 4) || !replay(payload)) {
+                break;
+            }
+            mPosition += RECORD_HEADER_SIZE + length;
+        }
+
+        // The tail is torn or corrupted: zero it, so that records appended later are not followed by garbage
+        zeroTail();
+        mBuffer.force();
+    }
+
+    private void map(File file, int capacity) throws IOException {
+        final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        final MappedByteBuffer buffer;
+        try {
+            buffer = map(randomAccessFile, capacity);
+        } catch (IOException e) {
+            randomAccessFile.close();
+            throw e;
+        }
+
+        if (mRandomAccessFile != null) {
+            mRandomAccessFile.close();
+        }
+        mRandomAccessFile = randomAccessFile;
+        mBuffer = buffer;
+    }
+
+    /**
+     * Maps the first <code>capacity</code> bytes of the file, extending it if needed. The extension is not written to disk.
+     */
+    private static MappedByteBuffer map(RandomAccessFile randomAccessFile, int capacity) throws IOException {
+        if (randomAccessFile.length() < capacity) {
+            randomAccessFile.setLength(capacity);
+        }
+        return randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    }
+
+    /**
+     * Returns <code>capacity</code> doubled until it is at least <code>size</code>.
+     */
+    private static int grow(int capacity, int size) {
+        while (capacity < size) {
+            capacity *= 2;
+        }
+        return capacity;
+    }
+
+    private static void closeQuietly(RandomAccessFile randomAccessFile) {
+        if (randomAccessFile != null) {
+            try {
+                randomAccessFile.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private void zeroTail() {
+        for (int i = mPosition; i < mBuffer.capacity(); i++) {
+            mBuffer.put(i, (byte) 0);
+        }
+    }
+
+    /**
+     * Applies the record to the values.
+     * @param payload of the record
+     * @return true if the record is valid, false - otherwise
+     */
+    private boolean replay(byte[] payload) {
+        final ByteBuffer in = ByteBuffer.wrap(payload);
+        try {
+            final byte op = in.get();
+            if (op == OP_CLEAR) {
+                mValues.clear();
+                return true;
+            }
+
+            final String key = readString(in);
+            switch (op) {
+                case OP_REMOVE:     mValues.remove(key); break;
+                case OP_BOOLEAN:    mValues.put(key, in.get() != 0); break;
+                case OP_INT:        mValues.put(key, in.getInt()); break;
+                case OP_LONG:       mValues.put(key, in.getLong()); break;
+                case OP_FLOAT:      mValues.put(key, in.getFloat()); break;
+                case OP_STRING:     mValues.put(key, readString(in)); break;
+                case OP_STRING_SET: {
+                    final int size = in.getInt();
+                    final Set<String> set = new HashSet<>(size);
+                    for (int i = 0; i < size; i++) {
+                        set.add(readString(in));
+                    }
+                    mValues.put(key, Collections.unmodifiableSet(set));
+                    break;
+                }
+                default: return false;
+            }
+            return true;
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static String readString(ByteBuffer in) {
+        final int length = in.getInt();
+        if (length < 0 || length > in.remaining()) {
+            throw new IllegalArgumentException("Invalid string length: " + length);
+        }
+        final byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        final byte[] bytes = value.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Encodes the payload of a record.
+     * @param key of the record, ignored for {@link MappedLogPreferences#OP_CLEAR}
+     * @param value of the record, null for removal or clearing
+     * @param clear whether this is {@link MappedLogPreferences#OP_CLEAR}
+     */
+    private static byte[] encode(String key, Object value, boolean clear) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            if (clear) {
+                out.writeByte(OP_CLEAR);
+            } else if (value == null) {
+                out.writeByte(OP_REMOVE);
+                writeString(out, key);
+            } else if (value instanceof Boolean) {
+                out.writeByte(OP_BOOLEAN);
+                writeString(out, key);
+                out.writeByte((Boolean) value ? 1 : 0);
+            } else if (value instanceof Integer) {
+                out.writeByte(OP_INT);
+                writeString(out, key);
+                out.writeInt((Integer) value);
+            } else if (value instanceof Long) {
+                out.writeByte(OP_LONG);
+                writeString(out, key);
+                out.writeLong((Long) value);
+            } else if (value instanceof Float) {
+                out.writeByte(OP_FLOAT);
+                writeString(out, key);
+                out.writeFloat((Float) value);
+            } else if (value instanceof String) {
+                out.writeByte(OP_STRING);
+                writeString(out, key);
+                writeString(out, (String) value);
+            } else if (value instanceof Set) {
+                out.writeByte(OP_STRING_SET);
+                writeString(out, key);
+                final Set<?> set = (Set<?>) value;
+                out.writeInt(set.size());
+                for (Object element : set) {
+                    writeString(out, (String) element);
+                }
+            } else {
+                throw new IllegalArgumentException("Cannot handle value: " + value);
+            }
+        } catch (IOException e) {
+            // Never thrown by ByteArrayOutputStream
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static int sizeOf(byte[] payload) {
+        return RECORD_HEADER_SIZE + payload.length;
+    }
+
+    private static void putRecord(ByteBuffer buffer, int position, byte[] payload) {
+        final CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        // The payload goes first, so that a record never has a valid length without its payload
+        buffer.position(position + RECORD_HEADER_SIZE);
+        buffer.put(payload);
+        buffer.putInt(position + 4, (int) crc.getValue());
+        buffer.putInt(position, payload.length);
+    }
+
+    private static int sizeOf(List<byte[]> payloads) {
+        int size = 0;
+        for (byte[] payload : payloads) {
+            size += sizeOf(payload);
+        }
+        return size;
+    }
+
+    /**
+     * Appends the records to the log, doubling its region if they do not fit.
+     * Called under mLock after the records are applied to the values.
+     */
+    private void append(List<byte[]> payloads) throws IOException {
+        if (mCompacting) {
+            // Even if the append fails, the compacted log must have the values of the records
+            mCompactionBacklog.addAll(payloads);
+        }
+
+        // The trailing record header stays zero, it marks the end of the log
+        final int size = mPosition + sizeOf(payloads) + RECORD_HEADER_SIZE;
+        if (size > mBuffer.capacity()) {
+            map(mFile, grow(mBuffer.capacity(), size));
+            mCompactionNeeded = true;
+        }
+
+        for (byte[] payload : payloads) {
+            putRecord(mBuffer, mPosition, payload);
+            mPosition += sizeOf(payload);
+        }
+    }
+
+    /**
+     * Schedules the compaction, if the log needs it and it is not being compacted already. Called under mLock.
+     */
+    private void scheduleCompaction() {
+        if (mCompactionNeeded && !mCompacting) {
+            mCompacting = true;
+            Schedulers.io().scheduleDirect(mCompaction);
+        }
+    }
+
+    /**
+     * Rewrites the log with the current values only. Called on a background thread.
+     * The lock is held only to take the values and to copy the backlog, so the writes and reads are not blocked on the disk.
+     */
+    private void compact() {
+        final List<byte[]> payloads;
+        synchronized (mLock) {
+            payloads = new ArrayList<>(mValues.size());
+            for (Map.Entry<String, Object> entry : mValues.entrySet()) {
+                payloads.add(encode(entry.getKey(), entry.getValue(), false));
+            }
+            mCompactionNeeded = false;
+            mCompactionBacklog.clear();
+            mCompactionBacklogCommitted = false;
+        }
+
+        RandomAccessFile randomAccessFile = null;
+        boolean replaced = false;
+        try {
+            randomAccessFile = new RandomAccessFile(mTempFile, "rw");
+            int capacity = grow(MIN_CAPACITY, 2 * (FILE_HEADER_SIZE + sizeOf(payloads) + RECORD_HEADER_SIZE));
+            randomAccessFile.setLength(capacity);
+            MappedByteBuffer buffer = map(randomAccessFile, capacity);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            int position = FILE_HEADER_SIZE;
+            for (byte[] payload : payloads) {
+                putRecord(buffer, position, payload);
+                position += sizeOf(payload);
+            }
+            buffer.force();
+
+            while (true) {
+                synchronized (mLock) {
+                    final int size = position + sizeOf(mCompactionBacklog) + RECORD_HEADER_SIZE;
+                    if (size > capacity) {
+                        capacity = grow(capacity, size);
+                        buffer = map(randomAccessFile, capacity);
+                    }
+                    for (byte[] payload : mCompactionBacklog) {
+                        putRecord(buffer, position, payload);
+                        position += sizeOf(payload);
+                    }
+                    mCompactionBacklog.clear();
+
+                    if (!mCompactionBacklogCommitted) {
+                        // The rename is atomic: after a crash, the log is either the old one or the compacted one
+                        if (!mTempFile.renameTo(mFile)) {
+                            throw new IOException("Failed to rename " + mTempFile + " to " + mFile);
+                        }
+                        closeQuietly(mRandomAccessFile);
+                        mRandomAccessFile = randomAccessFile;
+                        mBuffer = buffer;
+                        mPosition = position;
+                        // The writes that have grown the old log are in the compacted one
+                        mCompactionNeeded = false;
+                        replaced = true;
+                        return;
+                    }
+                    mCompactionBacklogCommitted = false;
+                }
+
+                // The committed records must be on disk before the compacted log replaces the one that has them forced
+                buffer.force();
+            }
+        } catch (IOException e) {
+            // The old log has all the records appended meanwhile, only the values of failed writes wait for the next compaction
+            synchronized (mLock) {
+                mCompactionNeeded = true;
+            }
+            Log.e(LOG_TAG, "Failed to compact " + mFile, e);
+        } finally {
+            if (!replaced) {
+                closeQuietly(randomAccessFile);
+                mTempFile.delete();
+            }
+            synchronized (mLock) {
+                mCompacting = false;
+                mCompactionBacklog.clear();
+                mLock.notifyAll();
+            }
+        }
+    }
+    //endregion
+
+    //region SharedPreferences
+    @Override
+    public Map<String, ?> getAll() {
+        synchronized (mLock) {
+            return new HashMap<>(mValues);
+        }
+    }
+
+    private Object getValue(String key) {
+        synchronized (mLock) {
+            return mValues.get(key);
+        }
+    }
+
+    @Override
+    public String getString(String key, String defValue) {
+        final String value = (String) getValue(key);
+        return value != null ? value : defValue;
+    }
+
+    @Override
+    public Set<String> getStringSet(String key, Set<String> defValues) {
+        final Set<String> value = (Set<String>) getValue(key);
+        return value != null ? value : defValues;
+    }
+
+    @Override
+    public int getInt(String key, int defValue) {
+        final Integer value = (Integer) getValue(key);
+        return value != null ? value : defValue;
+    }
+
+    @Override
+    public long getLong(String key, long defValue) {
+        final Long value = (Long) getValue(key);
+        return value != null ? value : defValue;
+    }
+
+    @Override
+    public float getFloat(String key, float defValue) {
+        final Float value = (Float) getValue(key);
+        return value != null ? value : defValue;
+    }
+
+    @Override
+    public boolean getBoolean(String key, boolean defValue) {
+        final Boolean value = (Boolean) getValue(key);
+        return value != null ? value : defValue;
+    }
+
+    @Override
+    public boolean contains(String key) {
+        synchronized (mLock) {
+            return mValues.containsKey(key);
+        }
+    }
+
+    @Override
+    public Editor edit() {
+        return new LogEditor();
+    }
+
+    @Override
+    public void registerOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+        synchronized (mLock) {
+            mListeners.put(listener, this);
+        }
+    }
+
+    @Override
+    public void unregisterOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+        synchronized (mLock) {
+            mListeners.remove(listener);
+        }
+    }
+    //endregion
+
+    /**
+     * Applies the modifications of an editor to the values and appends them to the log.
+     * @return true if the modifications are written to the log, false - otherwise
+     */
+    private boolean write(Map<String, Object> modifications, boolean clear, boolean force) {
+        final List<String> changedKeys = new ArrayList<>();
+        final List<OnSharedPreferenceChangeListener> listeners;
+        boolean written = true;
+
+        synchronized (mLock) {
+            final List<byte[]> payloads = new ArrayList<>(modifications.size() + 1);
+            boolean cleared = false;
+            if (clear && !mValues.isEmpty()) {
+                mValues.clear();
+                payloads.add(encode(null, null, true));
+                cleared = true;
+            }
+
+            for (Map.Entry<String, Object> entry : modifications.entrySet()) {
+                final String key = entry.getKey();
+                final Object value = entry.getValue();
+                if (value == null) {
+                    if (!mValues.containsKey(key)) {
+                        continue;
+                    }
+                    mValues.remove(key);
+                } else {
+                    if (value.equals(mValues.get(key))) {
+                        continue;
+                    }
+                    mValues.put(key, value);
+                }
+                payloads.add(encode(key, value, false));
+                changedKeys.add(key);
+            }
+
+            if (!payloads.isEmpty()) {
+                try {
+                    append(payloads);
+                    if (force) {
+                        mBuffer.force();
+                        if (mCompacting) {
+                            mCompactionBacklogCommitted = true;
+                        }
+                    }
+                } catch (IOException e) {
+                    // The values stay in memory, they will be written with the next successful compaction
+                    written = false;
+                    mCompactionNeeded = true;
+                    Log.e(LOG_TAG, "Failed to write to " + mFile, e);
+                }
+                scheduleCompaction();
+            }
+
+            if (cleared) {
+                // Since Android R, the platform dispatches the null key when the preferences are cleared
+                changedKeys.add(0, null);
+            }
+            listeners = mListeners.isEmpty() || changedKeys.isEmpty()
+                    ? Collections.<OnSharedPreferenceChangeListener>emptyList()
+                    : new ArrayList<>(mListeners.keySet());
+        }
+
+        if (!listeners.isEmpty()) {
+            notifyListeners(listeners, changedKeys);
+        }
+        return written;
+    }
+
+    private void notifyListeners(final List<OnSharedPreferenceChangeListener> listeners, final List<String> keys) {
+        final Runnable notification = new Runnable() {
+            @Override
+            public void run() {
+                for (String key : keys) {
+                    for (OnSharedPreferenceChangeListener listener : listeners) {
+                        listener.onSharedPreferenceChanged(MappedLogPreferences.this, key);
+                    }
+                }
+            }
+        };
+
+        // Listeners are notified on the main thread, as the platform does
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            notification.run();
+        } else {
+            sMainHandler.post(notification);
+        }
+    }
+
+    /**
+     * Waits for the compaction in progress, if any. For tests only.
+     */
+    /*package*/ void awaitCompaction() throws InterruptedException {
+        synchronized (mLock) {
+            while (mCompacting) {
+                mLock.wait();
+            }
+        }
+    }
+
+    /**
+     * Closes the file and removes this instance from the cache. For tests only.
+     */
+    /*package*/ void close() throws IOException, InterruptedException {
+        synchronized (sInstances) {
+            sInstances.remove(mFile.getAbsolutePath());
+        }
+        synchronized (mLock) {
+            while (mCompacting) {
+                mLock.wait();
+            }
+            mBuffer.force();
+            mRandomAccessFile.close();
+        }
+    }
+
+    private final class LogEditor implements Editor {
+
+        /**
+         * Modified values by their keys, null values stand for removal. Guarded by this.
+         */
+        private final Map<String, Object> mModifications = new HashMap<>();
+        private boolean mClear;
+
+        private synchronized Editor put(String key, Object value) {
+            mModifications.put(key, value);
+            return this;
+        }
+
+        @Override
+        public Editor putString(String key, String value) {
+            return put(key, value);
+        }
+
+        @Override
+        public Editor putStringSet(String key, Set<String> values) {
+            return put(key, values != null ? Collections.unmodifiableSet(new HashSet<>(values)) : null);
+        }
+
+        @Override
+        public Editor putInt(String key, int value) {
+            return put(key, value);
+        }
+
+        @Override
+        public Editor putLong(String key, long value) {
+            return put(key, value);
+        }
+
+        @Override
+        public Editor putFloat(String key, float value) {
+            return put(key, value);
+        }
+
+        @Override
+        public Editor putBoolean(String key, boolean value) {
+            return put(key, value);
+        }
+
+        @Override
+        public Editor remove(String key) {
+            return put(key, null);
+        }
+
+        @Override
+        public synchronized Editor clear() {
+            mClear = true;
+            return this;
+        }
+
+        @Override
+        public boolean commit() {
+            return commit(true);
+        }
+
+        @Override
+        public void apply() {
+            commit(false);
+        }
+
+        private boolean commit(boolean force) {
+            final Map<String, Object> modifications;
+            final boolean clear;
+            synchronized (this) {
+                modifications = new HashMap<>(mModifications);
+                clear = mClear;
+                mModifications.clear();
+                mClear = false;
+            }
+            return write(modifications, clear, force);
+        }
+    }
+}
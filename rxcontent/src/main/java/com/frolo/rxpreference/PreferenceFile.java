@@ -0,0 +1,287 @@
+package com.frolo.rxpreference;
+
+import android.content.SharedPreferences;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import io.reactivex.disposables.Disposable;
+import io.reactivex.disposables.Disposables;
+import io.reactivex.functions.Action;
+
+
+/**
+ * State shared by all {@link RxPreference} instances of the same {@link SharedPreferences}.
+ *
+ * A single {@link SharedPreferences.OnSharedPreferenceChangeListener} is registered per file.
+ * It dispatches each change to the listeners of the changed key only, so a write costs O(listeners of that key).
+ * The listener is registered in the preferences when the first key listener is added
+ * and unregistered when the last one is removed.
+ */
+final class PreferenceFile implements SharedPreferences.OnSharedPreferenceChangeListener {
+
+    /**
+     * Listener of changes of a particular key.
+     */
+    interface KeyListener {
+        /**
+         * Called on the main thread when the value of <code>key</code> is changed.
+         * For writes held in {@link PreferenceWriteBuffer}, this is called on the writing thread.
+         * @param key the value of which is changed
+         */
+        void onKeyChanged(String key);
+    }
+
+    private static final KeyListener[] NO_LISTENERS = new KeyListener[0];
+
+    /**
+     * Files by their preferences, both held weakly. Guarded by itself.
+     * A file is held strongly by the {@link RxPreference}s of it and by its pending writes, while it has key listeners,
+     * the registered change listener is reachable from their subscriptions,
+     * so it is not collected while {@link SharedPreferences}, that holds its listeners weakly, may call it.
+     * Once nothing uses the file, it is collected together with the preferences, if they are not cached elsewhere,
+     * e.g. by the platform for {@link android.content.Context#getSharedPreferences(String, int)}.
+     */
+    private static final Map<SharedPreferences, WeakReference<PreferenceFile>> sFiles = new WeakHashMap<>();
+
+    /**
+     * Files with coalescing of writes enabled, held strongly to keep the setting until it is disabled. Guarded by {@link PreferenceFile#sFiles}.
+     */
+    private static final Set<PreferenceFile> sCoalescingFiles = new HashSet<>();
+
+    /**
+     * Preferences that have been loaded, held weakly. Guarded by {@link PreferenceFile#sFiles}.
+     * Kept apart from the files, so a file created after the previous one is collected is still known to be loaded.
+     */
+    private static final Map<SharedPreferences, Boolean> sLoadedPreferences = new WeakHashMap<>();
+
+    /**
+     * Returns the file of <code>preferences</code>, creating it if needed.
+     * @param preferences for which to get the file
+     * @return the file of the preferences
+     */
+    static PreferenceFile of(SharedPreferences preferences) {
+        synchronized (sFiles) {
+            final WeakReference<PreferenceFile> ref = sFiles.get(preferences);
+            PreferenceFile file = ref != null ? ref.get() : null;
+            if (file == null) {
+                file = new PreferenceFile(preferences, sLoadedPreferences.containsKey(preferences));
+                sFiles.put(preferences, new WeakReference<>(file));
+            }
+            return file;
+        }
+    }
+
+    /**
+     * Returns all the files that are still in use.
+     * @return list of the files
+     */
+    static List<PreferenceFile> all() {
+        final List<PreferenceFile> files = new ArrayList<>();
+        synchronized (sFiles) {
+            for (WeakReference<PreferenceFile> ref : sFiles.values()) {
+                final PreferenceFile file = ref.get();
+                if (file != null) {
+                    files.add(file);
+                }
+            }
+        }
+        return files;
+    }
+
+    private final SharedPreferences mPreferences;
+
+    /**
+     * Whether the preferences have been read at least once, so the file has been loaded in memory.
+     */
+    private volatile boolean mLoaded;
+
+    /**
+     * Buffer for coalescing writes, or null if writes are applied right away.
+     */
+    private volatile PreferenceWriteBuffer mWriteBuffer;
+
+    private final DurableWriteQueue mDurableWrites = new DurableWriteQueue(this);
+
+    private final Object mLock = new Object();
+
+    /**
+     * Key listeners by their keys. The arrays are copied on write, so they are safe to iterate without the lock.
+     */
+    private final Map<String, KeyListener[]> mListeners = new HashMap<>();
+    private int mListenerCount;
+
+    private PreferenceFile(SharedPreferences preferences, boolean loaded) {
+        this.mPreferences = preferences;
+        this.mLoaded = loaded;
+    }
+
+    SharedPreferences getPreferences() {
+        return mPreferences;
+    }
+
+    boolean isLoaded() {
+        return mLoaded;
+    }
+
+    /**
+     * Marks the file as loaded. Called after a read from the preferences, as reads block until the file is loaded.
+     */
+    void markLoaded() {
+        if (!mLoaded) {
+            synchronized (sFiles) {
+                sLoadedPreferences.put(mPreferences, Boolean.TRUE);
+            }
+            mLoaded = true;
+        }
+    }
+
+    PreferenceWriteBuffer getWriteBuffer() {
+        return mWriteBuffer;
+    }
+
+    DurableWriteQueue getDurableWrites() {
+        return mDurableWrites;
+    }
+
+    /**
+     * Enables coalescing of writes with the given flush interval.
+     * If <code>flushIntervalMillis</code> is not positive, then coalescing is disabled.
+     * Writes pending in the current buffer, if any, are flushed.
+     * @param flushIntervalMillis interval between the first pending write and the flush
+     */
+    synchronized void setWriteCoalescing(long flushIntervalMillis) {
+        final PreferenceWriteBuffer current = mWriteBuffer;
+        mWriteBuffer = flushIntervalMillis > 0
+                ? new PreferenceWriteBuffer(this, flushIntervalMillis) : null;
+        synchronized (sFiles) {
+            if (flushIntervalMillis > 0) {
+                sCoalescingFiles.add(this);
+            } else {
+                sCoalescingFiles.remove(this);
+            }
+        }
+        if (current != null) {
+            current.flush();
+        }
+    }
+
+    /**
+     * Flushes the pending writes, if coalescing of writes is enabled.
+     */
+    void flush() {
+        final PreferenceWriteBuffer buffer = mWriteBuffer;
+        if (buffer != null) {
+            buffer.flush();
+        }
+    }
+
+    /**
+     * Adds <code>listener</code> of changes of <code>key</code>.
+     * @param key to listen to
+     * @param listener to add
+     * @return disposable that removes the listener
+     */
+    Disposable addListener(final String key, final KeyListener listener) {
+        synchronized (mLock) {
+            final KeyListener[] current = mListeners.get(key);
+            final int length = current != null ? current.length : 0;
+            final KeyListener[] updated = new KeyListener[length + 1];
+            if (current != null) {
+                System.arraycopy(current, 0, updated, 0, length);
+            }
+            updated[length] = listener;
+            mListeners.put(key, updated);
+
+            if (mListenerCount++ == 0) {
+                mPreferences.registerOnSharedPreferenceChangeListener(this);
+            }
+        }
+
+        return Disposables.fromAction(new Action() {
+            @Override
+            public void run() {
+                removeListener(key, listener);
+            }
+        });
+    }
+
+    private void removeListener(String key, KeyListener listener) {
+        synchronized (mLock) {
+            final KeyListener[] current = mListeners.get(key);
+            if (current == null) {
+                return;
+            }
+
+            int index = -1;
+            for (int i = 0; i < current.length; i++) {
+                if (current[i] == listener) {
+                    index = i;
+                    break;
+                }
+            }
+            if (index < 0) {
+                return;
+            }
+
+            if (current.length == 1) {
+                mListeners.remove(key);
+            } else {
+                final KeyListener[] updated = new KeyListener[current.length - 1];
+                System.arraycopy(current, 0, updated, 0, index);
+                System.arraycopy(current, index + 1, updated, index, current.length - index - 1);
+                mListeners.put(key, updated);
+            }
+
+            if (--mListenerCount == 0) {
+                mPreferences.unregisterOnSharedPreferenceChangeListener(this);
+            }
+        }
+    }
+
+    /**
+     * Dispatches the change of <code>key</code> to its listeners.
+     * @param key the value of which is changed
+     */
+    void dispatchChange(String key) {
+        final KeyListener[] listeners;
+        synchronized (mLock) {
+            final KeyListener[] current = mListeners.get(key);
+            listeners = current != null ? current : NO_LISTENERS;
+        }
+
+        for (KeyListener listener : listeners) {
+            listener.onKeyChanged(key);
+        }
+    }
+
+    /**
+     * Dispatches the change to the listeners of all keys.
+     */
+    private void dispatchChangeOfAll() {
+        final List<String> keys;
+        synchronized (mLock) {
+            keys = new ArrayList<>(mListeners.keySet());
+        }
+
+        for (String key : keys) {
+            dispatchChange(key);
+        }
+    }
+
+    @Override
+    public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+        if (key == null) {
+            // Since Android R, the null key is dispatched when the preferences are cleared
+            dispatchChangeOfAll();
+        } else {
+            dispatchChange(key);
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package com.frolo.rxpreference;
+
+import android.content.ContentProvider;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.pm.ProviderInfo;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Bundle;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * Content provider that serves {@link SharedPreferences} of its process to other processes of the app.
+ * Use it with {@link RxPreferences#multiProcess(Context, String, String)}.
+ *
+ * The provider is not declared by the library, declare it in the manifest of the app with an authority of your choice:
+ * <pre>
+ *     &lt;provider
+ *         android:name="com.frolo.rxpreference.PreferenceProvider"
+ *         android:authorities="${applicationId}.preferences"
+ *         android:exported="false" /&gt;
+ * </pre>
+ *
+ * Values are read and written with {@link android.content.ContentResolver#call(Uri, String, String, Bundle)}.
+ * Each change of a key is notified on <code>content://authority/name/key</code>,
+ * and clearing of a file is notified on <code>content://authority/name</code>.
+ */
+public class PreferenceProvider extends ContentProvider {
+
+    static final String METHOD_GET = "get";
+    static final String METHOD_GET_ALL = "getAll";
+    static final String METHOD_EDIT = "edit";
+
+    static final String EXTRA_KEY = "com.frolo.rxpreference.KEY";
+    static final String EXTRA_VALUES = "com.frolo.rxpreference.VALUES";
+    static final String EXTRA_REMOVED_KEYS = "com.frolo.rxpreference.REMOVED_KEYS";
+    static final String EXTRA_CLEAR = "com.frolo.rxpreference.CLEAR";
+    static final String EXTRA_COMMIT = "com.frolo.rxpreference.COMMIT";
+    static final String EXTRA_RESULT = "com.frolo.rxpreference.RESULT";
+
+    /**
+     * Returns the Uri of the preferences file <code>name</code>.
+     */
+    static Uri fileUri(String authority, String name) {
+        return new Uri.Builder()
+                .scheme("content")
+                .authority(authority)
+                .appendPath(name)
+                .build();
+    }
+
+    static void putValue(Bundle bundle, String key, Object value) {
+        if (value instanceof Boolean) {
+            bundle.putBoolean(key, (Boolean) value);
+        } else if (value instanceof Integer) {
+            bundle.putInt(key, (Integer) value);
+        } else if (value instanceof Long) {
+            bundle.putLong(key, (Long) value);
+        } else if (value instanceof Float) {
+            bundle.putFloat(key, (Float) value);
+        } else if (value instanceof String) {
+            bundle.putString(key, (String) value);
+        } else if (value instanceof Set) {
+            bundle.putStringArrayList(key, new ArrayList<>((Set<String>) value));
+        } else {
+            throw new IllegalArgumentException("Cannot handle value: " + value);
+        }
+    }
+
+    static Object getValue(Bundle bundle, String key) {
+        final Object value = bundle.get(key);
+        if (value instanceof List) {
+            return Collections.unmodifiableSet(new HashSet<>((List<String>) value));
+        }
+        return value;
+    }
+
+    /**
+     * Reads the value of <code>key</code> without copying all the values with {@link SharedPreferences#getAll()}.
+     * The type of the value is not known, so the typed getters are tried in turn, each of them throws on a type mismatch.
+     */
+    private static Object readValue(SharedPreferences preferences, String key) {
+        if (!preferences.contains(key)) {
+            return null;
+        }
+        try {
+            return preferences.getString(key, null);
+        } catch (ClassCastException ignored) {
+        }
+        try {
+            return preferences.getInt(key, 0);
+        } catch (ClassCastException ignored) {
+        }
+        try {
+            return preferences.getLong(key, 0L);
+        } catch (ClassCastException ignored) {
+        }
+        try {
+            return preferences.getBoolean(key, false);
+        } catch (ClassCastException ignored) {
+        }
+        try {
+            return preferences.getFloat(key, 0f);
+        } catch (ClassCastException ignored) {
+        }
+        return preferences.getStringSet(key, null);
+    }
+
+    /**
+     * Listeners that notify the changes of the preferences files, by their names.
+     * Held strongly, since {@link SharedPreferences} holds its listeners weakly. Guarded by itself.
+     */
+    private final Map<String, SharedPreferences.OnSharedPreferenceChangeListener> mNotifiers = new HashMap<>();
+
+    /**
+     * The authority changes are notified with, taken from the provider info.
+     */
+    private String mAuthority;
+
+    @Override
+    public boolean onCreate() {
+        return true;
+    }
+
+    /**
+     * Returns the preferences file <code>name</code>, starting to notify its changes if not yet.
+     */
+    private SharedPreferences getPreferences(final String name) {
+        final Context context = getContext();
+        final SharedPreferences preferences = context.getSharedPreferences(name, Context.MODE_PRIVATE);
+        synchronized (mNotifiers) {
+            if (!mNotifiers.containsKey(name)) {
+                final String authority = mAuthority;
+                final SharedPreferences.OnSharedPreferenceChangeListener notifier =
+                        new SharedPreferences.OnSharedPreferenceChangeListener() {
+                    @Override
+                    public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+                        final Uri fileUri = fileUri(authority, name);
+                        final Uri uri = key != null ? fileUri.buildUpon().appendPath(key).build() : fileUri;
+                        context.getContentResolver().notifyChange(uri, null);
+                    }
+                };
+                preferences.registerOnSharedPreferenceChangeListener(notifier);
+                mNotifiers.put(name, notifier);
+            }
+        }
+        return preferences;
+    }
+
+    @Override
+    public void attachInfo(Context context, ProviderInfo info) {
+        super.attachInfo(context, info);
+        // The first authority, if several are declared
+        mAuthority = info.authority.split(";")[0];
+    }
+
+    @Override
+    public Bundle call(String method, String name, Bundle extras) {
+        if (name == null) {
+            throw new IllegalArgumentException("The name of the preferences is null");
+        }
+
+        final SharedPreferences preferences = getPreferences(name);
+        final Bundle result = new Bundle();
+        switch (method) {
+            case METHOD_GET: {
+                final String key = extras.getString(EXTRA_KEY);
+                final Object value = readValue(preferences, key);
+                if (value != null) {
+                    putValue(result, key, value);
+                }
+                return result;
+            }
+            case METHOD_GET_ALL: {
+                for (Map.Entry<String, ?> entry : preferences.getAll().entrySet()) {
+                    if (entry.getValue() != null) {
+                        putValue(result, entry.getKey(), entry.getValue());
+                    }
+                }
+                return result;
+            }
+            case METHOD_EDIT: {
+                final SharedPreferences.Editor editor = preferences.edit();
+                if (extras.getBoolean(EXTRA_CLEAR)) {
+                    editor.clear();
+                }
+                final ArrayList<String> removedKeys = extras.getStringArrayList(EXTRA_REMOVED_KEYS);
+                if (removedKeys != null) {
+                    for (String key : removedKeys) {
+                        editor.remove(key);
+                    }
+                }
+                final Bundle values = extras.getBundle(EXTRA_VALUES);
+                if (values != null) {
+                    for (String key : values.keySet()) {
+                        final Object value = getValue(values, key);
+                        if (value instanceof Boolean) {
+                            editor.putBoolean(key, (Boolean) value);
+                        } else if (value instanceof Integer) {
+                            editor.putInt(key, (Integer) value);
+                        } else if (value instanceof Long) {
+                            editor.putLong(key, (Long) value);
+                        } else if (value instanceof Float) {
+                            editor.putFloat(key, (Float) value);
+                        } else if (value instanceof String) {
+                            editor.putString(key, (String) value);
+                        } else if (value instanceof Set) {
+                            editor.putStringSet(key, (Set<String>) value);
+                        }
+                    }
+                }
+                if (extras.getBoolean(EXTRA_COMMIT)) {
+                    result.putBoolean(EXTRA_RESULT, editor.commit());
+                } else {
+                    editor.apply();
+                    result.putBoolean(EXTRA_RESULT, true);
+                }
+                return result;
+            }
+            default: {
+                throw new IllegalArgumentException("Unknown method: " + method);
+            }
+        }
+    }
+
+    //region Not supported
+    @Override
+    public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder) {
+        throw new UnsupportedOperationException("Use call() instead");
+    }
+
+    @Override
+    public String getType(Uri uri) {
+        return null;
+    }
+
+    @Override
+    public Uri insert(Uri uri, ContentValues values) {
+        throw new UnsupportedOperationException("Use call() instead");
+    }
+
+    @Override
+    public int delete(Uri uri, String selection, String[] selectionArgs) {
+        throw new UnsupportedOperationException("Use call() instead");
+    }
+
+    @Override
+    public int update(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
+        throw new UnsupportedOperationException("Use call() instead");
+    }
+    //endregion
+}
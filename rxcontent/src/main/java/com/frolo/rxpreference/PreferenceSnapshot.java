@@ -0,0 +1,79 @@
+package com.frolo.rxpreference;
+
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * Immutable snapshot of the values of a group of {@link RxPreference}s.
+ * Snapshots are emitted by {@link RxPreferences#observe(java.util.List)}, one per wave of writes.
+ */
+public final class PreferenceSnapshot {
+
+    private final Map<String, Object> mValues;
+    private final Set<String> mChangedKeys;
+
+    /**
+     * @param values of the preferences by their keys, null values stand for no value; not copied
+     * @param changedKeys keys which values differ from the previous snapshot; not copied
+     */
+    /*package*/ PreferenceSnapshot(Map<String, Object> values, Set<String> changedKeys) {
+        this.mValues = values;
+        this.mChangedKeys = changedKeys;
+    }
+
+    private void checkPreference(RxPreference<?> preference) {
+        if (!mValues.containsKey(preference.getKey())) {
+            throw new IllegalArgumentException("Preference " + preference.getKey()
+                    + " is not observed in the snapshot");
+        }
+    }
+
+    /**
+     * Returns the value of <code>preference</code> at the moment of the snapshot.
+     * @param preference one of the observed preferences
+     * @param <T> type of the preference
+     * @return value of the preference, or null if no value present
+     * @throws IllegalArgumentException if the preference is not observed
+     */
+    public <T> T get(RxPreference<T> preference) {
+        checkPreference(preference);
+        return (T) mValues.get(preference.getKey());
+    }
+
+    /**
+     * Returns the value of <code>preference</code> at the moment of the snapshot.
+     * @param preference one of the observed preferences
+     * @param defaultValue to be returned if no value present
+     * @param <T> type of the preference
+     * @return value of the preference, or <code>defaultValue</code> if no value present
+     * @throws IllegalArgumentException if the preference is not observed
+     */
+    public <T> T get(RxPreference<T> preference, T defaultValue) {
+        final T value = get(preference);
+        return value != null ? value : defaultValue;
+    }
+
+    /**
+     * Returns the keys which values differ from the previous snapshot.
+     * For the first snapshot, these are all the observed keys.
+     * @return unmodifiable set of the changed keys
+     */
+    public Set<String> getChangedKeys() {
+        return mChangedKeys;
+    }
+
+    /**
+     * Checks if the value of <code>preference</code> differs from the previous snapshot.
+     * @param preference to check
+     * @return true if the value is changed, false - otherwise
+     */
+    public boolean isChanged(RxPreference<?> preference) {
+        return mChangedKeys.contains(preference.getKey());
+    }
+
+    @Override
+    public String toString() {
+        return "PreferenceSnapshot{values=" + mValues + ", changedKeys=" + mChangedKeys + '}';
+    }
+}
@@ -0,0 +1,163 @@
+package com.frolo.rxpreference;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import io.reactivex.FlowableEmitter;
+import io.reactivex.FlowableOnSubscribe;
+import io.reactivex.disposables.CompositeDisposable;
+import io.reactivex.disposables.Disposables;
+import io.reactivex.exceptions.Exceptions;
+import io.reactivex.functions.Action;
+
+
+/**
+ * Source of {@link PreferenceSnapshot}s of a group of preferences of the same file.
+ *
+ * A single listener is added for all the keys of the group.
+ * Changed keys are collected until the end of the current message of the main thread, and then one snapshot is emitted for all of them.
+ * Since {@link android.content.SharedPreferences} notifies about all the keys of one editor in one message,
+ * a bulk write results in one snapshot rather than one emission per key.
+ * If none of the values is actually changed, then nothing is emitted.
+ */
+final class PreferenceSnapshotSource implements FlowableOnSubscribe<PreferenceSnapshot> {
+
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+
+    private final PreferenceFile mFile;
+    /**
+     * Observed preferences by their keys.
+     */
+    private final Map<String, RxPreference<?>> mPreferences;
+
+    PreferenceSnapshotSource(PreferenceFile file, List<? extends RxPreference<?>> preferences) {
+        this.mFile = file;
+        this.mPreferences = new LinkedHashMap<>();
+        for (RxPreference<?> preference : preferences) {
+            mPreferences.put(preference.getKey(), preference);
+        }
+    }
+
+    @Override
+    public void subscribe(final FlowableEmitter<PreferenceSnapshot> emitter) {
+        if (emitter.isCancelled()) {
+            return;
+        }
+
+        final Wave wave = new Wave(emitter);
+
+        final CompositeDisposable registrations = new CompositeDisposable();
+        for (String key : mPreferences.keySet()) {
+            registrations.add(mFile.addListener(key, wave));
+        }
+        registrations.add(Disposables.fromAction(new Action() {
+            @Override
+            public void run() {
+                sMainHandler.removeCallbacks(wave);
+            }
+        }));
+        emitter.setDisposable(registrations);
+
+        // The listener is added before the first read, so no change can be missed
+        wave.emitFirst();
+    }
+
+    /**
+     * Collects the keys changed in one wave of writes and emits a snapshot at the end of the wave.
+     */
+    private final class Wave implements PreferenceFile.KeyListener, Runnable {
+
+        final FlowableEmitter<PreferenceSnapshot> mEmitter;
+
+        /**
+         * Guarded by this.
+         */
+        Map<String, Object> mValues;
+        final Set<String> mChangedKeys = new HashSet<>();
+        boolean mPosted;
+
+        Wave(FlowableEmitter<PreferenceSnapshot> emitter) {
+            this.mEmitter = emitter;
+        }
+
+        @Override
+        public void onKeyChanged(String key) {
+            synchronized (this) {
+                mChangedKeys.add(key);
+                if (mPosted) {
+                    return;
+                }
+                mPosted = true;
+            }
+            sMainHandler.post(this);
+        }
+
+        void emitFirst() {
+            synchronized (this) {
+                final Map<String, Object> values = new HashMap<>(mPreferences.size());
+                for (Map.Entry<String, RxPreference<?>> entry : mPreferences.entrySet()) {
+                    values.put(entry.getKey(), entry.getValue().blockingGet());
+                }
+                mValues = values;
+                // Changes that came before are seen by the read above
+                mChangedKeys.clear();
+                mEmitter.onNext(new PreferenceSnapshot(
+                        Collections.unmodifiableMap(values),
+                        Collections.unmodifiableSet(new HashSet<>(values.keySet()))));
+            }
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                mPosted = false;
+                if (mValues == null || mEmitter.isCancelled()) {
+                    mChangedKeys.clear();
+                    return;
+                }
+
+                Map<String, Object> values = null;
+                final Set<String> changedKeys = new HashSet<>();
+                for (String key : mChangedKeys) {
+                    final Object value;
+                    try {
+                        value = mPreferences.get(key).blockingGet();
+                    } catch (Throwable error) {
+                        Exceptions.throwIfFatal(error);
+                        mChangedKeys.clear();
+                        mEmitter.tryOnError(error);
+                        return;
+                    }
+                    final Object previous = mValues.get(key);
+                    if (value == null ? previous == null : value.equals(previous)) {
+                        continue;
+                    }
+                    if (values == null) {
+                        values = new HashMap<>(mValues);
+                    }
+                    values.put(key, value);
+                    changedKeys.add(key);
+                }
+                mChangedKeys.clear();
+
+                if (values == null) {
+                    // The wave has not changed any value
+                    return;
+                }
+
+                mValues = values;
+                mEmitter.onNext(new PreferenceSnapshot(
+                        Collections.unmodifiableMap(values),
+                        Collections.unmodifiableSet(changedKeys)));
+            }
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.frolo.rxpreference;
+
+import android.os.Trace;
+
+import com.frolo.rxcontent.RxTrace;
+
+
+/**
+ * System trace sections of {@link RxPreference} stages, enabled together with those of RxContent by {@link RxTrace#setEnabled(boolean)}.
+ * Sections are labeled with the preference key, e.g. <code>RxPreference.read volume</code>.
+ */
+final class PreferenceTrace {
+
+    /**
+     * Max length of a section name accepted by {@link Trace}.
+     */
+    private static final int MAX_SECTION_NAME_LENGTH = 127;
+
+    private PreferenceTrace() {
+    }
+
+    /**
+     * Begins the section of <code>stage</code> for <code>key</code> on the current thread, if tracing is enabled.
+     * @param stage name of the stage, e.g. <code>RxPreference.read</code>
+     * @param key of the preference
+     * @return true if the section is begun
+     */
+    static boolean beginSection(String stage, String key) {
+        if (!RxTrace.isEnabled()) {
+            return false;
+        }
+        final String name = stage + ' ' + key;
+        Trace.beginSection(name.length() > MAX_SECTION_NAME_LENGTH ? name.substring(0, MAX_SECTION_NAME_LENGTH) : name);
+        return true;
+    }
+
+    /**
+     * Begins the section of <code>stage</code> on the current thread, if tracing is enabled.
+     * @param stage name of the stage
+     * @return true if the section is begun
+     */
+    static boolean beginSection(String stage) {
+        if (!RxTrace.isEnabled()) {
+            return false;
+        }
+        Trace.beginSection(stage);
+        return true;
+    }
+
+    /**
+     * Ends the last section begun on the current thread.
+     * @param begun the result of the begin call
+     */
+    static void endSection(boolean begun) {
+        if (begun) {
+            Trace.endSection();
+        }
+    }
+}
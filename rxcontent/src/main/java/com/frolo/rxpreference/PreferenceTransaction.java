@@ -0,0 +1,93 @@
+package com.frolo.rxpreference;
+
+import android.content.SharedPreferences;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.reactivex.Completable;
+import io.reactivex.functions.Action;
+
+
+/**
+ * Collects writes of typed {@link RxPreference}s and applies them at once with a single {@link SharedPreferences.Editor}.
+ * To get an instance use {@link RxPreferences#transaction(SharedPreferences)}.
+ *
+ * Example:
+ * <pre>
+ *     RxPreferences.transaction(prefs)
+ *          .set(volume, 1f)
+ *          .set(theme, "dark")
+ *          .remove(lastPlaylist)
+ *          .commit()
+ *          .subscribe();
+ * </pre>
+ *
+ * The transaction is not thread-safe, it is supposed to be built on a single thread.
+ */
+public final class PreferenceTransaction {
+
+    private final SharedPreferences mPreferences;
+    private final List<PreferenceWrite<?>> mWrites = new ArrayList<>();
+
+    /*package*/ PreferenceTransaction(SharedPreferences preferences) {
+        this.mPreferences = preferences;
+    }
+
+    private void checkPreference(RxPreference<?> preference) {
+        if (preference.getPreferences() != mPreferences) {
+            throw new IllegalArgumentException("Preference " + preference.getKey()
+                    + " belongs to other preferences than the transaction");
+        }
+    }
+
+    /**
+     * Adds a write of <code>value</code> to <code>preference</code>.
+     * If <code>value</code> is null, then the preference is removed.
+     * @param preference to write
+     * @param value to be set in the preference
+     * @param <T> type of the preference
+     * @return this transaction
+     * @throws IllegalArgumentException if the preference belongs to other preferences than the transaction
+     */
+    public <T> PreferenceTransaction set(RxPreference<T> preference, T value) {
+        checkPreference(preference);
+        mWrites.add(new PreferenceWrite<>(preference, value));
+        return this;
+    }
+
+    /**
+     * Adds a removal of <code>preference</code>.
+     * @param preference to remove
+     * @return this transaction
+     * @throws IllegalArgumentException if the preference belongs to other preferences than the transaction
+     */
+    public <T> PreferenceTransaction remove(RxPreference<T> preference) {
+        return set(preference, null);
+    }
+
+    /**
+     * Returns a completable source that applies all the writes added so far with a single {@link SharedPreferences.Editor}.
+     * The writes are applied in the order they were added, so the last write of a preference wins.
+     * @return completable source
+     */
+    public Completable commit() {
+        final PreferenceWrite<?>[] writes = mWrites.toArray(new PreferenceWrite<?>[0]);
+        return Completable.fromAction(new Action() {
+            @Override
+            public void run() {
+                // Writes held for coalescing go first, so that the writes of the transaction win
+                final PreferenceWriteBuffer buffer = PreferenceFile.of(mPreferences).getWriteBuffer();
+                if (buffer != null) {
+                    buffer.flushWith(writes);
+                    return;
+                }
+                final SharedPreferences.Editor editor = mPreferences.edit();
+                for (PreferenceWrite<?> write : writes) {
+                    write.writeTo(editor);
+                }
+                editor.apply();
+            }
+        });
+    }
+}
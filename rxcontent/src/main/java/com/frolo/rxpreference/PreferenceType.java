@@ -2,8 +2,9 @@ package com.frolo.rxpreference;
 
 
 /**
- * All the types that {@link android.content.SharedPreferences} accepts.
+ * All the types that {@link android.content.SharedPreferences} accepts,
+ * plus {@link PreferenceType#OBJECT} for values stored as strings encoded with a {@link Codec}.
  */
 enum PreferenceType {
-    BOOLEAN, INT, LONG, FLOAT, STRING, STRING_SET
+    BOOLEAN, INT, LONG, FLOAT, STRING, STRING_SET, OBJECT
 }
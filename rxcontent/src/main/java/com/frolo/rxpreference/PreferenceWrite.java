@@ -0,0 +1,24 @@
+package com.frolo.rxpreference;
+
+import android.content.SharedPreferences;
+
+
+/**
+ * Pending write of a value to a typed {@link RxPreference}.
+ * A null value stands for the removal of the preference.
+ * @param <T> type of the preference
+ */
+final class PreferenceWrite<T> {
+
+    final RxPreference<T> preference;
+    final T value;
+
+    PreferenceWrite(RxPreference<T> preference, T value) {
+        this.preference = preference;
+        this.value = value;
+    }
+
+    void writeTo(SharedPreferences.Editor editor) {
+        preference.write(editor, value);
+    }
+}
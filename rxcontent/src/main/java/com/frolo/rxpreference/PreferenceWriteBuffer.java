@@ -0,0 +1,121 @@
+package com.frolo.rxpreference;
+
+import android.content.SharedPreferences;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
+
+
+/**
+ * Holds writes of a preferences file in memory and applies them periodically with a single {@link SharedPreferences.Editor}.
+ *
+ * Writes of the same key are coalesced: only the latest value is kept and eventually written.
+ * Pending values are visible to {@link RxPreference} reads immediately,
+ * and the listeners of the key are notified right on the writing thread.
+ *
+ * The buffer is flushed {@link PreferenceWriteBuffer#mFlushIntervalMillis} after the first pending write,
+ * or explicitly with {@link PreferenceWriteBuffer#flush()}.
+ */
+final class PreferenceWriteBuffer {
+
+    private static final PreferenceWrite<?>[] NO_WRITES = new PreferenceWrite<?>[0];
+
+    private final PreferenceFile mFile;
+    private final long mFlushIntervalMillis;
+
+    /**
+     * Pending writes by their keys. Guarded by this.
+     */
+    private final Map<String, PreferenceWrite<?>> mPending = new HashMap<>();
+    private Disposable mScheduledFlush;
+
+    private final Runnable mFlushTask = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    PreferenceWriteBuffer(PreferenceFile file, long flushIntervalMillis) {
+        this.mFile = file;
+        this.mFlushIntervalMillis = flushIntervalMillis;
+    }
+
+    /**
+     * Puts <code>value</code> of <code>preference</code> in the buffer, replacing a pending value of the same key.
+     * A null value stands for the removal of the preference.
+     * @param preference to write
+     * @param value to be set in the preference
+     */
+    <T> void put(RxPreference<T> preference, T value) {
+        final String key = preference.getKey();
+        synchronized (this) {
+            mPending.put(key, new PreferenceWrite<>(preference, value));
+            if (mScheduledFlush == null) {
+                mScheduledFlush = Schedulers.io().scheduleDirect(
+                        mFlushTask, mFlushIntervalMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+        mFile.dispatchChange(key);
+    }
+
+    /**
+     * Returns the pending write of <code>key</code>.
+     * @param key of the preference
+     * @return the pending write, or null if there is no pending write of the key
+     */
+    synchronized PreferenceWrite<?> get(String key) {
+        return mPending.get(key);
+    }
+
+    /**
+     * Puts all the pending writes in <code>editor</code> and clears the buffer.
+     * The caller is responsible for applying the editor before releasing the lock.
+     * @param editor of the preferences
+     */
+    private void drainTo(SharedPreferences.Editor editor) {
+        for (PreferenceWrite<?> write : mPending.values()) {
+            write.writeTo(editor);
+        }
+        mPending.clear();
+        if (mScheduledFlush != null) {
+            mScheduledFlush.dispose();
+            mScheduledFlush = null;
+        }
+    }
+
+    /**
+     * Applies all the pending writes with a single editor.
+     * The lock is held until the editor is applied to memory,
+     * so that readers never observe the state between clearing the buffer and applying the editor.
+     */
+    void flush() {
+        flushWith(NO_WRITES);
+    }
+
+    /**
+     * Applies all the pending writes followed by <code>writes</code> with a single editor, so that <code>writes</code> win.
+     * As with {@link PreferenceWriteBuffer#flush()}, the lock is held until the editor is applied to memory.
+     * @param writes to apply after the pending ones
+     */
+    synchronized void flushWith(PreferenceWrite<?>[] writes) {
+        if (mPending.isEmpty() && writes.length == 0) {
+            return;
+        }
+        final boolean traced = PreferenceTrace.beginSection("RxPreference.flush");
+        try {
+            final SharedPreferences.Editor editor = mFile.getPreferences().edit();
+            drainTo(editor);
+            for (PreferenceWrite<?> write : writes) {
+                write.writeTo(editor);
+            }
+            editor.apply();
+        } finally {
+            PreferenceTrace.endSection(traced);
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package com.frolo.rxpreference;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.reactivex.Completable;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Action;
+
+
+/**
+ * Base class for preferences of primitive types, that keep an in-memory mirror of the current value.
+ *
+ * The mirror is invalidated each time the key changes and is reloaded on the next read.
+ * While it is valid, a read is a couple of volatile reads: no hashing, no boxing, no locks.
+ * The mirrored value is held as the bits of a long, subclasses convert their primitive type to and from them
+ * and add the typed reads with {@link PrimitivePreference#readBits(long)}.
+ *
+ * Writes and change streams are delegated to an {@link RxPreference} of the boxed type.
+ *
+ * @param <T> boxed type of the preference
+ */
+abstract class PrimitivePreference<T> {
+
+    private static final int INVALID_VERSION = -1;
+
+    /**
+     * Invalidates the mirror of the preference when the key changes.
+     * Holds the preference weakly, so that the registration in {@link PreferenceFile} does not prevent it from GC.
+     * Once the preference is collected, the listener removes itself on the next change of the key.
+     */
+    private static final class MirrorListener implements PreferenceFile.KeyListener {
+
+        final WeakReference<PrimitivePreference<?>> mRef;
+        volatile Disposable mRegistration;
+
+        MirrorListener(PrimitivePreference<?> preference) {
+            this.mRef = new WeakReference<PrimitivePreference<?>>(preference);
+        }
+
+        @Override
+        public void onKeyChanged(String key) {
+            final PrimitivePreference<?> preference = mRef.get();
+            if (preference != null) {
+                preference.invalidate();
+            } else {
+                final Disposable registration = mRegistration;
+                if (registration != null) {
+                    registration.dispose();
+                }
+            }
+        }
+    }
+
+    final RxPreference<T> mPreference;
+
+    /**
+     * Bits of the value of the preference, or 0 if it has no value. Part of the mirror, written in {@link PrimitivePreference#loadMirror()}.
+     */
+    private volatile long mBits;
+
+    /**
+     * Whether the preference has a value. Part of the mirror, written in {@link PrimitivePreference#loadMirror()}.
+     */
+    private volatile boolean mPresent;
+
+    /**
+     * Incremented each time the key changes.
+     */
+    private final AtomicInteger mVersion = new AtomicInteger(0);
+
+    /**
+     * The version the mirror is loaded for, or {@link PrimitivePreference#INVALID_VERSION} while it is being loaded.
+     */
+    private volatile int mMirrorVersion = INVALID_VERSION;
+
+    /**
+     * Guarded by this.
+     */
+    private boolean mListening;
+
+    PrimitivePreference(RxPreference<T> preference) {
+        this.mPreference = preference;
+    }
+
+    /**
+     * Converts <code>value</code> to the bits of the mirror.
+     * @param value of the preference, not null
+     * @return the bits of the value
+     */
+    abstract long toBits(T value);
+
+    /**
+     * Loads the current value of the preference in the mirror fields.
+     * Called under the lock of this, never concurrently with itself.
+     */
+    private void loadMirror() {
+        final T value = mPreference.blockingGet();
+        mBits = value != null ? toBits(value) : 0L;
+        mPresent = value != null;
+    }
+
+    /**
+     * Marks the mirror as stale, so that it is reloaded on the next read.
+     */
+    final void invalidate() {
+        mVersion.incrementAndGet();
+    }
+
+    /**
+     * Begins reading the mirror, reloading it if it is stale.
+     * @return the version of the mirror to pass to {@link PrimitivePreference#endRead(int)}
+     */
+    private int beginRead() {
+        final int mirrorVersion = mMirrorVersion;
+        if (mirrorVersion != INVALID_VERSION && mirrorVersion == mVersion.get()) {
+            return mirrorVersion;
+        }
+        reload();
+        return mMirrorVersion;
+    }
+
+    /**
+     * Checks that the mirror has not been reloaded since {@link PrimitivePreference#beginRead()}.
+     * @param mirrorVersion returned by {@link PrimitivePreference#beginRead()}
+     * @return true if the values read in between are consistent, false - if the read should be retried
+     */
+    private boolean endRead(int mirrorVersion) {
+        return mirrorVersion != INVALID_VERSION && mMirrorVersion == mirrorVersion;
+    }
+
+    private synchronized void reload() {
+        if (!mListening) {
+            // Listening starts before the first load, so no change can be missed
+            final MirrorListener listener = new MirrorListener(this);
+            listener.mRegistration = mPreference.getFile().addListener(mPreference.getKey(), listener);
+            mListening = true;
+        }
+
+        final int version = mVersion.get();
+        if (mMirrorVersion == version) {
+            return;
+        }
+
+        mMirrorVersion = INVALID_VERSION;
+        loadMirror();
+        mMirrorVersion = version;
+    }
+
+    /**
+     * Reads the bits of the current value from the mirror, retrying if the mirror is reloaded meanwhile.
+     * @param defaultBits to be returned if the preference has no value
+     * @return the bits of the current value, or <code>defaultBits</code> if no value present
+     */
+    final long readBits(long defaultBits) {
+        for (;;) {
+            final int version = beginRead();
+            final long bits = mBits;
+            final boolean present = mPresent;
+            if (endRead(version)) {
+                return present ? bits : defaultBits;
+            }
+        }
+    }
+
+    /**
+     * Checks if the preference has a value.
+     * @return true if the preference has a value, false - otherwise
+     */
+    public boolean isPresent() {
+        for (;;) {
+            final int version = beginRead();
+            final boolean present = mPresent;
+            if (endRead(version)) {
+                return present;
+            }
+        }
+    }
+
+    /**
+     * Returns a completable source that sets the preference value to <code>value</code>.
+     * The value is visible to the reads of this instance right after the source completes.
+     * @param value to be set in the preference
+     * @return completable source
+     */
+    final Completable setBoxed(final T value) {
+        return Completable.fromAction(new Action() {
+            @Override
+            public void run() {
+                mPreference.blockingSet(value);
+                invalidate();
+            }
+        });
+    }
+
+    /**
+     * Returns a completable source that removes the preference value.
+     * @return completable source
+     */
+    public Completable remove() {
+        return setBoxed(null);
+    }
+
+    /**
+     * Returns an {@link RxPreference} of the same key, e.g. to use in {@link PreferenceTransaction}.
+     * @return the boxed preference
+     */
+    public RxPreference<T> asRxPreference() {
+        return mPreference;
+    }
+
+    /**
+     * Runs <code>callback</code> right away on the calling thread and then each time the key changes,
+     * on the thread the change is dispatched on, invalidating the mirror first.
+     * @param callback that reads the current value and passes it to a typed listener
+     * @return disposable that stops the observation
+     */
+    final Disposable observe(final Runnable callback) {
+        final Disposable registration = mPreference.getFile().addListener(mPreference.getKey(), new PreferenceFile.KeyListener() {
+            @Override
+            public void onKeyChanged(String key) {
+                invalidate();
+                callback.run();
+            }
+        });
+        callback.run();
+        return registration;
+    }
+}
@@ -0,0 +1,417 @@
+package com.frolo.rxpreference;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.frolo.rxcontent.ObservationSpec;
+import com.frolo.rxcontent.RxContent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import io.reactivex.functions.Consumer;
+import io.reactivex.schedulers.Schedulers;
+
+
+/**
+ * {@link SharedPreferences} of another process, accessed via {@link PreferenceProvider}.
+ *
+ * Values are cached in the process: the first read loads the whole file with one IPC call,
+ * and later reads are served from the cache.
+ * The provider notifies each change of a key, the notifications are observed with {@link RxContent#createUriFlowable}
+ * and invalidate the cached value of the key, so that the next read of it fetches the value again.
+ * The same notifications are dispatched to the change listeners, so the processes get pushed the changes of each other.
+ * Before the dispatch, the changed values are fetched on {@link Schedulers#io()}, so the listeners read them from the cache
+ * rather than with an IPC call on the main thread.
+ * If the notifications cannot be observed, e.g. the provider is not declared, the values are no longer cached.
+ *
+ * Writes are sent to the provider right away, and are visible to the reads in this process immediately.
+ * {@link Editor#apply()} makes a short IPC call, the provider applies the changes asynchronously.
+ */
+final class ProviderPreferences implements SharedPreferences {
+
+    private static final String LOG_TAG = "RxPreference";
+
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Instances by their file Uris.
+     */
+    private static final Map<Uri, ProviderPreferences> sInstances = new HashMap<>();
+
+    static ProviderPreferences of(Context context, String authority, String name) {
+        final Uri uri = PreferenceProvider.fileUri(authority, name);
+        synchronized (sInstances) {
+            ProviderPreferences preferences = sInstances.get(uri);
+            if (preferences == null) {
+                preferences = new ProviderPreferences(context.getApplicationContext().getContentResolver(), uri, name);
+                sInstances.put(uri, preferences);
+            }
+            return preferences;
+        }
+    }
+
+    private final ContentResolver mResolver;
+    private final Uri mUri;
+    private final String mName;
+
+    private final Object mLock = new Object();
+
+    /**
+     * Cached values, or null if the file is not loaded or is invalidated as a whole. Guarded by mLock.
+     */
+    private Map<String, Object> mValues;
+    /**
+     * Keys which cached values are invalidated. Guarded by mLock.
+     */
+    private final Set<String> mStaleKeys = new HashSet<>();
+    /**
+     * Incremented on each invalidation, so that the values fetched before it are not cached. Guarded by mLock.
+     */
+    private int mVersion;
+    /**
+     * Whether the notifications are observed, so the values may be cached. Guarded by mLock.
+     */
+    private boolean mObserving = true;
+
+    /**
+     * Listeners are held weakly, as the platform does. Guarded by mLock.
+     */
+    private final WeakHashMap<OnSharedPreferenceChangeListener, Object> mListeners = new WeakHashMap<>();
+
+    private ProviderPreferences(ContentResolver resolver, Uri uri, String name) {
+        this.mResolver = resolver;
+        this.mUri = uri;
+        this.mName = name;
+
+        // The notifications are observed for the process lifetime, as the instances are cached for it
+        RxContent.createUriFlowable(resolver, Collections.singletonList(uri), ObservationSpec.descendants())
+                .subscribe(new Consumer<Uri>() {
+                    @Override
+                    public void accept(Uri changedUri) {
+                        onUriChanged(changedUri);
+                    }
+                }, new Consumer<Throwable>() {
+                    @Override
+                    public void accept(Throwable error) {
+                        onObservationFailed(error);
+                    }
+                });
+    }
+
+    /**
+     * Stops caching the values, as their changes can no longer be observed.
+     */
+    private void onObservationFailed(Throwable error) {
+        synchronized (mLock) {
+            mObserving = false;
+            mVersion++;
+            mValues = null;
+            mStaleKeys.clear();
+        }
+        Log.w(LOG_TAG, "Failed to observe changes of " + mUri + ", the values are no longer cached", error);
+    }
+
+    private Bundle call(String method, Bundle extras) {
+        final Bundle result = mResolver.call(mUri, method, mName, extras);
+        return result != null ? result : Bundle.EMPTY;
+    }
+
+    private void onUriChanged(Uri uri) {
+        final List<String> segments = uri.getPathSegments();
+        final String key = segments.size() == 2 && mName.equals(segments.get(0)) ? segments.get(1) : null;
+
+        final List<OnSharedPreferenceChangeListener> listeners;
+        synchronized (mLock) {
+            mVersion++;
+            if (key != null) {
+                mStaleKeys.add(key);
+            } else {
+                // The file is cleared, or the changed Uri is unknown
+                mValues = null;
+                mStaleKeys.clear();
+            }
+            listeners = new ArrayList<>(mListeners.keySet());
+        }
+
+        if (listeners.isEmpty()) {
+            return;
+        }
+
+        // Listeners typically read the changed value, so it is fetched before they are notified on the main thread
+        Schedulers.io().scheduleDirect(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (key != null) {
+                        getValue(key);
+                    } else {
+                        getAll();
+                    }
+                } catch (RuntimeException e) {
+                    // The listeners are notified anyway, they will get the error on their read
+                    Log.w(LOG_TAG, "Failed to fetch the changed values of " + mUri, e);
+                }
+
+                // Listeners are notified on the main thread, as the platform does
+                sMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (OnSharedPreferenceChangeListener listener : listeners) {
+                            listener.onSharedPreferenceChanged(ProviderPreferences.this, key);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    private Object getValue(String key) {
+        final int version;
+        final boolean loadAll;
+        synchronized (mLock) {
+            if (mValues != null && !mStaleKeys.contains(key)) {
+                return mValues.get(key);
+            }
+            version = mVersion;
+            loadAll = mValues == null && mObserving;
+        }
+
+        if (loadAll) {
+            final Map<String, Object> values = fetchAll();
+            synchronized (mLock) {
+                if (mVersion == version) {
+                    mValues = values;
+                    mStaleKeys.clear();
+                }
+            }
+            return values.get(key);
+        }
+
+        final Bundle extras = new Bundle();
+        extras.putString(PreferenceProvider.EXTRA_KEY, key);
+        final Object value = PreferenceProvider.getValue(call(PreferenceProvider.METHOD_GET, extras), key);
+        synchronized (mLock) {
+            if (mVersion == version && mValues != null) {
+                if (value != null) {
+                    mValues.put(key, value);
+                } else {
+                    mValues.remove(key);
+                }
+                mStaleKeys.remove(key);
+            }
+        }
+        return value;
+    }
+
+    private Map<String, Object> fetchAll() {
+        final Bundle result = call(PreferenceProvider.METHOD_GET_ALL, null);
+        final Map<String, Object> values = new HashMap<>();
+        for (String key : result.keySet()) {
+            values.put(key, PreferenceProvider.getValue(result, key));
+        }
+        return values;
+    }
+
+    //region SharedPreferences
+    @Override
+    public Map<String, ?> getAll() {
+        final int version;
+        synchronized (mLock) {
+            version = mVersion;
+        }
+        final Map<String, Object> values = fetchAll();
+        synchronized (mLock) {
+            if (mVersion == version && mObserving) {
+                mValues = new HashMap<>(values);
+                mStaleKeys.clear();
+            }
+        }
+        return values;
+    }
+
+    @Override
+    public String getString(String key, String defValue) {
+        final String value = (String) getValue(key);
+        return value != null ? value : defValue;
+    }
+
+    @Override
+    public Set<String> getStringSet(String key, Set<String> defValues) {
+        final Set<String> value = (Set<String>) getValue(key);
+        return value != null ? value : defValues;
+    }
+
+    @Override
+    public int getInt(String key, int defValue) {
+        final Integer value = (Integer) getValue(key);
+        return value != null ? value : defValue;
+    }
+
+    @Override
+    public long getLong(String key, long defValue) {
+        final Long value = (Long) getValue(key);
+        return value != null ? value : defValue;
+    }
+
+    @Override
+    public float getFloat(String key, float defValue) {
+        final Float value = (Float) getValue(key);
+        return value != null ? value : defValue;
+    }
+
+    @Override
+    public boolean getBoolean(String key, boolean defValue) {
+        final Boolean value = (Boolean) getValue(key);
+        return value != null ? value : defValue;
+    }
+
+    @Override
+    public boolean contains(String key) {
+        return getValue(key) != null;
+    }
+
+    @Override
+    public Editor edit() {
+        return new ProviderEditor();
+    }
+
+    @Override
+    public void registerOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+        synchronized (mLock) {
+            mListeners.put(listener, this);
+        }
+    }
+
+    @Override
+    public void unregisterOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+        synchronized (mLock) {
+            mListeners.remove(listener);
+        }
+    }
+    //endregion
+
+    private final class ProviderEditor implements Editor {
+
+        /**
+         * Modified values by their keys, null values stand for removal. Guarded by this.
+         */
+        private final Map<String, Object> mModifications = new HashMap<>();
+        private boolean mClear;
+
+        private synchronized Editor put(String key, Object value) {
+            mModifications.put(key, value);
+            return this;
+        }
+
+        @Override
+        public Editor putString(String key, String value) {
+            return put(key, value);
+        }
+
+        @Override
+        public Editor putStringSet(String key, Set<String> values) {
+            return put(key, values != null ? Collections.unmodifiableSet(new HashSet<>(values)) : null);
+        }
+
+        @Override
+        public Editor putInt(String key, int value) {
+            return put(key, value);
+        }
+
+        @Override
+        public Editor putLong(String key, long value) {
+            return put(key, value);
+        }
+
+        @Override
+        public Editor putFloat(String key, float value) {
+            return put(key, value);
+        }
+
+        @Override
+        public Editor putBoolean(String key, boolean value) {
+            return put(key, value);
+        }
+
+        @Override
+        public Editor remove(String key) {
+            return put(key, null);
+        }
+
+        @Override
+        public synchronized Editor clear() {
+            mClear = true;
+            return this;
+        }
+
+        @Override
+        public boolean commit() {
+            return send(true);
+        }
+
+        @Override
+        public void apply() {
+            send(false);
+        }
+
+        private boolean send(boolean commit) {
+            final Map<String, Object> modifications;
+            final boolean clear;
+            synchronized (this) {
+                modifications = new HashMap<>(mModifications);
+                clear = mClear;
+                mModifications.clear();
+                mClear = false;
+            }
+
+            final Bundle values = new Bundle();
+            final ArrayList<String> removedKeys = new ArrayList<>();
+            for (Map.Entry<String, Object> entry : modifications.entrySet()) {
+                if (entry.getValue() != null) {
+                    PreferenceProvider.putValue(values, entry.getKey(), entry.getValue());
+                } else {
+                    removedKeys.add(entry.getKey());
+                }
+            }
+
+            // The writes are visible to the reads of this process right away
+            synchronized (mLock) {
+                mVersion++;
+                if (clear) {
+                    mValues = mValues != null ? new HashMap<String, Object>() : null;
+                    mStaleKeys.clear();
+                }
+                if (mValues != null) {
+                    for (Map.Entry<String, Object> entry : modifications.entrySet()) {
+                        if (entry.getValue() != null) {
+                            mValues.put(entry.getKey(), entry.getValue());
+                        } else {
+                            mValues.remove(entry.getKey());
+                        }
+                        mStaleKeys.remove(entry.getKey());
+                    }
+                }
+            }
+
+            final Bundle extras = new Bundle();
+            extras.putBundle(PreferenceProvider.EXTRA_VALUES, values);
+            extras.putStringArrayList(PreferenceProvider.EXTRA_REMOVED_KEYS, removedKeys);
+            extras.putBoolean(PreferenceProvider.EXTRA_CLEAR, clear);
+            extras.putBoolean(PreferenceProvider.EXTRA_COMMIT, commit);
+            return call(PreferenceProvider.METHOD_EDIT, extras).getBoolean(PreferenceProvider.EXTRA_RESULT);
+        }
+    }
+}
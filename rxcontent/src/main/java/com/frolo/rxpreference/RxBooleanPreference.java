@@ -0,0 +1,111 @@
+package com.frolo.rxpreference;
+
+import android.content.SharedPreferences;
+
+import java.util.concurrent.Executor;
+
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
+
+
+/**
+ * Preference of type boolean that keeps an in-memory mirror of its current value.
+ * Use this instead of {@link RxPreference} of type Boolean for hot settings, read on render paths:
+ * {@link RxBooleanPreference#getBoolean(boolean)} reads the mirror without hashing or boxing.
+ *
+ * The mirror is invalidated each time the key changes and is reloaded on the next read.
+ */
+public final class RxBooleanPreference extends PrimitivePreference<Boolean> {
+
+    /**
+     * Listener of the preference value.
+     */
+    public interface Listener {
+        /**
+         * Called with the current value of the preference.
+         * @param value the current value, or the default value if the preference has no value
+         */
+        void onValueChanged(boolean value);
+    }
+
+    /**
+     * Factory method for creating RxBooleanPreference.
+     * Get/set operations are performed on {@link Schedulers#from(Executor)} scheduler created from <code>executor</code>.
+     * @param preferences for modifying and accessing the preference data
+     * @param key of the preference
+     * @param executor on which thread get/set operations are performed
+     * @return RxBooleanPreference
+     */
+    public static RxBooleanPreference of(SharedPreferences preferences, String key, Executor executor) {
+        return new RxBooleanPreference(RxPreference.ofBoolean(preferences, key, executor));
+    }
+
+    /**
+     * Factory method for creating RxBooleanPreference.
+     * Get/set operations are performed on {@link Schedulers#io()} scheduler.
+     * @param preferences for modifying and accessing the preference data
+     * @param key of the preference
+     * @return RxBooleanPreference
+     */
+    public static RxBooleanPreference of(SharedPreferences preferences, String key) {
+        return of(preferences, key, null);
+    }
+
+    private RxBooleanPreference(RxPreference<Boolean> preference) {
+        super(preference);
+    }
+
+    @Override
+    long toBits(Boolean value) {
+        return value ? 1L : 0L;
+    }
+
+    /**
+     * Returns the current value of the preference from the in-memory mirror.
+     * @param defaultValue to be returned if the preference has no value
+     * @return the current value of the preference, or <code>defaultValue</code> if no value present
+     */
+    public boolean getBoolean(boolean defaultValue) {
+        final long bits = readBits(defaultValue ? 1L : 0L);
+        return bits != 0L;
+    }
+
+    /**
+     * Returns a completable source that sets the preference value to <code>value</code>.
+     * The value is visible to {@link RxBooleanPreference#getBoolean(boolean)} right after the source completes.
+     * @param value to be set in the preference
+     * @return completable source
+     */
+    public Completable set(boolean value) {
+        return setBoxed(value);
+    }
+
+    /**
+     * Returns a flowable source that emits the preference value when it is changed.
+     * @see RxPreference#get(Object)
+     * @param defaultValue to be emitted if no preference value present
+     * @return flowable source
+     */
+    public Flowable<Boolean> get(boolean defaultValue) {
+        return mPreference.get(defaultValue);
+    }
+
+    /**
+     * Observes the preference value without boxing.
+     * <code>listener</code> is called with the current value right away on the calling thread
+     * and then each time the key changes on the thread the change is dispatched on, usually the main thread.
+     * @param defaultValue to be passed to <code>listener</code> if the preference has no value
+     * @param listener of the preference value
+     * @return disposable that stops the observation
+     */
+    public Disposable observe(final boolean defaultValue, final Listener listener) {
+        return observe(new Runnable() {
+            @Override
+            public void run() {
+                listener.onValueChanged(getBoolean(defaultValue));
+            }
+        });
+    }
+}
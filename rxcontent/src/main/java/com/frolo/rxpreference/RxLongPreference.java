@@ -0,0 +1,111 @@
+package com.frolo.rxpreference;
+
+import android.content.SharedPreferences;
+
+import java.util.concurrent.Executor;
+
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
+
+
+/**
+ * Preference of type long that keeps an in-memory mirror of its current value.
+ * Use this instead of {@link RxPreference} of type Long for hot settings, read on render paths:
+ * {@link RxLongPreference#getLong(long)} reads the mirror without hashing or boxing.
+ *
+ * The mirror is invalidated each time the key changes and is reloaded on the next read.
+ */
+public final class RxLongPreference extends PrimitivePreference<Long> {
+
+    /**
+     * Listener of the preference value.
+     */
+    public interface Listener {
+        /**
+         * Called with the current value of the preference.
+         * @param value the current value, or the default value if the preference has no value
+         */
+        void onValueChanged(long value);
+    }
+
+    /**
+     * Factory method for creating RxLongPreference.
+     * Get/set operations are performed on {@link Schedulers#from(Executor)} scheduler created from <code>executor</code>.
+     * @param preferences for modifying and accessing the preference data
+     * @param key of the preference
+     * @param executor on which thread get/set operations are performed
+     * @return RxLongPreference
+     */
+    public static RxLongPreference of(SharedPreferences preferences, String key, Executor executor) {
+        return new RxLongPreference(RxPreference.ofLong(preferences, key, executor));
+    }
+
+    /**
+     * Factory method for creating RxLongPreference.
+     * Get/set operations are performed on {@link Schedulers#io()} scheduler.
+     * @param preferences for modifying and accessing the preference data
+     * @param key of the preference
+     * @return RxLongPreference
+     */
+    public static RxLongPreference of(SharedPreferences preferences, String key) {
+        return of(preferences, key, null);
+    }
+
+    private RxLongPreference(RxPreference<Long> preference) {
+        super(preference);
+    }
+
+    @Override
+    long toBits(Long value) {
+        return value;
+    }
+
+    /**
+     * Returns the current value of the preference from the in-memory mirror.
+     * @param defaultValue to be returned if the preference has no value
+     * @return the current value of the preference, or <code>defaultValue</code> if no value present
+     */
+    public long getLong(long defaultValue) {
+        final long bits = readBits(defaultValue);
+        return bits;
+    }
+
+    /**
+     * Returns a completable source that sets the preference value to <code>value</code>.
+     * The value is visible to {@link RxLongPreference#getLong(long)} right after the source completes.
+     * @param value to be set in the preference
+     * @return completable source
+     */
+    public Completable set(long value) {
+        return setBoxed(value);
+    }
+
+    /**
+     * Returns a flowable source that emits the preference value when it is changed.
+     * @see RxPreference#get(Object)
+     * @param defaultValue to be emitted if no preference value present
+     * @return flowable source
+     */
+    public Flowable<Long> get(long defaultValue) {
+        return mPreference.get(defaultValue);
+    }
+
+    /**
+     * Observes the preference value without boxing.
+     * <code>listener</code> is called with the current value right away on the calling thread
+     * and then each time the key changes on the thread the change is dispatched on, usually the main thread.
+     * @param defaultValue to be passed to <code>listener</code> if the preference has no value
+     * @param listener of the preference value
+     * @return disposable that stops the observation
+     */
+    public Disposable observe(final long defaultValue, final Listener listener) {
+        return observe(new Runnable() {
+            @Override
+            public void run() {
+                listener.onValueChanged(getLong(defaultValue));
+            }
+        });
+    }
+}
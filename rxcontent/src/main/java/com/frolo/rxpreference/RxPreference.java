@@ -1,24 +1,26 @@
 package com.frolo.rxpreference;
 
 import android.content.SharedPreferences;
+import android.util.Base64;
+
+import org.reactivestreams.Publisher;
 
-import java.util.Collection;
 import java.util.Set;
-import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Executor;
 
 import io.reactivex.BackpressureStrategy;
 import io.reactivex.Completable;
+import io.reactivex.CompletableEmitter;
+import io.reactivex.CompletableOnSubscribe;
 import io.reactivex.Flowable;
 import io.reactivex.FlowableEmitter;
 import io.reactivex.FlowableOnSubscribe;
 import io.reactivex.Maybe;
 import io.reactivex.MaybeSource;
 import io.reactivex.Scheduler;
-import io.reactivex.Single;
-import io.reactivex.SingleSource;
-import io.reactivex.disposables.Disposables;
+import io.reactivex.disposables.CompositeDisposable;
+import io.reactivex.exceptions.Exceptions;
 import io.reactivex.functions.Action;
 import io.reactivex.functions.Function;
 import io.reactivex.schedulers.Schedulers;
@@ -26,19 +28,32 @@ import io.reactivex.schedulers.Schedulers;
 
 public final class RxPreference<T> {
 
-    private final static Object NOTHING = new Object();
-
     /**
-     * For storing {@link android.content.SharedPreferences.OnSharedPreferenceChangeListener} triggers
-     * to prevent them from GC.
+     * Decoded value of {@link PreferenceType#OBJECT} type. Immutable, so that it can be published with a volatile write.
      */
-    private final Collection<SharedPreferences.OnSharedPreferenceChangeListener> mTriggers =
-            new ArrayBlockingQueue<>(1);
+    private static final class Decoded<T> {
+        final String encoded;
+        final T value;
+
+        Decoded(String encoded, T value) {
+            this.encoded = encoded;
+            this.value = value;
+        }
+    }
 
     private final SharedPreferences mPreferences;
+    private final PreferenceFile mFile;
     private final String mKey;
-    private final Executor mExecutor;
+    /**
+     * Created once per instance, not per subscription.
+     */
+    private final Scheduler mScheduler;
     private final PreferenceType mType;
+    private final Codec<T> mCodec;
+    /**
+     * The last decoded value of {@link PreferenceType#OBJECT} type along with the string it is decoded from.
+     */
+    private volatile Decoded<T> mDecoded;
 
     /**
      * Factory method for creating RxPreference of type Boolean.
@@ -49,7 +64,7 @@ public final class RxPreference<T> {
      * @return RxPreference of type Boolean
      */
     public static RxPreference<Boolean> ofBoolean(SharedPreferences preferences, String key, Executor executor) {
-        return new RxPreference<>(preferences, key, executor, PreferenceType.BOOLEAN);
+        return new RxPreference<>(preferences, key, executor, PreferenceType.BOOLEAN, null);
     }
 
     /**
@@ -72,7 +87,7 @@ public final class RxPreference<T> {
      * @return RxPreference of type Integer
      */
     public static RxPreference<Integer> ofInt(SharedPreferences preferences, String key, Executor executor) {
-        return new RxPreference<>(preferences, key, executor, PreferenceType.INT);
+        return new RxPreference<>(preferences, key, executor, PreferenceType.INT, null);
     }
 
     /**
@@ -95,7 +110,7 @@ public final class RxPreference<T> {
      * @return RxPreference of type Long
      */
     public static RxPreference<Long> ofLong(SharedPreferences preferences, String key, Executor executor) {
-        return new RxPreference<>(preferences, key, executor, PreferenceType.LONG);
+        return new RxPreference<>(preferences, key, executor, PreferenceType.LONG, null);
     }
 
     /**
@@ -118,7 +133,7 @@ public final class RxPreference<T> {
      * @return RxPreference of type Float
      */
     public static RxPreference<Float> ofFloat(SharedPreferences preferences, String key, Executor executor) {
-        return new RxPreference<>(preferences, key, executor, PreferenceType.FLOAT);
+        return new RxPreference<>(preferences, key, executor, PreferenceType.FLOAT, null);
     }
 
     /**
@@ -141,7 +156,7 @@ public final class RxPreference<T> {
      * @return RxPreference of type String
      */
     public static RxPreference<String> ofString(SharedPreferences preferences, String key, Executor executor) {
-        return new RxPreference<>(preferences, key, executor, PreferenceType.STRING);
+        return new RxPreference<>(preferences, key, executor, PreferenceType.STRING, null);
     }
 
     /**
@@ -164,7 +179,7 @@ public final class RxPreference<T> {
      * @return RxPreference of type Set<String>
      */
     public static RxPreference<Set<String>> ofStringSet(SharedPreferences preferences, String key, Executor executor) {
-        return new RxPreference<>(preferences, key, executor, PreferenceType.STRING_SET);
+        return new RxPreference<>(preferences, key, executor, PreferenceType.STRING_SET, null);
     }
 
     /**
@@ -178,6 +193,40 @@ public final class RxPreference<T> {
         return ofStringSet(preferences, key, null);
     }
 
+    /**
+     * Factory method for creating RxPreference of a custom type.
+     * Values are encoded with <code>codec</code> and stored as Base64 strings.
+     * The decoded value is cached until the preference is changed, so it is decoded once per write,
+     * not once per read or per emission.
+     * Get/set operations are performed on {@link Schedulers#from(Executor)} scheduler created from <code>executor</code>.
+     * @param preferences for modifying and accessing the preference data
+     * @param key of the preference
+     * @param codec to encode and decode values
+     * @param executor on which thread get/set operations are performed
+     * @param <T> type of the preference
+     * @return RxPreference of type T
+     */
+    public static <T> RxPreference<T> ofObject(SharedPreferences preferences, String key, Codec<T> codec, Executor executor) {
+        if (codec == null) {
+            throw new NullPointerException("Codec is null");
+        }
+        return new RxPreference<>(preferences, key, executor, PreferenceType.OBJECT, codec);
+    }
+
+    /**
+     * Factory method for creating RxPreference of a custom type.
+     * Get/set operations are performed on {@link Schedulers#io()} scheduler.
+     * @see RxPreference#ofObject(SharedPreferences, String, Codec, Executor)
+     * @param preferences for modifying and accessing the preference data
+     * @param key of the preference
+     * @param codec to encode and decode values
+     * @param <T> type of the preference
+     * @return RxPreference of type T
+     */
+    public static <T> RxPreference<T> ofObject(SharedPreferences preferences, String key, Codec<T> codec) {
+        return ofObject(preferences, key, codec, null);
+    }
+
     //endregion
 
     /**
@@ -188,12 +237,27 @@ public final class RxPreference<T> {
      * @param key of the preference
      * @param executor on which thread get/set operations are performed
      * @param type of the preference
+     * @param codec for {@link PreferenceType#OBJECT} type, null for the others
      */
-    private RxPreference(SharedPreferences preferences, String key, Executor executor, PreferenceType type) {
+    private RxPreference(SharedPreferences preferences, String key, Executor executor, PreferenceType type, Codec<T> codec) {
         this.mPreferences = preferences;
+        this.mFile = PreferenceFile.of(preferences);
         this.mKey = key;
-        this.mExecutor = executor;
+        this.mScheduler = executor != null ? Schedulers.from(executor) : Schedulers.io();
         this.mType = type;
+        this.mCodec = codec;
+    }
+
+    /*package*/ SharedPreferences getPreferences() {
+        return mPreferences;
+    }
+
+    /*package*/ String getKey() {
+        return mKey;
+    }
+
+    /*package*/ PreferenceFile getFile() {
+        return mFile;
     }
 
     /**
@@ -201,13 +265,21 @@ public final class RxPreference<T> {
      * @return scheduler to perform get/set operations on.
      */
     private Scheduler getScheduler() {
-        if (mExecutor != null) return Schedulers.from(mExecutor);
-        else return Schedulers.io();
+        return mScheduler;
     }
 
     //region blocking methods
     /*package*/ boolean blockingExists() {
-        return mPreferences.contains(mKey);
+        final PreferenceWriteBuffer buffer = mFile.getWriteBuffer();
+        if (buffer != null) {
+            final PreferenceWrite<?> write = buffer.get(mKey);
+            if (write != null) {
+                return write.value != null;
+            }
+        }
+        final boolean exists = mPreferences.contains(mKey);
+        mFile.markLoaded();
+        return exists;
     }
 
     /**
@@ -225,7 +297,19 @@ public final class RxPreference<T> {
      * @return current value of the preference, or <code>defaultValue</code> if no value present
      */
     /*package*/ T blockingGet(T defaultValue) {
-        if (!mPreferences.contains(mKey)) {
+        final PreferenceWriteBuffer buffer = mFile.getWriteBuffer();
+        if (buffer != null) {
+            final PreferenceWrite<?> write = buffer.get(mKey);
+            if (write != null) {
+                // The pending write is the latest value, though it is not applied yet
+                return write.value != null ? (T) write.value : defaultValue;
+            }
+        }
+
+        final boolean exists = mPreferences.contains(mKey);
+        // The read above blocks until the file is loaded
+        mFile.markLoaded();
+        if (!exists) {
             return defaultValue;
         }
 
@@ -254,45 +338,278 @@ public final class RxPreference<T> {
                 Set<String> safeDefaultValue = defaultValue != null ? (Set<String>) defaultValue : null;
                 return (T) mPreferences.getStringSet(mKey, safeDefaultValue);
             }
+            case OBJECT: {
+                final T value = decode(mPreferences.getString(mKey, null));
+                return value != null ? value : defaultValue;
+            }
+            default: {
+                throw new IllegalStateException("Cannot handle preference type: " + mType);
+            }
+        }
+    }
+
+    /**
+     * Blocking reads current value of the preference into <code>slot</code>.
+     * Primitive values are read with the typed getters and are not boxed.
+     * @param slot to read the value into
+     */
+    /*package*/ void blockingRead(ValueSlot slot) {
+        final boolean traced = PreferenceTrace.beginSection("RxPreference.read", mKey);
+        try {
+            final PreferenceWriteBuffer buffer = mFile.getWriteBuffer();
+            if (buffer != null) {
+                final PreferenceWrite<?> write = buffer.get(mKey);
+                if (write != null) {
+                    // The pending write is the latest value, though it is not applied yet
+                    fill(slot, write.value);
+                    return;
+                }
+            }
+
+            final boolean exists = mPreferences.contains(mKey);
+            mFile.markLoaded();
+            if (!exists) {
+                slot.clear();
+                return;
+            }
+
+            slot.present = true;
+            slot.bits = 0L;
+            slot.object = null;
+            switch(mType) {
+                case BOOLEAN: {
+                    slot.bits = mPreferences.getBoolean(mKey, false) ? 1L : 0L;
+                    break;
+                }
+                case INT: {
+                    slot.bits = mPreferences.getInt(mKey, 0);
+                    break;
+                }
+                case LONG: {
+                    slot.bits = mPreferences.getLong(mKey, 0L);
+                    break;
+                }
+                case FLOAT: {
+                    slot.bits = Float.floatToIntBits(mPreferences.getFloat(mKey, 0f));
+                    break;
+                }
+                case STRING: {
+                    slot.object = mPreferences.getString(mKey, null);
+                    break;
+                }
+                case STRING_SET: {
+                    slot.object = mPreferences.getStringSet(mKey, null);
+                    break;
+                }
+                case OBJECT: {
+                    slot.object = decode(mPreferences.getString(mKey, null));
+                    break;
+                }
+                default: {
+                    throw new IllegalStateException("Cannot handle preference type: " + mType);
+                }
+            }
+        } finally {
+            PreferenceTrace.endSection(traced);
+        }
+    }
+
+    /**
+     * Reads current value of the preference into <code>slot</code> on the dispatch thread of a change.
+     * If the read fails, e.g. the value cannot be decoded, then the error is delivered to <code>emitter</code>.
+     * @return true if the value is read, false - otherwise
+     */
+    private boolean tryRead(ValueSlot slot, FlowableEmitter<?> emitter) {
+        try {
+            blockingRead(slot);
+            return true;
+        } catch (Throwable error) {
+            Exceptions.throwIfFatal(error);
+            emitter.tryOnError(error);
+            return false;
+        }
+    }
+
+    /**
+     * Emits the value of <code>slot</code> to <code>emitter</code>.
+     */
+    private void emit(FlowableEmitter<RxOptional<T>> emitter, ValueSlot slot) {
+        final boolean traced = PreferenceTrace.beginSection("RxPreference.emit", mKey);
+        try {
+            emitter.onNext(RxOptional.ofNullable(valueOf(slot)));
+        } finally {
+            PreferenceTrace.endSection(traced);
+        }
+    }
+
+    /**
+     * Puts boxed <code>value</code> in <code>slot</code>. A null value stands for no value.
+     */
+    private void fill(ValueSlot slot, Object value) {
+        if (value == null) {
+            slot.clear();
+            return;
+        }
+
+        slot.present = true;
+        slot.bits = 0L;
+        slot.object = null;
+        switch(mType) {
+            case BOOLEAN: {
+                slot.bits = (Boolean) value ? 1L : 0L;
+                break;
+            }
+            case INT: {
+                slot.bits = (Integer) value;
+                break;
+            }
+            case LONG: {
+                slot.bits = (Long) value;
+                break;
+            }
+            case FLOAT: {
+                slot.bits = Float.floatToIntBits((Float) value);
+                break;
+            }
+            case STRING:
+            case STRING_SET:
+            case OBJECT: {
+                slot.object = value;
+                break;
+            }
+            default: {
+                throw new IllegalStateException("Cannot handle preference type: " + mType);
+            }
+        }
+    }
+
+    /**
+     * Returns the value held in <code>slot</code>, boxing it if needed.
+     * @param slot filled by {@link RxPreference#blockingRead(ValueSlot)}
+     * @return the value, or null if the slot holds no value
+     */
+    /*package*/ T valueOf(ValueSlot slot) {
+        if (!slot.present) {
+            return null;
+        }
+
+        switch(mType) {
+            case BOOLEAN: {
+                return (T) Boolean.valueOf(slot.bits != 0L);
+            }
+            case INT: {
+                return (T) Integer.valueOf((int) slot.bits);
+            }
+            case LONG: {
+                return (T) Long.valueOf(slot.bits);
+            }
+            case FLOAT: {
+                return (T) Float.valueOf(Float.intBitsToFloat((int) slot.bits));
+            }
+            case STRING:
+            case STRING_SET:
+            case OBJECT: {
+                return (T) slot.object;
+            }
             default: {
                 throw new IllegalStateException("Cannot handle preference type: " + mType);
             }
         }
     }
 
+    /**
+     * Decodes a value of {@link PreferenceType#OBJECT} type, or returns the cached one if <code>encoded</code> is not changed.
+     * @param encoded Base64 string stored in the preferences
+     * @return decoded value, or null if <code>encoded</code> is null
+     */
+    private T decode(String encoded) {
+        if (encoded == null) {
+            return null;
+        }
+
+        final Decoded<T> decoded = mDecoded;
+        // The preferences return the same string instance until the key is changed, so this is mostly a reference check
+        if (decoded != null && decoded.encoded.equals(encoded)) {
+            return decoded.value;
+        }
+
+        final T value = mCodec.decode(Base64.decode(encoded, Base64.NO_WRAP));
+        mDecoded = new Decoded<>(encoded, value);
+        return value;
+    }
+
+    /**
+     * Encodes a value of {@link PreferenceType#OBJECT} type.
+     * The result is cached along with the value, so that reading back the written value does not decode it.
+     * @param value to encode, non-null
+     * @return Base64 string to store in the preferences
+     */
+    private String encode(T value) {
+        final String encoded = Base64.encodeToString(mCodec.encode(value), Base64.NO_WRAP);
+        mDecoded = new Decoded<>(encoded, value);
+        return encoded;
+    }
+
     /**
      * Blocking sets the preference value.
      * @param value to be set in the preference
      */
     /*package*/ void blockingSet(T value) {
+        final boolean traced = PreferenceTrace.beginSection("RxPreference.write", mKey);
+        try {
+            final PreferenceWriteBuffer buffer = mFile.getWriteBuffer();
+            if (buffer != null) {
+                buffer.put(this, value);
+                return;
+            }
+
+            final SharedPreferences.Editor editor = mPreferences.edit();
+            write(editor, value);
+            editor.apply();
+        } finally {
+            PreferenceTrace.endSection(traced);
+        }
+    }
+
+    /**
+     * Puts <code>value</code> of the preference in <code>editor</code>.
+     * If <code>value</code> is null, then the preference is removed.
+     * @param editor of the preferences
+     * @param value to be set in the preference
+     */
+    /*package*/ void write(SharedPreferences.Editor editor, T value) {
         if (value == null) {
-            mPreferences.edit().remove(mKey).apply();
+            editor.remove(mKey);
             return;
         }
 
         switch(mType) {
             case BOOLEAN: {
-                mPreferences.edit().putBoolean(mKey, (Boolean) value).apply();
+                editor.putBoolean(mKey, (Boolean) value);
                 break;
             }
             case INT: {
-                mPreferences.edit().putInt(mKey, (Integer) value).apply();
+                editor.putInt(mKey, (Integer) value);
                 break;
             }
             case LONG: {
-                mPreferences.edit().putLong(mKey, (Long) value).apply();
+                editor.putLong(mKey, (Long) value);
                 break;
             }
             case FLOAT: {
-                mPreferences.edit().putFloat(mKey, (Float) value).apply();
+                editor.putFloat(mKey, (Float) value);
                 break;
             }
             case STRING: {
-                mPreferences.edit().putString(mKey, (String) value).apply();
+                editor.putString(mKey, (String) value);
                 break;
             }
             case STRING_SET: {
-                mPreferences.edit().putStringSet(mKey, (Set<String>) value).apply();
+                editor.putStringSet(mKey, (Set<String>) value);
+                break;
+            }
+            case OBJECT: {
+                editor.putString(mKey, encode(value));
                 break;
             }
             default: {
@@ -305,7 +622,7 @@ public final class RxPreference<T> {
      * Blocking removes the preference value.
      */
     /*package*/ void blockingRemove() {
-        mPreferences.edit().remove(mKey).apply();
+        blockingSet(null);
     }
     //endregion
 
@@ -314,68 +631,59 @@ public final class RxPreference<T> {
     /**
      * Returns a flowable source that emits {@link RxOptional} with the preference value when it is changed.
      * On the subscribe, an RxOptional with the current value is emitted.
+     *
+     * Writes that do not change the value, e.g. setting the same value again, are not emitted.
+     * The check is done on the dispatch thread of the change, before the value is boxed or handed over to the scheduler:
+     * primitive values are compared by their bits, strings and string sets are compared with equals.
      * @return flowable source
      */
     public Flowable<RxOptional<T>> get() {
         final Scheduler scheduler = getScheduler();
 
-        Flowable<Object> reactor = Flowable.create(new FlowableOnSubscribe<Object>() {
+        return Flowable.create(new FlowableOnSubscribe<RxOptional<T>>() {
             @Override
-            public void subscribe(final FlowableEmitter<Object> emitter) {
+            public void subscribe(final FlowableEmitter<RxOptional<T>> emitter) {
                 if (!emitter.isCancelled()) {
-                    final SharedPreferences.OnSharedPreferenceChangeListener trigger =
-                            new SharedPreferences.OnSharedPreferenceChangeListener() {
-                                @Override
-                                public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
-                                    if (mKey.equals(key)) {
-                                        emitter.onNext(NOTHING);
-                                    }
-                                }
-                            };
-
-                    mPreferences.registerOnSharedPreferenceChangeListener(trigger);
-                    mTriggers.add(trigger);
-
-                    emitter.setDisposable(Disposables.fromAction(new Action() {
-                        @Override
-                        public void run() {
-                            clear();
-                        }
+                    final ValueSlot last = new ValueSlot();
+                    final ValueSlot current = new ValueSlot();
+                    // Whether the first value has been read. Guarded by last.
+                    final boolean[] seeded = new boolean[1];
 
+                    // Reads and emissions are done under the lock, so that a stale value is never emitted after a fresh one
+                    final PreferenceFile.KeyListener trigger = new PreferenceFile.KeyListener() {
                         @Override
-                        protected void finalize() {
-                            clear();
+                        public void onKeyChanged(String key) {
+                            synchronized (last) {
+                                if (!seeded[0]) {
+                                    // The first read is still to come and it will see this change
+                                    return;
+                                }
+                                if (!tryRead(current, emitter)) {
+                                    return;
+                                }
+                                if (current.sameAs(last)) {
+                                    return;
+                                }
+                                last.copyFrom(current);
+                                emit(emitter, last);
+                            }
                         }
+                    };
 
-                        void clear() {
-                            mPreferences.unregisterOnSharedPreferenceChangeListener(trigger);
-                            mTriggers.remove(trigger);
-                        }
-                    }));
+                    // The file dispatches changes of mKey only, so no need to check the key here
+                    emitter.setDisposable(mFile.addListener(mKey, trigger));
 
-                    emitter.onNext(NOTHING);
+                    synchronized (last) {
+                        blockingRead(last);
+                        seeded[0] = true;
+                        emit(emitter, last);
+                    }
                 }
             }
-        }, BackpressureStrategy.LATEST);
-
-        final Single<RxOptional<T>> single = Single.fromCallable(new Callable<RxOptional<T>>() {
-            @Override
-            public RxOptional<T> call() {
-                final T value = blockingGet(null);
-                return RxOptional.ofNullable(value);
-            }
-        });
-
-        return reactor
+        }, BackpressureStrategy.LATEST)
                 .subscribeOn(scheduler)
                 .observeOn(scheduler)
-                .unsubscribeOn(scheduler)
-                .flatMapSingle(new Function<Object, SingleSource<? extends RxOptional<T>>>() {
-                    @Override
-                    public SingleSource<? extends RxOptional<T>> apply(Object o) {
-                        return single;
-                    }
-                });
+                .unsubscribeOn(scheduler);
     }
 
     /**
@@ -400,6 +708,103 @@ public final class RxPreference<T> {
                 });
     }
 
+    /**
+     * Returns a flowable source that emits {@link RxOptional} with the preference value when it is changed.
+     *
+     * Unlike {@link RxPreference#get()}, if the preferences file has already been loaded,
+     * the current value is read from memory and emitted synchronously on the subscribing thread, without any thread hop.
+     * So the subscriber, e.g. UI, gets the right value before the subscribe call returns.
+     * Only the values of later changes are emitted on the scheduler of this preference.
+     * As with {@link RxPreference#get()}, writes that do not change the value are not emitted.
+     *
+     * If the file has not been loaded yet, then this behaves the same as {@link RxPreference#get()},
+     * in order not to block the subscribing thread on the file loading.
+     *
+     * @return flowable source
+     */
+    public Flowable<RxOptional<T>> getImmediate() {
+        return Flowable.defer(new Callable<Publisher<RxOptional<T>>>() {
+            @Override
+            public Publisher<RxOptional<T>> call() {
+                if (!mFile.isLoaded()) {
+                    return get();
+                }
+
+                return Flowable.create(new FlowableOnSubscribe<RxOptional<T>>() {
+                    @Override
+                    public void subscribe(final FlowableEmitter<RxOptional<T>> emitter) {
+                        final Scheduler.Worker worker = getScheduler().createWorker();
+                        final ValueSlot last = new ValueSlot();
+                        final ValueSlot current = new ValueSlot();
+                        // Whether the value in last has not been emitted yet. Guarded by last.
+                        final boolean[] pending = new boolean[1];
+
+                        // Emits the latest value, if it has not been emitted yet, so that a stale value is never emitted after a fresh one
+                        final Runnable emitPending = new Runnable() {
+                            @Override
+                            public void run() {
+                                synchronized (last) {
+                                    if (pending[0] && !emitter.isCancelled()) {
+                                        pending[0] = false;
+                                        emit(emitter, last);
+                                    }
+                                }
+                            }
+                        };
+
+                        final PreferenceFile.KeyListener trigger = new PreferenceFile.KeyListener() {
+                            @Override
+                            public void onKeyChanged(String key) {
+                                synchronized (last) {
+                                    if (!tryRead(current, emitter)) {
+                                        return;
+                                    }
+                                    if (current.sameAs(last)) {
+                                        return;
+                                    }
+                                    last.copyFrom(current);
+                                    pending[0] = true;
+                                }
+                                worker.schedule(emitPending);
+                            }
+                        };
+
+                        emitter.setDisposable(new CompositeDisposable(
+                                mFile.addListener(mKey, trigger), worker));
+
+                        // The listener is added before the first read, so no change can be missed
+                        synchronized (last) {
+                            blockingRead(last);
+                            pending[0] = false;
+                            emit(emitter, last);
+                        }
+                    }
+                }, BackpressureStrategy.LATEST);
+            }
+        });
+    }
+
+    /**
+     * Returns a flowable source that emits the preference value when it is changed.
+     * If no value present, then the source emits <code>defaultValue</code>.
+     * @see RxPreference#getImmediate()
+     * @param defaultValue to be emitted if no preference value present, non-null.
+     * @return flowable source
+     */
+    public Flowable<T> getImmediate(final T defaultValue) {
+        if (defaultValue == null) {
+            throw new NullPointerException("Null values are not allowed in RxJava2");
+        }
+
+        return getImmediate()
+                .map(new Function<RxOptional<T>, T>() {
+                    @Override
+                    public T apply(RxOptional<T> optional) {
+                        return optional.orElse(defaultValue);
+                    }
+                });
+    }
+
     /**
      * Returns a completable source that sets the preference value to <code>value</code>.
      * @param value to be set in the preference
@@ -426,5 +831,37 @@ public final class RxPreference<T> {
             }
         });
     }
+
+    /**
+     * Returns a completable source that sets the preference value to <code>value</code>
+     * and completes only when the value is written to disk.
+     *
+     * Unlike {@link RxPreference#set(Object)}, that completes as soon as the value is applied in memory,
+     * this survives a crash of the process or the device right after the completion.
+     * Durable writes of the preferences file, that are made concurrently, are grouped into one commit,
+     * so the file is synced to disk once for all of them, on a background thread.
+     *
+     * If the commit fails, then the source completes with {@link java.io.IOException}.
+     * @param value to be set in the preference
+     * @return completable source
+     */
+    public Completable setDurable(final T value) {
+        return Completable.create(new CompletableOnSubscribe() {
+            @Override
+            public void subscribe(CompletableEmitter emitter) {
+                mFile.getDurableWrites().enqueue(new PreferenceWrite<>(RxPreference.this, value), emitter);
+            }
+        });
+    }
+
+    /**
+     * Returns a completable source that removes the preference value
+     * and completes only when the removal is written to disk.
+     * @see RxPreference#setDurable(Object)
+     * @return completable source
+     */
+    public Completable removeDurable() {
+        return setDurable(null);
+    }
     //endregion
 }
@@ -0,0 +1,251 @@
+package com.frolo.rxpreference;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.res.Configuration;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.reactivex.BackpressureStrategy;
+import io.reactivex.Completable;
+import io.reactivex.Flowable;
+import io.reactivex.Scheduler;
+import io.reactivex.functions.Action;
+import io.reactivex.schedulers.Schedulers;
+
+
+/**
+ * Operations on {@link SharedPreferences} that involve multiple {@link RxPreference}s at once
+ * or concern the whole preferences file.
+ *
+ * {@link SharedPreferences} is the storage interface of {@link RxPreference}: any implementation of it can be used as a backend.
+ * By default, these are the platform preferences; {@link MappedLogPreferences} is an alternative for frequently updated keys.
+ */
+public final class RxPreferences {
+
+    /**
+     * Listener of preloading of preferences files.
+     * @see RxPreferences#preload(Context, List, PreloadListener)
+     */
+    public interface PreloadListener {
+        /**
+         * Called on a background thread when the preferences file named <code>name</code> is loaded.
+         * @param name of the preferences file
+         * @param loadTimeMillis how long the file has been loaded, in milliseconds
+         */
+        void onPreloaded(String name, long loadTimeMillis);
+    }
+
+    private static final AtomicBoolean sFlushOnBackgroundRegistered = new AtomicBoolean(false);
+
+    /*No instances*/
+    private RxPreferences() {
+    }
+
+    /**
+     * Returns a completable source that loads the preferences files named <code>names</code> in parallel on {@link Schedulers#io()}
+     * and completes when all of them are loaded in memory.
+     *
+     * The first read of a {@link SharedPreferences} blocks until its file is loaded from disk.
+     * Preloading the files at the process start, e.g. in {@link android.app.Application#onCreate()},
+     * moves that wait off the main thread. Once a file is loaded, {@link RxPreference#getImmediate()} of its preferences
+     * emits the current value synchronously.
+     *
+     * The loading starts on the subscribe. To share the readiness signal among several subscribers, use {@link Completable#cache()}.
+     *
+     * @param context to get the preferences from
+     * @param names of the preferences files, as passed to {@link Context#getSharedPreferences(String, int)}
+     * @param listener to report the load time of each file to, may be null
+     * @return completable source
+     */
+    public static Completable preload(Context context, List<String> names, final PreloadListener listener) {
+        final Context appContext = context.getApplicationContext();
+        final List<Completable> sources = new ArrayList<>(names.size());
+        for (final String name : names) {
+            sources.add(Completable.fromAction(new Action() {
+                @Override
+                public void run() {
+                    final long startTime = System.nanoTime();
+                    final SharedPreferences preferences = appContext.getSharedPreferences(name, Context.MODE_PRIVATE);
+                    // Blocks until the file is loaded
+                    preferences.contains(name);
+                    PreferenceFile.of(preferences).markLoaded();
+                    if (listener != null) {
+                        listener.onPreloaded(name, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+                    }
+                }
+            }).subscribeOn(Schedulers.io()));
+        }
+        return Completable.merge(sources);
+    }
+
+    /**
+     * Returns a completable source that loads the preferences files named <code>names</code> in parallel.
+     * @see RxPreferences#preload(Context, List, PreloadListener)
+     * @param context to get the preferences from
+     * @param names of the preferences files
+     * @return completable source
+     */
+    public static Completable preload(Context context, String... names) {
+        return preload(context, Arrays.asList(names), null);
+    }
+
+    /**
+     * Returns {@link SharedPreferences} named <code>name</code>, that are shared by all the processes of the app
+     * via {@link PreferenceProvider} declared with <code>authority</code>.
+     * Pass them to the factory methods of {@link RxPreference}, to get preferences that are observed across processes.
+     *
+     * Values are read from a cache in this process, so most of the reads do not cross the process boundary.
+     * The provider notifies each change of a key, these notifications invalidate the cache and are emitted by the change streams.
+     *
+     * @param context of the app
+     * @param authority of {@link PreferenceProvider}, as declared in the manifest
+     * @param name of the preferences file in the process of the provider
+     * @return preferences shared by the processes
+     */
+    public static SharedPreferences multiProcess(Context context, String authority, String name) {
+        return ProviderPreferences.of(context, authority, name);
+    }
+
+    /**
+     * Creates a transaction for writing several preferences of <code>preferences</code> at once.
+     * All the writes of the transaction are applied with a single {@link SharedPreferences.Editor},
+     * so that the preferences file is written to disk once and the change listeners are notified in one wave.
+     *
+     * @param preferences to which the preferences of the transaction belong
+     * @return transaction
+     */
+    public static PreferenceTransaction transaction(SharedPreferences preferences) {
+        return new PreferenceTransaction(preferences);
+    }
+
+    /**
+     * Returns a flowable source that emits {@link PreferenceSnapshot}s of the values of <code>preferences</code>.
+     * On the subscribe, a snapshot of the current values is emitted.
+     *
+     * All the preferences are observed with a single listener.
+     * A snapshot is emitted once per wave of writes, e.g. per applied {@link PreferenceTransaction},
+     * rather than once per changed key, and only if some of the values are actually changed.
+     * {@link PreferenceSnapshot#getChangedKeys()} tells which ones.
+     *
+     * This is a cheaper alternative to combining the flowables of {@link RxPreference#get()} with combineLatest.
+     * Snapshots are emitted on {@link Schedulers#io()} scheduler.
+     *
+     * @param preferences to observe, non-empty
+     * @return flowable source
+     * @throws IllegalArgumentException if <code>preferences</code> is empty or the preferences belong to different {@link SharedPreferences}
+     */
+    public static Flowable<PreferenceSnapshot> observe(List<? extends RxPreference<?>> preferences) {
+        if (preferences.isEmpty()) {
+            throw new IllegalArgumentException("No preferences to observe");
+        }
+
+        final SharedPreferences sharedPreferences = preferences.get(0).getPreferences();
+        for (RxPreference<?> preference : preferences) {
+            if (preference.getPreferences() != sharedPreferences) {
+                throw new IllegalArgumentException("Preference " + preference.getKey()
+                        + " belongs to other preferences than the others");
+            }
+        }
+
+        final Scheduler scheduler = Schedulers.io();
+        final PreferenceSnapshotSource source =
+                new PreferenceSnapshotSource(PreferenceFile.of(sharedPreferences), preferences);
+        return Flowable.create(source, BackpressureStrategy.LATEST)
+                .subscribeOn(scheduler)
+                .observeOn(scheduler)
+                .unsubscribeOn(scheduler);
+    }
+
+    /**
+     * Returns a flowable source that emits {@link PreferenceSnapshot}s of the values of <code>preferences</code>.
+     * @see RxPreferences#observe(List)
+     * @param preferences to observe, non-empty
+     * @return flowable source
+     */
+    public static Flowable<PreferenceSnapshot> observe(RxPreference<?>... preferences) {
+        return observe(Arrays.asList(preferences));
+    }
+
+    /**
+     * Enables coalescing of writes to <code>preferences</code>, made with {@link RxPreference#set(Object)} and {@link RxPreference#remove()}.
+     *
+     * Written values are held in memory and are visible to the reads and the change streams of {@link RxPreference}s immediately.
+     * Only the latest value of each key is written to the preferences, with a single {@link SharedPreferences.Editor},
+     * <code>flushInterval</code> after the first pending write.
+     * This is useful for values updated several times per second, e.g. the playback position.
+     *
+     * Pending writes may be flushed explicitly with {@link RxPreferences#flush(SharedPreferences)}.
+     * To flush them when the app goes to background, call {@link RxPreferences#flushOnBackground(Context)}.
+     *
+     * Note that the pending writes are not visible to those who read <code>preferences</code> directly, not via {@link RxPreference}.
+     *
+     * @param preferences for which to enable coalescing of writes
+     * @param flushInterval interval between the first pending write and the flush; if not positive, coalescing is disabled
+     * @param unit of <code>flushInterval</code>
+     */
+    public static void coalesceWrites(SharedPreferences preferences, long flushInterval, TimeUnit unit) {
+        PreferenceFile.of(preferences).setWriteCoalescing(unit.toMillis(flushInterval));
+    }
+
+    /**
+     * Returns a completable source that flushes writes of <code>preferences</code> pending for coalescing.
+     * @see RxPreferences#coalesceWrites(SharedPreferences, long, TimeUnit)
+     * @param preferences to flush
+     * @return completable source
+     */
+    public static Completable flush(final SharedPreferences preferences) {
+        return Completable.fromAction(new Action() {
+            @Override
+            public void run() {
+                PreferenceFile.of(preferences).flush();
+            }
+        });
+    }
+
+    /**
+     * Flushes writes of all the preferences pending for coalescing.
+     * @see RxPreferences#coalesceWrites(SharedPreferences, long, TimeUnit)
+     */
+    public static void flushAll() {
+        for (PreferenceFile file : PreferenceFile.all()) {
+            file.flush();
+        }
+    }
+
+    /**
+     * Registers callbacks in the application of <code>context</code>
+     * that flush writes pending for coalescing when the UI of the app is hidden or the memory is low.
+     * The callbacks are registered once per process, it's safe to call this multiple times.
+     * @see RxPreferences#coalesceWrites(SharedPreferences, long, TimeUnit)
+     * @param context of the app
+     */
+    public static void flushOnBackground(Context context) {
+        if (!sFlushOnBackgroundRegistered.compareAndSet(false, true)) {
+            return;
+        }
+
+        context.getApplicationContext().registerComponentCallbacks(new ComponentCallbacks2() {
+            @Override
+            public void onTrimMemory(int level) {
+                if (level >= TRIM_MEMORY_UI_HIDDEN) {
+                    flushAll();
+                }
+            }
+
+            @Override
+            public void onConfigurationChanged(Configuration newConfig) {
+            }
+
+            @Override
+            public void onLowMemory() {
+                flushAll();
+            }
+        });
+    }
+}
@@ -0,0 +1,45 @@
+package com.frolo.rxpreference;
+
+
+/**
+ * Mutable holder of a preference value, that stores primitive values without boxing.
+ * Used to compare a freshly read value with the last emitted one without allocations.
+ *
+ * Values of {@link PreferenceType#BOOLEAN}, {@link PreferenceType#INT}, {@link PreferenceType#LONG}
+ * and {@link PreferenceType#FLOAT} are kept in {@link ValueSlot#bits}.
+ * Values of {@link PreferenceType#STRING}, {@link PreferenceType#STRING_SET}
+ * and decoded values of {@link PreferenceType#OBJECT} are kept in {@link ValueSlot#object}.
+ *
+ * @see RxPreference#blockingRead(ValueSlot)
+ */
+final class ValueSlot {
+
+    boolean present;
+    long bits;
+    Object object;
+
+    void clear() {
+        present = false;
+        bits = 0L;
+        object = null;
+    }
+
+    void copyFrom(ValueSlot other) {
+        present = other.present;
+        bits = other.bits;
+        object = other.object;
+    }
+
+    /**
+     * Checks if this slot holds the same value as <code>other</code>.
+     * Primitive values are compared by their bits, strings and string sets are compared with equals.
+     * @param other slot to compare with
+     * @return true if the values are the same, false - otherwise
+     */
+    boolean sameAs(ValueSlot other) {
+        if (present != other.present || bits != other.bits) {
+            return false;
+        }
+        return object == null ? other.object == null : object.equals(other.object);
+    }
+}